@@ -0,0 +1,23 @@
+/**
+ * <p>
+ * This class starts the benchmarks. It takes the usual JMH command line and always
+ * adds the GC profiler, so every result comes with its allocation rate.
+ * </p>
+ */
+
+package space_travel.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
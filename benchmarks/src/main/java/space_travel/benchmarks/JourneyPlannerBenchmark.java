@@ -0,0 +1,67 @@
+/**
+ * <p>
+ * This class measures journey planner queries on a large schedule. Each call asks for
+ * a journey between two planets drawn at random, leaving on one of the days ships
+ * leave on. With the cache the origins and dates repeat, so most queries go on from an
+ * earlier scan; without it every query scans the connections itself.
+ * </p>
+ */
+
+package space_travel.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space_travel.JourneyPlanner;
+import space_travel.PersonStore;
+import space_travel.Scenario;
+import space_travel.Time;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JourneyPlannerBenchmark {
+    @Param({"10000", "100000"})
+    int ships;
+    
+    @Param({"true", "false"})
+    boolean cached;
+    
+    private JourneyPlanner planner;
+    private SplittableRandom random;
+    private long firstDay;
+    
+    @Setup(Level.Trial)
+    public void buildPlanner() {
+        Scenario scenario = Scenarios.build(50, ships, 0, PersonStore.Backend.HEAP);
+        planner = new JourneyPlanner(scenario.getPlanets(), scenario.getShips());
+        if (!cached) {
+            planner.setCacheSize(0);
+        }
+        random = new SplittableRandom(Scenarios.SEED);
+        firstDay = Time.parseDay("01.01.2025");
+    }
+    
+    @Benchmark
+    public JourneyPlanner.Journey plan() {
+        int planets = planner.getPlanetCount();
+        // Scenarios.build lets ships leave over the first ten days
+        return planner.plan(random.nextInt(planets), random.nextInt(planets), firstDay + random.nextInt(10));
+    }
+}
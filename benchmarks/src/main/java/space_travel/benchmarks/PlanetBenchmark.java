@@ -0,0 +1,68 @@
+/**
+ * <p>
+ * This class measures boarding: taking everyone booked on one ship off a planet.
+ * The planet is filled again before every call, outside the measured time.
+ * </p>
+ */
+
+package space_travel.benchmarks;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space_travel.Person;
+import space_travel.PersonStore;
+import space_travel.Planet;
+import space_travel.ScenarioGenerator;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanetBenchmark {
+    @Param({"1000", "100000"})
+    int population;
+    
+    @Param({"10"})
+    int ships;
+    
+    private final PersonStore people = new PersonStore();
+    private Planet planet;
+    
+    @Setup(Level.Trial)
+    public void createPeople() {
+        SplittableRandom random = new SplittableRandom(Scenarios.SEED);
+        for (int i = 0; i < population; i++) {
+            people.add("Person " + i, 30, 1000, ScenarioGenerator.shipName(random.nextInt(ships)));
+        }
+    }
+    
+    @Setup(Level.Invocation)
+    public void fillPlanet() {
+        planet = new Planet("P0", 24, "01.01.2025");
+        for (Person person : people.asList()) {
+            planet.addPerson(person);
+        }
+    }
+    
+    @Benchmark
+    public List<Person> removePeople() {
+        return planet.removePeople(ScenarioGenerator.shipName(0));
+    }
+}
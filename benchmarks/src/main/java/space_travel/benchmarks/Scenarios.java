@@ -0,0 +1,75 @@
+/**
+ * <p>
+ * This class builds the synthetic inputs the benchmarks run on. Everything is drawn
+ * from a fixed seed, so every benchmark run sees the same data.
+ * </p>
+ */
+
+package space_travel.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import space_travel.FileReader;
+import space_travel.PersonStore;
+import space_travel.Planet;
+import space_travel.Scenario;
+import space_travel.ScenarioGenerator;
+import space_travel.Spaceship;
+
+final class Scenarios {
+    static final long SEED = 42;
+    
+    private Scenarios() {
+    }
+    
+    /**
+     * Writes a people file in the input format, with everyone booked on one of the given ships.
+     */
+    static void writePeople(Path file, int people, int ships) throws IOException {
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.setSeed(SEED);
+        generator.setShips(ships);
+        generator.setPeople(people);
+        generator.setOnPlanetShare(0);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            generator.writePeople(out);
+        }
+    }
+    
+    /**
+     * Builds a scenario in memory with ships leaving over the first few days and
+     * people spread over the ships at random.
+     */
+    static Scenario build(int planetCount, int shipCount, int peopleCount, PersonStore.Backend backend) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        
+        List<Planet> planets = new ArrayList<>(planetCount);
+        for (int i = 0; i < planetCount; i++) {
+            planets.add(new Planet(ScenarioGenerator.planetName(i), random.nextInt(10, 30), "01.01.2025"));
+        }
+        
+        List<Spaceship> ships = new ArrayList<>(shipCount);
+        for (int i = 0; i < shipCount; i++) {
+            int from = random.nextInt(planetCount);
+            int to = (from + 1 + random.nextInt(planetCount - 1)) % planetCount;
+            String date = String.format("%02d.01.2025", 1 + random.nextInt(10));
+            ships.add(new Spaceship(ScenarioGenerator.shipName(i), ScenarioGenerator.planetName(from), ScenarioGenerator.planetName(to), date, random.nextInt(24, 500)));
+        }
+        
+        PersonStore people = new PersonStore(backend, peopleCount);
+        for (int i = 0; i < peopleCount; i++) {
+            people.add("Person " + i, random.nextInt(1, 90), random.nextInt(200, 2000),
+                    ScenarioGenerator.shipName(random.nextInt(shipCount)));
+        }
+        
+        FileReader.placePeople(people, planets, ships);
+        return new Scenario(planets, ships, people);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * <p>
+ * This class measures whole simulation runs without the live view. Each call runs a
+ * fresh copy of the same scenario to the end. Next to runs per second, the number
+ * of simulated hours is reported as an extra counter, which gives hours per second.
+ * </p>
+ */
+
+package space_travel.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space_travel.PersonStore;
+import space_travel.Scenario;
+import space_travel.Simulation;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SimulationBenchmark {
+    @Param({"1000", "100000"})
+    int people;
+    
+    @Param({"hourly", "events", "parallel"})
+    String engine;
+    
+    @Param({"HEAP", "OFF_HEAP"})
+    PersonStore.Backend backend;
+    
+    private Scenario template;
+    private Simulation simulation;
+    
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Hours {
+        public long hours;
+    }
+    
+    @Setup(Level.Trial)
+    public void buildScenario() {
+        template = Scenarios.build(50, 200, people, backend);
+    }
+    
+    @Setup(Level.Invocation)
+    public void copyScenario() {
+        Scenario scenario = template.copy(ship -> ship.getTravelDuration(), person -> person.getLifeRemaining());
+        simulation = new Simulation(scenario.getPlanets(), scenario.getShips(), scenario.getPeople());
+        simulation.setHeadless(true);
+        simulation.setEventDriven(engine.equals("events"));
+        simulation.setParallel(engine.equals("parallel"));
+    }
+    
+    @Benchmark
+    public Simulation run(Hours hours) {
+        simulation.run();
+        hours.hours += simulation.captureSnapshot().getHour();
+        return simulation;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * <p>
+ * This class measures the Time operations that run once per planet every hour.
+ * </p>
+ */
+
+package space_travel.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space_travel.Time;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeBenchmark {
+    private Time time;
+    private String date;
+    
+    @Setup
+    public void setUp() {
+        time = new Time("15.06.2025", 24);
+        date = "16.06.2025";
+    }
+    
+    @Benchmark
+    public Time increaseHour() {
+        time.increaseHour();
+        return time;
+    }
+    
+    @Benchmark
+    public Time addHours() {
+        time.addHours(17);
+        return time;
+    }
+    
+    @Benchmark
+    public boolean dateMatches() {
+        return time.dateMatches(date);
+    }
+    
+    @Benchmark
+    public String getDate() {
+        time.increaseHour();
+        return time.getDate();
+    }
+}
@@ -1,2 +1,5 @@
 module space_travel {
+    requires jdk.httpserver;
+    requires jdk.jfr;
+    requires jdk.management;
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+/**
+ * <p>
+ * This class is the saved state of a simulation at the end of an hour: the hour
+ * count, every person's remaining life and location, every planet's clock and
+ * population, and every ship's journey, passengers and original passengers. People
+ * are referred to by their position in the simulation's list of everyone, so a
+ * checkpoint only makes sense together with the scenario it was taken from.
+ * </p>
+ * <p>
+ * A checkpoint is taken on the simulation thread by copying the numbers into plain
+ * arrays, which is quick; turning it into bytes happens later, on the checkpoint writer.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Checkpoint {
+    private static final int MAGIC = 0x5354434B; // "STCK"
+    private static final int VERSION = 1;
+    
+    private static final int IN_TRANSIT = 1;
+    private static final int DESTROYED = 2;
+    private static final int ARRIVED = 4;
+    private static final int HAS_ORIGINALS = 8;
+    private static final int HAS_ARRIVAL_DATE = 16;
+    
+    final int hour;
+    final int[] lifeRemaining;
+    final String[] vehicles;
+    final long[] planetHours;
+    final int[][] populations;
+    final int[] remainingTravelTimes;
+    final int[] shipFlags;
+    final int[][] passengers;
+    final int[][] originalPassengers;
+    final String[] arrivalDates;
+    
+    Checkpoint(int hour, int[] lifeRemaining, String[] vehicles, long[] planetHours, int[][] populations,
+            int[] remainingTravelTimes, int[] shipFlags, int[][] passengers, int[][] originalPassengers,
+            String[] arrivalDates) {
+        this.hour = hour;
+        this.lifeRemaining = lifeRemaining;
+        this.vehicles = vehicles;
+        this.planetHours = planetHours;
+        this.populations = populations;
+        this.remainingTravelTimes = remainingTravelTimes;
+        this.shipFlags = shipFlags;
+        this.passengers = passengers;
+        this.originalPassengers = originalPassengers;
+        this.arrivalDates = arrivalDates;
+    }
+    
+    public int getHour() {
+        return hour;
+    }
+    
+    /**
+     * Copies the state of a simulation at the end of an hour.
+     * 
+     * @param hour The hours simulated so far
+     */
+    static Checkpoint capture(int hour, PersonStore people, List<Planet> planets, List<Spaceship> ships) {
+        int[] lifeRemaining = new int[people.size()];
+        String[] vehicles = new String[people.size()];
+        for (int id = 0; id < people.size(); id++) {
+            lifeRemaining[id] = people.getLifeRemaining(id);
+            vehicles[id] = people.getLocation(id);
+        }
+        
+        long[] planetHours = new long[planets.size()];
+        int[][] populations = new int[planets.size()][];
+        for (int i = 0; i < planets.size(); i++) {
+            planetHours[i] = planets.get(i).getTime().getEpochHour();
+            populations[i] = planets.get(i).getPopulationIds();
+        }
+        
+        int[] remaining = new int[ships.size()];
+        int[] flags = new int[ships.size()];
+        int[][] passengers = new int[ships.size()][];
+        int[][] originals = new int[ships.size()][];
+        String[] arrivalDates = new String[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            remaining[i] = ship.getRemainingTravelTime();
+            flags[i] = shipFlags(ship);
+            passengers[i] = Person.ids(ship.getPassengers());
+            originals[i] = ship.getOriginalPassengers() == null ? null : Person.ids(ship.getOriginalPassengers());
+            arrivalDates[i] = ship.getActualArrivalDate();
+        }
+        
+        return new Checkpoint(hour, lifeRemaining, vehicles, planetHours, populations,
+                remaining, flags, passengers, originals, arrivalDates);
+    }
+    
+    /**
+     * Puts the people, planets and ships of a scenario back into the saved state. They
+     * must not have been simulated yet. Afterwards the clock is at the checkpoint's hour
+     * and everyone is where the checkpoint says, no longer on the planet or ship the
+     * scenario started them on; the simulation's own bookkeeping is left to the simulation.
+     * 
+     * @param clock The clock the people age against
+     * @throws IOException if the checkpoint was taken from a different scenario, in which
+     *         case nothing has been changed
+     */
+    void applyTo(LifeClock clock, PersonStore people, List<Planet> planets, List<Spaceship> ships) throws IOException {
+        if (lifeRemaining.length != people.size() || planetHours.length != planets.size()
+                || remainingTravelTimes.length != ships.size()) {
+            throw new IOException("checkpoint was taken from a different scenario");
+        }
+        
+        clock.advance(hour - clock.now());
+        for (int id = 0; id < people.size(); id++) {
+            people.setLifeRemaining(id, lifeRemaining[id]);
+            people.setLocation(id, vehicles[id]);
+            Roster roster = people.getRoster(id);
+            if (roster != null) {
+                roster.removeId(id);
+            }
+        }
+        
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            planet.getTime().addHours(planetHours[i] - planet.getTime().getEpochHour());
+            for (int id : populations[i]) {
+                planet.addPerson(people, id);
+            }
+        }
+        
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            int flags = shipFlags[i];
+            ship.restoreJourney(remainingTravelTimes[i], isInTransit(flags), isDestroyed(flags), hasArrived(flags));
+            for (int id : passengers[i]) {
+                ship.addPassenger(people.get(id));
+            }
+            if (originalPassengers[i] != null) {
+                ship.setOriginalPassengers(people, originalPassengers[i]);
+            }
+            ship.setActualArrivalDate(arrivalDates[i]);
+        }
+    }
+    
+    static int shipFlags(Spaceship ship) {
+        return (ship.isInTransit() ? IN_TRANSIT : 0)
+                | (ship.isDestroyed() ? DESTROYED : 0)
+                | (ship.hasArrived() ? ARRIVED : 0)
+                | (ship.getOriginalPassengers() != null ? HAS_ORIGINALS : 0)
+                | (ship.getActualArrivalDate() != null ? HAS_ARRIVAL_DATE : 0);
+    }
+    
+    static boolean isInTransit(int flags) {
+        return (flags & IN_TRANSIT) != 0;
+    }
+    
+    static boolean isDestroyed(int flags) {
+        return (flags & DESTROYED) != 0;
+    }
+    
+    static boolean hasArrived(int flags) {
+        return (flags & ARRIVED) != 0;
+    }
+    
+    /**
+     * Writes the checkpoint in its binary form.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(hour);
+        out.writeInt(lifeRemaining.length);
+        out.writeInt(planetHours.length);
+        out.writeInt(remainingTravelTimes.length);
+        
+        // Locations repeat a lot (a handful of ship and planet names), so they go in a table
+        Map<String, Integer> locationIndex = new IdentityHashMap<>();
+        List<String> locations = new ArrayList<>();
+        int[] vehicleIndexes = new int[vehicles.length];
+        for (int i = 0; i < vehicles.length; i++) {
+            Integer index = locationIndex.get(vehicles[i]);
+            if (index == null) {
+                index = locations.size();
+                locationIndex.put(vehicles[i], index);
+                locations.add(vehicles[i]);
+            }
+            vehicleIndexes[i] = index;
+        }
+        out.writeInt(locations.size());
+        for (String location : locations) {
+            out.writeUTF(location);
+        }
+        
+        for (int life : lifeRemaining) out.writeInt(life);
+        for (int vehicle : vehicleIndexes) out.writeInt(vehicle);
+        
+        for (int i = 0; i < planetHours.length; i++) {
+            out.writeLong(planetHours[i]);
+            writeIndexes(out, populations[i]);
+        }
+        
+        for (int i = 0; i < remainingTravelTimes.length; i++) {
+            out.writeInt(remainingTravelTimes[i]);
+            out.writeByte(shipFlags[i]);
+            writeIndexes(out, passengers[i]);
+            if ((shipFlags[i] & HAS_ORIGINALS) != 0) {
+                writeIndexes(out, originalPassengers[i]);
+            }
+            if ((shipFlags[i] & HAS_ARRIVAL_DATE) != 0) {
+                out.writeUTF(arrivalDates[i]);
+            }
+        }
+    }
+    
+    private static void writeIndexes(DataOutputStream out, int[] indexes) throws IOException {
+        out.writeInt(indexes.length);
+        for (int index : indexes) out.writeInt(index);
+    }
+    
+    /**
+     * Reads a checkpoint file written by CheckpointWriter.
+     * 
+     * @throws IOException if the file cannot be read or is not a checkpoint of this version
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            return read(in);
+        }
+    }
+    
+    /**
+     * Reads a checkpoint written by write().
+     * 
+     * @throws IOException if the data is not a checkpoint of this version
+     */
+    public static Checkpoint read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a checkpoint");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("checkpoint format version " + version + ", expected " + VERSION);
+        }
+        int hour = in.readInt();
+        int personCount = in.readInt();
+        int planetCount = in.readInt();
+        int shipCount = in.readInt();
+        
+        String[] locations = new String[in.readInt()];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = in.readUTF();
+        }
+        
+        int[] lifeRemaining = new int[personCount];
+        for (int i = 0; i < personCount; i++) lifeRemaining[i] = in.readInt();
+        String[] vehicles = new String[personCount];
+        for (int i = 0; i < personCount; i++) vehicles[i] = locations[in.readInt()];
+        
+        long[] planetHours = new long[planetCount];
+        int[][] populations = new int[planetCount][];
+        for (int i = 0; i < planetCount; i++) {
+            planetHours[i] = in.readLong();
+            populations[i] = readIndexes(in);
+        }
+        
+        int[] remainingTravelTimes = new int[shipCount];
+        int[] shipFlags = new int[shipCount];
+        int[][] passengers = new int[shipCount][];
+        int[][] originalPassengers = new int[shipCount][];
+        String[] arrivalDates = new String[shipCount];
+        for (int i = 0; i < shipCount; i++) {
+            remainingTravelTimes[i] = in.readInt();
+            shipFlags[i] = in.readUnsignedByte();
+            passengers[i] = readIndexes(in);
+            if ((shipFlags[i] & HAS_ORIGINALS) != 0) {
+                originalPassengers[i] = readIndexes(in);
+            }
+            if ((shipFlags[i] & HAS_ARRIVAL_DATE) != 0) {
+                arrivalDates[i] = in.readUTF();
+            }
+        }
+        
+        return new Checkpoint(hour, lifeRemaining, vehicles, planetHours, populations,
+                remainingTravelTimes, shipFlags, passengers, originalPassengers, arrivalDates);
+    }
+    
+    private static int[] readIndexes(DataInputStream in) throws IOException {
+        int[] indexes = new int[in.readInt()];
+        for (int i = 0; i < indexes.length; i++) indexes[i] = in.readInt();
+        return indexes;
+    }
+}
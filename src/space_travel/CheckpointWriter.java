@@ -0,0 +1,96 @@
+/**
+ * <p>
+ * This class writes checkpoints to disk on its own thread, so the simulation never
+ * waits for the file system. Only the newest checkpoint matters: if one is handed
+ * over while the previous one is still waiting to be written, the older one is
+ * dropped. Each checkpoint goes to a temporary file that is then renamed over the
+ * checkpoint file, so the file on disk is always a complete checkpoint.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class CheckpointWriter implements Runnable {
+    private final Path file;
+    private Checkpoint pending;
+    private boolean running;
+    private Thread thread;
+    
+    public CheckpointWriter(Path file) {
+        this.file = file;
+    }
+    
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this, "checkpoint-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Hands over a checkpoint to be written. Never blocks on I/O.
+     */
+    public synchronized void publish(Checkpoint checkpoint) {
+        pending = checkpoint;
+        notifyAll();
+    }
+    
+    /**
+     * Writes the checkpoint still waiting, if any, and stops the writer thread.
+     */
+    public void stop() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (true) {
+            Checkpoint checkpoint;
+            synchronized (this) {
+                while (pending == null && running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending == null) {
+                    return;
+                }
+                checkpoint = pending;
+                pending = null;
+            }
+            
+            try {
+                write(checkpoint);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not write checkpoint for hour " + checkpoint.getHour() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void write(Checkpoint checkpoint) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            checkpoint.write(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
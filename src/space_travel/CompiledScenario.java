@@ -0,0 +1,360 @@
+/**
+ * <p>
+ * This class turns the three text input files into a single binary file and loads
+ * it back. The binary file is laid out in columns: a table of every distinct string,
+ * then one column per field of the planets, ships and people, holding numbers and
+ * indexes into the string table, then the index of every person on each planet in
+ * population order. People's names are not in the string table but packed one after
+ * another, the same way a PersonStore keeps them. Loading memory-maps the columns and
+ * builds the planets, ships and people straight from them, so no text is parsed; the
+ * people's columns are copied into the PersonStore in bulk. When the binary file is missing,
+ * from another version, or older than any of the text files, the text files are read
+ * instead.
+ * </p>
+ * <p>
+ * Layout (all numbers big-endian):
+ * </p>
+ * <pre>
+ * int magic, int version, int planets, int ships, int people, int strings, long stringBytes, long nameBytes
+ * long[strings + 1] string offsets, byte[stringBytes] UTF-8 string data
+ * planets: int[] name, int[] dayLength, long[] epochHour
+ * ships:   int[] name, int[] departurePlanet, int[] destinationPlanet, int[] departureDate,
+ *          long[] departureDay, int[] travelDuration
+ * people:  int[] end of each name, byte[nameBytes] UTF-8 names, int[] age, int[] lifeRemaining, int[] currentVehicle
+ * placement: int[planets + 1] start of each planet's members, int[] members
+ * </pre>
+ */
+
+package space_travel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class CompiledScenario {
+    private static final int MAGIC = 0x53545343; // "STSC"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 40;
+    
+    /**
+     * Reads the text files and writes them out as one compiled scenario file.
+     * 
+     * @param target The binary file to write
+     * @param planetsFile Path of the planets file
+     * @param shipsFile Path of the spaceships file
+     * @param peopleFile Path of the people file
+     */
+    public static void compile(String target, String planetsFile, String shipsFile, String peopleFile) throws IOException {
+        Scenario scenario = FileReader.readScenario(planetsFile, shipsFile, peopleFile);
+        write(Path.of(target), scenario);
+    }
+    
+    /**
+     * Loads a scenario from the compiled file, or from the text files if the compiled
+     * file is missing, unreadable or older than any of them.
+     * 
+     * @param compiledFile Path of the compiled scenario file
+     * @param planetsFile Path of the planets file
+     * @param shipsFile Path of the spaceships file
+     * @param peopleFile Path of the people file
+     * @return The loaded scenario with everyone placed
+     */
+    public static Scenario load(String compiledFile, String planetsFile, String shipsFile, String peopleFile) {
+        return load(compiledFile, planetsFile, shipsFile, peopleFile, PersonStore.Backend.HEAP);
+    }
+    
+    /**
+     * Like load(String, String, String, String), keeping the people in the given kind of store.
+     */
+    public static Scenario load(String compiledFile, String planetsFile, String shipsFile, String peopleFile,
+            PersonStore.Backend backend) {
+        Path compiled = Path.of(compiledFile);
+        if (Files.exists(compiled)) {
+            try {
+                if (isUpToDate(compiled, planetsFile, shipsFile, peopleFile)) {
+                    return read(compiled, backend);
+                }
+                System.err.println("Warning: '" + compiledFile + "' is older than the text files. Reading the text files instead.");
+            } catch (IOException e) {
+                System.err.println("Warning: Cannot use '" + compiledFile + "' (" + e.getMessage() + "). Reading the text files instead.");
+            }
+        }
+        return FileReader.readScenario(planetsFile, shipsFile, peopleFile, backend);
+    }
+    
+    private static boolean isUpToDate(Path compiled, String... sources) throws IOException {
+        FileTime compiledTime = Files.getLastModifiedTime(compiled);
+        for (String source : sources) {
+            try {
+                if (Files.getLastModifiedTime(Path.of(source)).compareTo(compiledTime) > 0) {
+                    return false;
+                }
+            } catch (NoSuchFileException e) {
+                // Nothing to be stale against
+            }
+        }
+        return true;
+    }
+    
+    static void write(Path target, Scenario scenario) throws IOException {
+        List<Planet> planets = scenario.getPlanets();
+        List<Spaceship> ships = scenario.getShips();
+        PersonStore people = scenario.getPeople();
+        int[][] placement = scenario.getPlacement();
+        
+        
+        // Every distinct string gets one slot in the table
+        StringTable strings = new StringTable();
+        int[] planetNames = new int[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            planetNames[i] = strings.add(planets.get(i).getName());
+        }
+        int[][] shipStrings = new int[ships.size()][];
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            shipStrings[i] = new int[] {
+                strings.add(ship.getName()), strings.add(ship.getDeparturePlanet()),
+                strings.add(ship.getDestinationPlanet()), strings.add(ship.getDepartureDate())
+            };
+        }
+        int[] vehicles = new int[people.size()];
+        for (int i = 0; i < people.size(); i++) {
+            vehicles[i] = strings.add(people.getLocation(i));
+        }
+        long nameBytes = people.size() == 0 ? 0 : people.getNameEnd(people.size() - 1);
+        if (strings.byteCount > Integer.MAX_VALUE) {
+            throw new IOException("string data is larger than 2 GB");
+        }
+        
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(planets.size());
+            out.writeInt(ships.size());
+            out.writeInt(people.size());
+            out.writeInt(strings.values.size());
+            out.writeLong(strings.byteCount);
+            out.writeLong(nameBytes);
+            
+            long offset = 0;
+            out.writeLong(offset);
+            for (byte[] bytes : strings.values) {
+                offset += bytes.length;
+                out.writeLong(offset);
+            }
+            for (byte[] bytes : strings.values) {
+                out.write(bytes);
+            }
+            
+            for (int name : planetNames) out.writeInt(name);
+            for (Planet planet : planets) out.writeInt(planet.getDayLength());
+            for (Planet planet : planets) out.writeLong(planet.getTime().getEpochHour());
+            
+            for (int column = 0; column < 4; column++) {
+                for (int[] row : shipStrings) out.writeInt(row[column]);
+            }
+            for (Spaceship ship : ships) out.writeLong(ship.getDepartureDay());
+            for (Spaceship ship : ships) out.writeInt(ship.getTravelDuration());
+            
+            for (int i = 0; i < people.size(); i++) out.writeInt(people.getNameEnd(i));
+            byte[] buffer = new byte[1 << 16];
+            for (long written = 0; written < nameBytes; ) {
+                int length = (int) Math.min(buffer.length, nameBytes - written);
+                people.getNameBytes((int) written, buffer, 0, length);
+                out.write(buffer, 0, length);
+                written += length;
+            }
+            for (int i = 0; i < people.size(); i++) out.writeInt(people.getAge(i));
+            for (int i = 0; i < people.size(); i++) out.writeInt(people.getLifeRemaining(i));
+            for (int vehicle : vehicles) out.writeInt(vehicle);
+            
+            int start = 0;
+            out.writeInt(start);
+            for (int[] members : placement) {
+                start += members.length;
+                out.writeInt(start);
+            }
+            for (int[] members : placement) {
+                for (int member : members) out.writeInt(member);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    static Scenario read(Path source, PersonStore.Backend backend) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a compiled scenario");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("compiled with format version " + version + ", expected " + VERSION);
+            }
+            int planetCount = header.getInt();
+            int shipCount = header.getInt();
+            int personCount = header.getInt();
+            int stringCount = header.getInt();
+            long stringBytes = header.getLong();
+            long nameBytes = header.getLong();
+            
+            Sections sections = new Sections(channel, HEADER_SIZE);
+            ByteBuffer offsets = sections.next(8L * (stringCount + 1));
+            ByteBuffer data = sections.next(stringBytes);
+            String[] strings = decodeStrings(offsets, data, stringCount);
+            
+            ByteBuffer planetNames = sections.next(4L * planetCount);
+            ByteBuffer dayLengths = sections.next(4L * planetCount);
+            ByteBuffer epochHours = sections.next(8L * planetCount);
+            List<Planet> planets = new ArrayList<>(planetCount);
+            for (int i = 0; i < planetCount; i++) {
+                planets.add(new Planet(strings[planetNames.getInt(4 * i)], dayLengths.getInt(4 * i), epochHours.getLong(8 * i)));
+            }
+            
+            ByteBuffer shipNames = sections.next(4L * shipCount);
+            ByteBuffer departures = sections.next(4L * shipCount);
+            ByteBuffer destinations = sections.next(4L * shipCount);
+            ByteBuffer departureDates = sections.next(4L * shipCount);
+            ByteBuffer departureDays = sections.next(8L * shipCount);
+            ByteBuffer durations = sections.next(4L * shipCount);
+            List<Spaceship> ships = new ArrayList<>(shipCount);
+            for (int i = 0; i < shipCount; i++) {
+                ships.add(new Spaceship(strings[shipNames.getInt(4 * i)], strings[departures.getInt(4 * i)],
+                        strings[destinations.getInt(4 * i)], strings[departureDates.getInt(4 * i)],
+                        departureDays.getLong(8 * i), durations.getInt(4 * i)));
+            }
+            
+            ByteBuffer nameEnds = sections.next(4L * personCount);
+            ByteBuffer names = sections.next(nameBytes);
+            ByteBuffer ages = sections.next(4L * personCount);
+            ByteBuffer lives = sections.next(4L * personCount);
+            ByteBuffer vehicles = sections.next(4L * personCount);
+            PersonStore people = new PersonStore(backend, personCount);
+            // Each location string is looked up in the symbol table once, the first time it
+            // comes up. The same pass checks the name ends, which are then copied as they are
+            int[] symbols = new int[stringCount];
+            Arrays.fill(symbols, Integer.MIN_VALUE);
+            int nameStart = 0;
+            for (int i = 0; i < personCount; i++) {
+                int vehicle = vehicles.getInt(4 * i);
+                if (symbols[vehicle] == Integer.MIN_VALUE) {
+                    symbols[vehicle] = people.getSymbols().intern(strings[vehicle]);
+                }
+                int nameEnd = nameEnds.getInt(4 * i);
+                if (nameEnd < nameStart || nameEnd > nameBytes) {
+                    throw new IOException("file is truncated or corrupt");
+                }
+                nameStart = nameEnd;
+            }
+            if (nameStart != nameBytes) {
+                throw new IOException("file is truncated or corrupt");
+            }
+            people.addColumns(personCount, names, nameEnds, ages, lives, vehicles, symbols);
+            
+            ByteBuffer starts = sections.next(4L * (planetCount + 1));
+            ByteBuffer members = sections.next(4L * starts.getInt(4 * planetCount));
+            IntStream.range(0, planetCount).parallel().forEach(p -> {
+                Planet planet = planets.get(p);
+                for (int m = starts.getInt(4 * p); m < starts.getInt(4 * (p + 1)); m++) {
+                    planet.addPerson(people, members.getInt(4 * m));
+                }
+            });
+            
+            return new Scenario(planets, ships, people);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("file is truncated or corrupt");
+        }
+    }
+    
+    private static String[] decodeStrings(ByteBuffer offsets, ByteBuffer data, int count) {
+        String[] strings = new String[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int start = (int) offsets.getLong(8 * i);
+            int length = (int) offsets.getLong(8 * (i + 1)) - start;
+            byte[] bytes = new byte[length];
+            data.get(start, bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        });
+        return strings;
+    }
+    
+    /**
+     * Maps the sections of the file one after another. Each section is mapped on its
+     * own, so only a single column has to fit within the 2 GB limit of a buffer.
+     */
+    private static class Sections {
+        private final FileChannel channel;
+        private long position;
+        
+        Sections(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+        
+        ByteBuffer next(long size) throws IOException {
+            if (size > Integer.MAX_VALUE || position + size > channel.size()) {
+                throw new IOException("file is truncated or corrupt");
+            }
+            ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return section;
+        }
+    }
+    
+    private static class StringTable {
+        final Map<String, Integer> index = new HashMap<>();
+        final List<byte[]> values = new ArrayList<>();
+        long byteCount;
+        
+        int add(String value) {
+            Integer existing = index.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            values.add(bytes);
+            byteCount += bytes.length;
+            index.put(value, values.size() - 1);
+            return values.size() - 1;
+        }
+    }
+    
+    /**
+     * Compiles the text files in the working directory, or the ones given, into a scenario file.
+     * <pre>
+     * CompiledScenario [OUTPUT [PLANETS SHIPS PEOPLE]]
+     * </pre>
+     */
+    public static void main(String[] args) {
+        if (args.length != 0 && args.length != 1 && args.length != 4) {
+            System.err.println("Usage: CompiledScenario [OUTPUT [PLANETS SHIPS PEOPLE]]");
+            return;
+        }
+        String target = args.length > 0 ? args[0] : Main.COMPILED_FILE;
+        String planetsFile = args.length == 4 ? args[1] : Main.PLANETS_FILE;
+        String shipsFile = args.length == 4 ? args[2] : Main.SHIPS_FILE;
+        String peopleFile = args.length == 4 ? args[3] : Main.PEOPLE_FILE;
+        
+        try {
+            compile(target, planetsFile, shipsFile, peopleFile);
+        } catch (IOException e) {
+            System.err.println("Error writing compiled scenario: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * <p>
+ * This class collects whole-number samples one at a time and reports their mean and
+ * percentiles. Only how often each distinct value came up is stored, so memory grows
+ * with the spread of the values and not with the number of samples.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class Distribution {
+    private final TreeMap<Long, Long> counts = new TreeMap<>();
+    private long count;
+    private double sum;
+    
+    public void add(long value) {
+        counts.merge(value, 1L, Long::sum);
+        count++;
+        sum += value;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+    
+    /**
+     * Returns the smallest sample that at least the given share of all samples is less
+     * than or equal to (the nearest-rank percentile).
+     * 
+     * @param percent The percentile, from 0 to 100
+     * @return The percentile value, or 0 if there are no samples
+     */
+    public long getPercentile(double percent) {
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return entry.getKey();
+            }
+        }
+        return 0;
+    }
+}
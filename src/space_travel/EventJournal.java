@@ -0,0 +1,307 @@
+/**
+ * <p>
+ * This class writes a binary log of what happens during a run: people boarding and
+ * dying, and ships departing, arriving and being destroyed, each with the simulation
+ * hour and the local date of the planet it happened on. The simulation hands records
+ * to a lock-free ring buffer and never touches the file itself; a background thread
+ * drains the ring in batches and writes them to a file channel. If the ring is full,
+ * the simulation waits for the writer, so no record is ever lost.
+ * </p>
+ * <p>
+ * The file starts with a header describing the planets and ships, followed by the
+ * records. Everything that happens to people is written as one record per group of
+ * people, such as everyone who died in the same place in the same hour, followed by
+ * their ids; this keeps both the file and the cost per person small. JournalReader
+ * reads it back.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class EventJournal implements Runnable {
+    static final int MAGIC = 0x53544A4C; // "STJL"
+    static final int VERSION = 1;
+    static final int RECORD_SIZE = 17;
+    
+    // Record types. PLACED, BOOKED and SHIP_STATE only describe the state when
+    // journaling began. The subject of a PLACED, BOOKED, BOARDED or DIED record is the
+    // number of people it covers, whose ids follow it
+    /** People are on a planet; the object is the planet index. */
+    public static final int PLACED = 1;
+    /**
+     * People are booked on a ship; the object is the ship index. They wait on the planet
+     * of their PLACED record, or are already on board if they have none.
+     */
+    public static final int BOOKED = 2;
+    /** A ship's state; the subject is the ship index, the object one of the SHIP_ constants. */
+    public static final int SHIP_STATE = 3;
+    /** People boarded a ship; the object is the ship index. */
+    public static final int BOARDED = 4;
+    /** A ship left; the subject is the ship index, the object the planet index. */
+    public static final int DEPARTED = 5;
+    /** A ship arrived and everyone on board got off; the object is the planet index. */
+    public static final int ARRIVED = 6;
+    /** People died; the object is the planet index whose date is given, or -1. */
+    public static final int DIED = 7;
+    /** A ship was destroyed; the subject is the ship index and the object is unused. */
+    public static final int DESTROYED = 8;
+    
+    public static final int SHIP_WAITING = 0;
+    public static final int SHIP_IN_TRANSIT = 1;
+    public static final int SHIP_ARRIVED = 2;
+    public static final int SHIP_DESTROYED = 3;
+    
+    /**
+     * Returns true for the record types that are about a group of people.
+     */
+    public static boolean isAboutPeople(int type) {
+        return type == PLACED || type == BOOKED || type == BOARDED || type == DIED;
+    }
+    
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long IDLE_NANOS = 50_000_000;
+    
+    private final Path file;
+    private final int mask;
+    
+    // Each slot is three longs next to each other, so a record shares one cache line:
+    // (s + 1) << 8 | type once the record with sequence number s is filled in, then
+    // hour << 32 | day, then subject << 32 | object
+    private final long[] slots;
+    
+    // The ids of a record about people, or null
+    private final int[][] people;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    
+    private FileChannel channel;
+    private volatile boolean running;
+    private Thread thread;
+    
+    public EventJournal(Path file) {
+        this(file, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param file The journal file; it is replaced if it exists
+     * @param capacity How many records the ring holds, rounded up to a power of two
+     */
+    public EventJournal(Path file, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.file = file;
+        this.mask = size - 1;
+        this.slots = new long[3 * size];
+        this.people = new int[size][];
+    }
+    
+    /**
+     * Creates the file, writes the header and starts the writer thread.
+     * 
+     * @param planets The planets, in the order their indexes refer to
+     * @param ships The ships, in the order their indexes refer to
+     * @param people The number of people in the store
+     * @param hour The simulation hour journaling starts at
+     */
+    public void start(List<Planet> planets, List<Spaceship> ships, int people, int hour) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.wrap(header(planets, ships, people, hour));
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        
+        running = true;
+        thread = new Thread(this, "journal-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private static byte[] header(List<Planet> planets, List<Spaceship> ships, int people, int hour) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(hour);
+        out.writeInt(people);
+        
+        out.writeInt(planets.size());
+        for (Planet planet : planets) {
+            out.writeUTF(planet.getName());
+            out.writeLong(planet.getTime().getEpochHour());
+            out.writeInt(planet.getTime().getDayLength());
+        }
+        
+        out.writeInt(ships.size());
+        for (Spaceship ship : ships) {
+            out.writeUTF(ship.getName());
+            out.writeInt(planets.indexOf(ship.getDeparture()));
+            out.writeInt(planets.indexOf(ship.getDestination()));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Adds a record about a ship. Safe to call from several threads at once; waits only
+     * if the writer has fallen a whole ring behind.
+     * 
+     * @param type One of the record type constants
+     * @param hour The simulation hour
+     * @param day The local date of the planet it happened on, as an epoch day, or -1
+     * @param subject The ship the record is about
+     * @param object The planet or state it refers to
+     */
+    public void append(int type, int hour, long day, int subject, int object) {
+        append(type, hour, day, subject, object, null);
+    }
+    
+    /**
+     * Adds a record about a group of people, like append() does for a ship.
+     * 
+     * @param type PLACED, BOOKED, BOARDED or DIED
+     * @param ids The store ids of the people; the array is kept, so it must not change
+     * @param object The planet or ship it refers to
+     */
+    public void append(int type, int hour, long day, int[] ids, int object) {
+        append(type, hour, day, ids.length, object, ids);
+    }
+    
+    private void append(int type, int hour, long day, int subject, int object, int[] ids) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed > mask) {
+            // Let the writer run, which matters most when there are few cores
+            LockSupport.unpark(thread);
+            Thread.yield();
+        }
+        
+        int index = (int) sequence & mask;
+        int slot = 3 * index;
+        people[index] = ids;
+        slots[slot + 1] = (long) hour << 32 | (day & 0xFFFFFFFFL);
+        slots[slot + 2] = (long) subject << 32 | (object & 0xFFFFFFFFL);
+        SLOTS.setRelease(slots, slot, (sequence + 1) << 8 | type);
+        
+        // The writer sleeps while there is little to do, so it is woken every half ring
+        // instead of waking up on its own all the time
+        if ((sequence & (mask >> 1)) == 0) {
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    /**
+     * Writes every record added so far, closes the file and stops the writer thread.
+     * Nothing may be appended while or after this is called.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    @Override
+    public void run() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        boolean failed = false;
+        
+        while (true) {
+            long next = consumed;
+            
+            // Take records up to the first one that is claimed but not filled in yet
+            while (true) {
+                int index = (int) next & mask;
+                int slot = 3 * index;
+                long header = (long) SLOTS.getAcquire(slots, slot);
+                if (header >>> 8 != next + 1) {
+                    break;
+                }
+                if (buffer.remaining() < RECORD_SIZE) {
+                    failed = flush(buffer, failed);
+                }
+                buffer.put((byte) header).putLong(slots[slot + 1]).putLong(slots[slot + 2]);
+                int[] ids = people[index];
+                if (ids != null) {
+                    people[index] = null;
+                    failed = put(buffer, ids, failed);
+                }
+                next++;
+                // Hand the slots back in batches so producers are not held up too long
+                if ((next & 1023) == 0) {
+                    consumed = next;
+                }
+            }
+            
+            if (next != consumed) {
+                consumed = next;
+                continue;
+            }
+            if (!running && claimed.get() == next) {
+                break;
+            }
+            failed = flush(buffer, failed);
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+        
+        flush(buffer, failed);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not close journal '" + file + "': " + e.getMessage());
+        }
+    }
+    
+    private boolean put(ByteBuffer buffer, int[] ids, boolean failed) {
+        int done = 0;
+        while (done < ids.length) {
+            if (buffer.remaining() < Integer.BYTES) {
+                failed = flush(buffer, failed);
+            }
+            int count = Math.min(ids.length - done, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(ids, done, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            done += count;
+        }
+        return failed;
+    }
+    
+    // After a write error the remaining records are dropped, so the simulation never blocks
+    private boolean flush(ByteBuffer buffer, boolean failed) {
+        buffer.flip();
+        if (!failed && buffer.hasRemaining()) {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Could not write journal '" + file + "': " + e.getMessage());
+                failed = true;
+            }
+        }
+        buffer.clear();
+        return failed;
+    }
+}
@@ -9,151 +9,363 @@
 
 package space_travel;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class FileReader {
     
-    // Larger buffer size for reading large files
-    private static final int BUFFER_SIZE = 8192;
+    // Files are cut into pieces of at least this size for parallel parsing
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    
+    // Below this many people, placing them in parallel costs more than it saves
+    private static final int MIN_PARALLEL_PEOPLE = 1 << 16;
+    
+    /**
+     * Loads all three input files at the same time and places the people on their
+     * starting planets. The result is the same as reading the files one after another.
+     * 
+     * @param planetsFile Path of the planets file
+     * @param shipsFile Path of the spaceships file
+     * @param peopleFile Path of the people file
+     * @return The loaded scenario
+     */
+    public static Scenario readScenario(String planetsFile, String shipsFile, String peopleFile) {
+        return readScenario(planetsFile, shipsFile, peopleFile, PersonStore.Backend.HEAP);
+    }
+    
+    /**
+     * Like readScenario(String, String, String), keeping the people in the given kind of store.
+     */
+    public static Scenario readScenario(String planetsFile, String shipsFile, String peopleFile, PersonStore.Backend backend) {
+        CompletableFuture<List<Planet>> planets = CompletableFuture.supplyAsync(() -> readPlanets(planetsFile));
+        CompletableFuture<List<Spaceship>> ships = CompletableFuture.supplyAsync(() -> readSpaceships(shipsFile));
+        PersonStore people = readPeople(peopleFile, backend);
+        
+        Scenario scenario = new Scenario(planets.join(), ships.join(), people);
+        placePeople(scenario.getPeople(), scenario.getPlanets(), scenario.getShips());
+        return scenario;
+    }
     
     public static List<Planet> readPlanets(String filePath) {
+        return readPlanets(filePath, System.err::println);
+    }
+    
+    /**
+     * Like readPlanets(String), handing the warnings and errors to the given sink instead
+     * of printing them.
+     */
+    public static List<Planet> readPlanets(String filePath, Consumer<String> warnings) {
         List<Planet> planets = new ArrayList<>(100); // Pre-allocate for better performance
         
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)), BUFFER_SIZE)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) continue;
-                
-                // Use simple parsing with minimal checking
-                String[] parts = line.split("#");
-                if (parts.length >= 3) {
-                    String name = parts[0].trim();
-                    int dayLength = Integer.parseInt(parts[1].trim());
-                    String date = parts[2].trim();
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            RecordScanner scanner = new RecordScanner(channel);
+            while (scanner.nextRecord()) {
+                try {
+                    scanner.requireFields(3);
+                    String name = scanner.stringField(0);
+                    int dayLength = scanner.intField(1);
+                    String date = scanner.stringField(2);
+                    if (dayLength <= 0) {
+                        throw new IllegalArgumentException("day length must be positive but is " + dayLength);
+                    }
                     
                     Planet planet = new Planet(name, dayLength, date);
                     planets.add(planet);
+                } catch (IllegalArgumentException e) {
+                    reportMalformedLine(warnings, filePath, scanner.getLineNumber(), e);
                 }
             }
         } catch (IOException e) {
-            System.err.println("Error reading planet file: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Error processing planet file: " + e.getMessage());
+            warnings.accept("Error reading planet file: " + e.getMessage());
         }
         
         return planets;
     }
     
     public static List<Spaceship> readSpaceships(String filePath) {
+        return readSpaceships(filePath, System.err::println);
+    }
+    
+    /**
+     * Like readSpaceships(String), handing the warnings and errors to the given sink
+     * instead of printing them.
+     */
+    public static List<Spaceship> readSpaceships(String filePath, Consumer<String> warnings) {
         List<Spaceship> ships = new ArrayList<>(100); // Pre-allocate for better performance
         
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)), BUFFER_SIZE)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) continue;
-                
-                // Use simple parsing with minimal checking
-                String[] parts = line.split("#");
-                if (parts.length >= 5) {
-                    String name = parts[0].trim();
-                    String departurePlanet = parts[1].trim();
-                    String destinationPlanet = parts[2].trim();
-                    String departureDate = parts[3].trim();
-                    int travelDuration = Integer.parseInt(parts[4].trim());
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            RecordScanner scanner = new RecordScanner(channel);
+            while (scanner.nextRecord()) {
+                try {
+                    scanner.requireFields(5);
+                    String name = scanner.stringField(0);
+                    String departurePlanet = scanner.pooledField(1);
+                    String destinationPlanet = scanner.pooledField(2);
+                    String departureDate = scanner.pooledField(3);
+                    int travelDuration = scanner.intField(4);
                     
                     Spaceship ship = new Spaceship(name, departurePlanet, destinationPlanet, departureDate, travelDuration);
                     ships.add(ship);
+                } catch (IllegalArgumentException e) {
+                    reportMalformedLine(warnings, filePath, scanner.getLineNumber(), e);
                 }
             }
         } catch (IOException e) {
-            System.err.println("Error reading spaceship file: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Error processing spaceship file: " + e.getMessage());
+            warnings.accept("Error reading spaceship file: " + e.getMessage());
         }
         
         return ships;
     }
     
-    public static List<Person> readPeople(String filePath) {
-        List<Person> people = new ArrayList<>(1000); // Pre-allocate for better performance
-        
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)), BUFFER_SIZE)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) continue;
-                
-                // Use simple parsing with minimal checking
-                String[] parts = line.split("#");
-                if (parts.length >= 4) {
-                    String name = parts[0].trim();
-                    int age = Integer.parseInt(parts[1].trim());
-                    int lifeRemaining = Integer.parseInt(parts[2].trim());
-                    String currentVehicle = parts[3].trim();
+    /**
+     * Reads the people file. Large files are cut into chunks at line boundaries and
+     * the chunks are parsed in parallel; the people come back in file order.
+     * 
+     * @param filePath Path of the people file
+     * @return The people in the order they appear in the file
+     */
+    public static PersonStore readPeople(String filePath) {
+        return readPeople(filePath, PersonStore.Backend.HEAP);
+    }
+    
+    /**
+     * Like readPeople(String), keeping the people in the given kind of store.
+     */
+    public static PersonStore readPeople(String filePath, PersonStore.Backend backend) {
+        return readPeople(filePath, backend, location -> true, System.err::println);
+    }
+    
+    /**
+     * Like readPeople(String, PersonStore.Backend), keeping only the people whose
+     * location passes the filter. Line numbers in warnings still count every line.
+     * 
+     * @param keep Tells from the name of a person's ship or planet whether to keep them
+     * @param warnings Takes the warnings and errors instead of System.err
+     */
+    public static PersonStore readPeople(String filePath, PersonStore.Backend backend, Predicate<String> keep,
+            Consumer<String> warnings) {
+        PersonStore people = new PersonStore(backend, 1000); // Pre-allocate for better performance
+        
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, channel.size() / (4L * ForkJoinPool.getCommonPoolParallelism()));
+            List<long[]> ranges = splitAtLines(channel, chunkSize);
+            
+            List<PeopleChunk> chunks = ranges.parallelStream()
+                    .map(range -> readPeopleChunk(channel, range[0], range[1], people.getSymbols(), keep))
+                    .toList();
+            
+            people.addAll(chunks.stream().map(chunk -> chunk.people).toList());
+            int linesBefore = 0;
+            for (PeopleChunk chunk : chunks) {
+                for (int i = 0; i < chunk.problemLines.size(); i++) {
+                    reportMalformedLine(warnings, filePath, linesBefore + chunk.problemLines.get(i), chunk.problems.get(i));
+                }
+                linesBefore += chunk.lineCount;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            warnings.accept("Error reading person file: " + e.getMessage());
+        }
+        
+        return people;
+    }
+    
+    private static PeopleChunk readPeopleChunk(FileChannel channel, long start, long end, SymbolTable symbols,
+            Predicate<String> keep) {
+        PeopleChunk chunk = new PeopleChunk(symbols);
+        
+        try {
+            RecordScanner scanner = new RecordScanner(channel, start, end);
+            while (scanner.nextRecord()) {
+                try {
+                    scanner.requireFields(4);
+                    int age = scanner.intField(1);
+                    int lifeRemaining = scanner.intField(2);
+                    String currentVehicle = scanner.pooledField(3);
+                    int nameLength = scanner.rawField(0);
+                    if (!keep.test(currentVehicle)) continue;
                     
-                    Person person = new Person(name, age, lifeRemaining, currentVehicle);
-                    people.add(person);
+                    chunk.people.add(scanner.rawBytes(), 0, nameLength, age, lifeRemaining, currentVehicle);
+                } catch (IllegalArgumentException e) {
+                    chunk.problemLines.add(scanner.getLineNumber());
+                    chunk.problems.add(e);
                 }
             }
+            chunk.lineCount = scanner.getLineNumber();
         } catch (IOException e) {
-            System.err.println("Error reading person file: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Error processing person file: " + e.getMessage());
+            throw new UncheckedIOException(e);
         }
         
-        return people;
+        return chunk;
     }
     
-    public static void placePeople(List<Person> people, List<Planet> planets, List<Spaceship> ships) {
-        // Create maps for faster lookups
-        Map<String, Spaceship> shipMap = new HashMap<>(ships.size() * 2);
-        Map<String, Planet> planetMap = new HashMap<>(planets.size() * 2);
+    /**
+     * Cuts a file into byte ranges of roughly the given size, each ending just after a newline.
+     */
+    private static List<long[]> splitAtLines(FileChannel channel, long chunkSize) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        long start = 0;
         
-        for (Spaceship ship : ships) {
-            shipMap.put(ship.getName(), ship);
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read && newline < 0; i++) {
+                    if (probe.get(i) == '\n') newline = i;
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            
+            ranges.add(new long[] {start, end});
+            start = end;
         }
         
+        return ranges;
+    }
+    
+    private static class PeopleChunk {
+        final PersonStore people;
+        final List<Integer> problemLines = new ArrayList<>();
+        final List<IllegalArgumentException> problems = new ArrayList<>();
+        int lineCount;
+        
+        // Sharing the symbol table means locations need no translating when the chunks are joined
+        PeopleChunk(SymbolTable symbols) {
+            this.people = new PersonStore(PersonStore.Backend.HEAP, 1024, symbols);
+        }
+    }
+    
+    private static void reportMalformedLine(Consumer<String> warnings, String filePath, int lineNumber,
+            IllegalArgumentException e) {
+        warnings.accept("Warning: Skipping line " + lineNumber + " of '" + filePath + "': " + e.getMessage());
+    }
+    
+    /**
+     * Puts every person on their starting planet: the departure planet of the ship
+     * they are booked on, or the planet they are named to be on. Large populations are
+     * resolved in parallel batches and then added planet by planet, so each planet
+     * ends up with its people in file order just like a sequential pass.
+     * 
+     * @param people The people to place, in file order
+     * @param planets The planets
+     * @param ships The spaceships
+     */
+    public static void placePeople(PersonStore people, List<Planet> planets, List<Spaceship> ships) {
+        // Work out once per name where people booked on it start: for a ship, its departure
+        // planet; for a planet, the planet itself. Ships win over planets of the same name
+        SymbolTable symbols = people.getSymbols();
         for (Planet planet : planets) {
-            planetMap.put(planet.getName(), planet);
+            symbols.intern(planet.getName());
+        }
+        for (Spaceship ship : ships) {
+            symbols.intern(ship.getName());
+            symbols.intern(ship.getDeparturePlanet());
+        }
+        
+        int[] planetIndex = new int[symbols.size()];
+        Arrays.fill(planetIndex, -1);
+        for (int i = 0; i < planets.size(); i++) {
+            planetIndex[symbols.find(planets.get(i).getName())] = i;
+        }
+        
+        Spaceship[] shipBySymbol = new Spaceship[symbols.size()];
+        for (Spaceship ship : ships) {
+            shipBySymbol[symbols.find(ship.getName())] = ship;
+        }
+        
+        int[] targets = planetIndex.clone();
+        for (int symbol = 0; symbol < shipBySymbol.length; symbol++) {
+            if (shipBySymbol[symbol] != null) {
+                targets[symbol] = planetIndex[symbols.find(shipBySymbol[symbol].getDeparturePlanet())];
+            }
+        }
+        
+        int batchCount = people.size() < MIN_PARALLEL_PEOPLE ? 1 : 4 * ForkJoinPool.getCommonPoolParallelism();
+        int batchSize = (people.size() + batchCount - 1) / Math.max(batchCount, 1);
+        
+        List<PlacementBatch> batches = IntStream.range(0, batchCount).parallel()
+                .mapToObj(b -> resolvePlacements(people, b * batchSize, Math.min(people.size(), (b + 1) * batchSize),
+                        targets, shipBySymbol, planets.size()))
+                .toList();
+        
+        for (PlacementBatch batch : batches) {
+            for (String warning : batch.warnings) {
+                System.err.println(warning);
+            }
         }
         
-        for (Person person : people) {
-            String vehicleName = person.getCurrentVehicle();
+        IntStream.range(0, planets.size()).parallel().forEach(p -> {
+            Planet planet = planets.get(p);
+            for (PlacementBatch batch : batches) {
+                IntList arrivals = batch.byPlanet[p];
+                if (arrivals != null) {
+                    for (int i = 0; i < arrivals.size(); i++) {
+                        planet.addPerson(people, arrivals.get(i));
+                    }
+                }
+            }
+        });
+    }
+    
+    private static PlacementBatch resolvePlacements(PersonStore people, int from, int to,
+            int[] targets, Spaceship[] shipBySymbol, int planetCount) {
+        PlacementBatch batch = new PlacementBatch();
+        batch.byPlanet = new IntList[planetCount];
+        
+        for (int i = from; i < to; i++) {
+            int vehicle = people.getLocationId(i);
+            int target = vehicle >= 0 && vehicle < targets.length ? targets[vehicle] : -1;
             
-            // Check if the vehicle name matches a ship
-            Spaceship ship = shipMap.get(vehicleName);
-            if (ship != null) {
-                // CORRECT LOGIC: Place person on the ship's departure planet
-                Planet departurePlanet = planetMap.get(ship.getDeparturePlanet());
-                if (departurePlanet != null) {
-                    departurePlanet.addPerson(person);
-                    // Keep person.currentVehicle as the ship name for boarding later
+            if (target < 0) {
+                Spaceship ship = vehicle >= 0 && vehicle < shipBySymbol.length ? shipBySymbol[vehicle] : null;
+                if (ship != null) {
+                    // The person is booked on a ship that leaves from a planet that does not exist
+                    batch.warnings.add("Warning: Departure planet '" + ship.getDeparturePlanet() + "' not found for ship '" + ship.getName() + "'. Person '" + people.getName(i) + "' cannot be placed.");
                 } else {
-                    // Handle case where departure planet doesn't exist (optional)
-                    System.err.println("Warning: Departure planet '" + ship.getDeparturePlanet() + "' not found for ship '" + ship.getName() + "'. Person '" + person.getName() + "' cannot be placed.");
+                    // If the location matches neither a ship nor a planet, the person is ignored
+                    batch.warnings.add("Warning: Initial location '" + people.getLocation(i) + "' not found for person '" + people.getName(i) + "'. Person ignored.");
                 }
-                continue; // Move to next person
+                continue;
             }
             
-            // Otherwise, assign to matching planet if one exists
-            Planet planet = planetMap.get(vehicleName);
-            if (planet != null) {
-                planet.addPerson(person);
-                continue; // Move to next person
+            // People booked on a ship keep the ship as their location, for boarding later
+            IntList arrivals = batch.byPlanet[target];
+            if (arrivals == null) {
+                arrivals = new IntList();
+                batch.byPlanet[target] = arrivals;
             }
-            
-            // If vehicleName matches neither a ship nor a planet, the person is ignored
-            // (as per removal of the defaultPlanet fallback in previous steps)
-            System.err.println("Warning: Initial location '" + vehicleName + "' not found for person '" + person.getName() + "'. Person ignored.");
+            arrivals.add(i);
         }
+        
+        return batch;
+    }
+    
+    private static class PlacementBatch {
+        IntList[] byPlanet;
+        final List<String> warnings = new ArrayList<>();
     }
 }
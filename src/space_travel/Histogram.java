@@ -0,0 +1,92 @@
+/**
+ * <p>
+ * This class counts non-negative samples, such as nanosecond timings, in a fixed array
+ * of buckets laid out like an HDR histogram: values below 64 each get their own bucket,
+ * and every power of two above that is split into 32 equal buckets. Recording is a
+ * couple of shifts and an array increment, memory use never changes, and any
+ * percentile read back is within about 3% of the true value.
+ * </p>
+ */
+
+package space_travel;
+
+public class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+    
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    
+    /**
+     * Adds one sample. Negative values are counted as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+    
+    private static int bucket(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+    
+    // The largest value that falls into a bucket
+    private static long highestIn(int bucket) {
+        if (bucket < 2 * SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        long sub = bucket % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public long getSum() {
+        return sum;
+    }
+    
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+    
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+    
+    public long getMax() {
+        return max;
+    }
+    
+    /**
+     * Returns the nearest-rank percentile, rounded up to the top of its bucket but never
+     * above the largest sample.
+     * 
+     * @param percent The percentile, from 0 to 100
+     * @return The percentile value, or 0 if there are no samples
+     */
+    public long getPercentile(double percent) {
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestIn(i), max);
+            }
+        }
+        return 0;
+    }
+}
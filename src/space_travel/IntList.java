@@ -0,0 +1,77 @@
+/**
+ * <p>
+ * This class is a growable list of plain ints, for lists of person ids that would
+ * otherwise need a boxed Integer per entry.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+public class IntList {
+    private int[] values;
+    private int size;
+    
+    public IntList() {
+        this(8);
+    }
+    
+    public IntList(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+    }
+    
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+    
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Removes every value the filter accepts, keeping the order of the rest.
+     * 
+     * @return How many values were removed
+     */
+    public int removeIf(IntPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test(values[i])) {
+                values[kept++] = values[i];
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+    
+    /**
+     * Removes and returns the last value.
+     */
+    public int removeLast() {
+        if (size == 0) throw new IndexOutOfBoundsException(0);
+        return values[--size];
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
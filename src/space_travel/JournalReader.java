@@ -0,0 +1,387 @@
+/**
+ * <p>
+ * This class reads a journal written by EventJournal. Records are streamed one at a
+ * time to a visitor, so a journal of any size can be read in constant memory. From the
+ * command line it either prints every record as a line of JSON or replays the journal
+ * to show where everyone was at a given hour.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class JournalReader implements Closeable {
+    private static final String[] TYPE_NAMES = {
+        null, "placed", "booked", "ship_state", "boarded", "departed", "arrived", "died", "destroyed"
+    };
+    
+    private final DataInputStream in;
+    private final int startHour;
+    private final int people;
+    private final String[] planetNames;
+    private final long[] planetEpochHours;
+    private final int[] planetDayLengths;
+    private final String[] shipNames;
+    private final int[] shipDepartures;
+    private final int[] shipDestinations;
+    
+    /**
+     * A record as it is read from the journal. Records about a group of people are
+     * handed over once per person, with that person's id as the subject.
+     */
+    public interface Visitor {
+        void visit(int type, int hour, long day, int subject, int object);
+    }
+    
+    /**
+     * Opens a journal and reads its header.
+     * 
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public JournalReader(Path file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != EventJournal.MAGIC) {
+                throw new IOException("not a journal file");
+            }
+            int version = in.readInt();
+            if (version != EventJournal.VERSION) {
+                throw new IOException("unsupported journal version " + version);
+            }
+            startHour = in.readInt();
+            people = in.readInt();
+            
+            int planets = in.readInt();
+            planetNames = new String[planets];
+            planetEpochHours = new long[planets];
+            planetDayLengths = new int[planets];
+            for (int i = 0; i < planets; i++) {
+                planetNames[i] = in.readUTF();
+                planetEpochHours[i] = in.readLong();
+                planetDayLengths[i] = in.readInt();
+            }
+            
+            int ships = in.readInt();
+            shipNames = new String[ships];
+            shipDepartures = new int[ships];
+            shipDestinations = new int[ships];
+            for (int i = 0; i < ships; i++) {
+                shipNames[i] = in.readUTF();
+                shipDepartures[i] = in.readInt();
+                shipDestinations[i] = in.readInt();
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    public int getStartHour() {
+        return startHour;
+    }
+    
+    public int getPeople() {
+        return people;
+    }
+    
+    public int getPlanetCount() {
+        return planetNames.length;
+    }
+    
+    public String getPlanetName(int planet) {
+        return planetNames[planet];
+    }
+    
+    /**
+     * Returns the local date on a planet at a simulation hour.
+     */
+    public String getPlanetDate(int planet, int hour) {
+        return Time.formatDate(Math.floorDiv(planetEpochHours[planet] + hour - startHour, planetDayLengths[planet]));
+    }
+    
+    public int getShipCount() {
+        return shipNames.length;
+    }
+    
+    public String getShipName(int ship) {
+        return shipNames[ship];
+    }
+    
+    /**
+     * Returns the index of the planet a ship leaves from, or -1 if there is no such planet.
+     */
+    public int getShipDeparture(int ship) {
+        return shipDepartures[ship];
+    }
+    
+    /**
+     * Returns the index of the planet a ship is headed to, or -1 if there is no such planet.
+     */
+    public int getShipDestination(int ship) {
+        return shipDestinations[ship];
+    }
+    
+    public static String typeName(int type) {
+        return type > 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : "unknown";
+    }
+    
+    /**
+     * Hands every remaining record to the visitor, in the order they were written. A
+     * journal cut short by a crash is read up to its last complete record.
+     */
+    public void forEach(Visitor visitor) throws IOException {
+        try {
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    return;
+                }
+                int hour = in.readInt();
+                int day = in.readInt();
+                int subject = in.readInt();
+                int object = in.readInt();
+                
+                if (!EventJournal.isAboutPeople(type)) {
+                    visitor.visit(type, hour, day, subject, object);
+                    continue;
+                }
+                for (int i = 0; i < subject; i++) {
+                    visitor.visit(type, hour, day, in.readInt(), object);
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("Warning: The journal ends in the middle of a record; it was probably cut short.");
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    /**
+     * Writes every record as one JSON object per line.
+     */
+    public void exportJson(PrintStream out) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        forEach((type, hour, day, subject, object) -> {
+            line.setLength(0);
+            line.append("{\"hour\":").append(hour);
+            if (day >= 0) {
+                line.append(",\"date\":\"").append(Time.formatDate(day)).append('"');
+            }
+            line.append(",\"event\":\"").append(typeName(type)).append('"');
+            switch (type) {
+                case EventJournal.PLACED:
+                    appendPerson(line, subject).append(",\"planet\":");
+                    appendName(line, planetNames[object]);
+                    break;
+                case EventJournal.BOOKED:
+                case EventJournal.BOARDED:
+                    appendPerson(line, subject).append(",\"ship\":");
+                    appendName(line, shipNames[object]);
+                    break;
+                case EventJournal.DIED:
+                    appendPerson(line, subject);
+                    break;
+                case EventJournal.SHIP_STATE:
+                    line.append(",\"ship\":");
+                    appendName(line, shipNames[subject]).append(",\"state\":\"").append(Simulation.SHIP_STATUSES[object]).append('"');
+                    break;
+                case EventJournal.DEPARTED:
+                case EventJournal.ARRIVED:
+                    line.append(",\"ship\":");
+                    appendName(line, shipNames[subject]).append(",\"planet\":");
+                    appendName(line, planetNames[object]);
+                    break;
+                case EventJournal.DESTROYED:
+                    line.append(",\"ship\":");
+                    appendName(line, shipNames[subject]);
+                    break;
+            }
+            out.append(line.append("}\n"));
+        });
+        out.flush();
+    }
+    
+    private static StringBuilder appendPerson(StringBuilder line, int id) {
+        return line.append(",\"person\":").append(id);
+    }
+    
+    // Also used by StatusServer, which writes the same kind of JSON
+    static StringBuilder appendName(StringBuilder line, String name) {
+        line.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < ' ') {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        return line.append('"');
+    }
+    
+    /**
+     * Replays the records up to and including an hour and prints the state they leave
+     * behind: each planet's date and population and each ship's status and passengers.
+     */
+    public void printStateAt(int hour, PrintStream out) throws IOException {
+        Replay replay = new Replay(hour);
+        forEach(replay);
+        
+        out.println("State at hour " + hour + " (journal starts at hour " + startHour + "):");
+        int[] populations = new int[planetNames.length];
+        int[] passengers = new int[shipNames.length];
+        int alive = 0;
+        for (int id = 0; id < people; id++) {
+            if (replay.dead[id]) continue;
+            if (replay.planets[id] >= 0) {
+                populations[replay.planets[id]]++;
+                alive++;
+            } else if (replay.ships[id] >= 0) {
+                passengers[replay.ships[id]]++;
+                alive++;
+            }
+        }
+        
+        out.printf("%-12s %-12s %10s%n", "Planet", "Date", "Population");
+        for (int i = 0; i < planetNames.length; i++) {
+            out.printf("%-12s %-12s %10d%n", planetNames[i], getPlanetDate(i, hour), populations[i]);
+        }
+        out.printf("%n%-12s %-12s %10s%n", "Ship Name", "Status", "Passengers");
+        for (int i = 0; i < shipNames.length; i++) {
+            out.printf("%-12s %-12s %10d%n", shipNames[i], Simulation.SHIP_STATUSES[replay.shipState(i)], passengers[i]);
+        }
+        out.println("\nAlive and placed: " + alive + " of " + people);
+    }
+    
+    /**
+     * Follows people and ships through the records up to a given hour.
+     */
+    private class Replay implements Visitor {
+        final int until;
+        final int[] planets = new int[people];
+        final int[] ships = new int[people];
+        final boolean[] dead = new boolean[people];
+        final int[] shipStates = new int[shipNames.length];
+        final IntList[] boarded = new IntList[shipNames.length];
+        
+        Replay(int until) {
+            this.until = until;
+            Arrays.fill(planets, -1);
+            Arrays.fill(ships, -1);
+            for (int i = 0; i < boarded.length; i++) {
+                boarded[i] = new IntList();
+            }
+        }
+        
+        @Override
+        public void visit(int type, int hour, long day, int subject, int object) {
+            if (hour > until) return;
+            
+            switch (type) {
+                case EventJournal.PLACED:
+                    planets[subject] = object;
+                    ships[subject] = -1;
+                    break;
+                case EventJournal.BOOKED:
+                    ships[subject] = object;
+                    if (planets[subject] < 0) {
+                        boarded[object].add(subject);
+                    }
+                    break;
+                case EventJournal.SHIP_STATE:
+                    shipStates[subject] = object;
+                    break;
+                case EventJournal.BOARDED:
+                    planets[subject] = -1;
+                    ships[subject] = object;
+                    boarded[object].add(subject);
+                    break;
+                case EventJournal.DEPARTED:
+                    shipStates[subject] = EventJournal.SHIP_IN_TRANSIT;
+                    break;
+                case EventJournal.ARRIVED:
+                    shipStates[subject] = EventJournal.SHIP_ARRIVED;
+                    IntList aboard = boarded[subject];
+                    for (int i = 0; i < aboard.size(); i++) {
+                        int id = aboard.get(i);
+                        if (ships[id] == subject && planets[id] < 0) {
+                            planets[id] = object;
+                            ships[id] = -1;
+                        }
+                    }
+                    break;
+                case EventJournal.DIED:
+                    dead[subject] = true;
+                    break;
+                case EventJournal.DESTROYED:
+                    shipStates[subject] = EventJournal.SHIP_DESTROYED;
+                    break;
+            }
+        }
+        
+        // Like the simulation, a ship that arrives after all its original passengers died
+        // counts as destroyed
+        int shipState(int ship) {
+            if (shipStates[ship] == EventJournal.SHIP_ARRIVED && !boarded[ship].isEmpty()) {
+                IntList originals = boarded[ship];
+                for (int i = 0; i < originals.size(); i++) {
+                    if (!dead[originals.get(i)]) {
+                        return EventJournal.SHIP_ARRIVED;
+                    }
+                }
+                return EventJournal.SHIP_DESTROYED;
+            }
+            return shipStates[ship];
+        }
+    }
+    
+    /**
+     * Reads a journal from the command line, for example:
+     * <pre>
+     * JournalReader run.journal --json > run.jsonl
+     * JournalReader run.journal --at 500
+     * </pre>
+     */
+    public static void main(String[] args) {
+        int hour = -1;
+        boolean json = false;
+        if (args.length == 2 && args[1].equals("--json")) {
+            json = true;
+        } else if (args.length == 3 && args[1].equals("--at")) {
+            try {
+                hour = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                hour = -1;
+            }
+        }
+        if (!json && hour < 0) {
+            System.err.println("Usage: JournalReader FILE --json");
+            System.err.println("       JournalReader FILE --at HOUR");
+            return;
+        }
+        
+        try (JournalReader reader = new JournalReader(Path.of(args[0]))) {
+            if (json) {
+                reader.exportJson(System.out);
+            } else {
+                reader.printStateAt(hour, System.out);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading journal '" + args[0] + "': " + e.getMessage());
+        }
+    }
+}
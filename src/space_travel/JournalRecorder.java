@@ -0,0 +1,177 @@
+/**
+ * <p>
+ * This class turns what happens during a run into the records of an EventJournal.
+ * It starts the journal with where everyone is and what state each ship is in, then
+ * the simulation tells it about every departure, arrival, destruction and death.
+ * Deaths are written per hour in groups of people who died on the same roster, and
+ * so in the same place, instead of one record per person.
+ * </p>
+ * <p>
+ * Departures and arrivals may be reported from several threads at once by the
+ * parallel tick; deaths only ever come from the simulation thread.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JournalRecorder {
+    private final EventJournal journal;
+    private final List<Planet> planets;
+    private final List<Spaceship> ships;
+    private final PersonStore people;
+    private final LocationIndex locations;
+    
+    // The deaths of the current hour, indexed by roster handle + 1
+    private IntList[] deathsByRoster = new IntList[16];
+    private final IntList deathRosters = new IntList();
+    private int deathHour;
+    
+    JournalRecorder(Path file, List<Planet> planets, List<Spaceship> ships, PersonStore people, LocationIndex locations) {
+        this.journal = new EventJournal(file);
+        this.planets = planets;
+        this.ships = ships;
+        this.people = people;
+        this.locations = locations;
+    }
+    
+    /**
+     * Opens the journal and records where everyone is and what state each ship is in.
+     * 
+     * @param hour The hour the run starts at
+     * @return false if the journal could not be opened, which has been reported
+     */
+    boolean start(int hour) {
+        try {
+            journal.start(planets, ships, people.size(), hour);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not open journal: " + e.getMessage() + ". Running without it.");
+            return false;
+        }
+        
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            long day = planet.getTime().getEpochDay();
+            int[] ids = planet.getPopulationIds();
+            if (ids.length > 0) {
+                journal.append(EventJournal.PLACED, hour, day, ids, i);
+            }
+            
+            Map<Integer, IntList> booked = new LinkedHashMap<>();
+            for (int id : ids) {
+                int location = people.getLocationId(id);
+                int ship = locations.shipIndex(location);
+                if (location != planet.getSymbol() && ship >= 0) {
+                    booked.computeIfAbsent(ship, index -> new IntList()).add(id);
+                }
+            }
+            for (Map.Entry<Integer, IntList> group : booked.entrySet()) {
+                journal.append(EventJournal.BOOKED, hour, day, group.getValue().toArray(), group.getKey());
+            }
+        }
+        
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            int state = ship.getState();
+            if (state == EventJournal.SHIP_WAITING) continue;
+            
+            journal.append(EventJournal.SHIP_STATE, hour, -1, i, state);
+            if (!ship.getPassengers().isEmpty()) {
+                journal.append(EventJournal.BOOKED, hour, day(LocationIndex.shipPlanet(ship)), Person.ids(ship.getPassengers()), i);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Writes what is still waiting and closes the journal.
+     */
+    void stop() {
+        journal.stop();
+    }
+    
+    /**
+     * Adds someone who just died to the group of people who died on the same roster in
+     * the same hour. In the event-driven engine people die anywhere in the hours being
+     * skipped, so the hour of death can be later than the planets' clocks.
+     * 
+     * @param hour The hour they died in
+     * @param clockHour The hour the planets' clocks are at
+     */
+    void died(int id, int hour, int clockHour) {
+        if (hour != deathHour) {
+            deathsDone(clockHour);
+            deathHour = hour;
+        }
+        
+        int slot = people.getRosterHandle(id) + 1;
+        if (slot >= deathsByRoster.length) {
+            deathsByRoster = Arrays.copyOf(deathsByRoster, Math.max(slot + 1, 2 * deathsByRoster.length));
+        }
+        IntList deaths = deathsByRoster[slot];
+        if (deaths == null) {
+            deaths = new IntList();
+            deathsByRoster[slot] = deaths;
+        }
+        if (deaths.isEmpty()) {
+            deathRosters.add(slot);
+        }
+        deaths.add(id);
+    }
+    
+    /**
+     * Writes the groups of deaths collected so far.
+     * 
+     * @param clockHour The hour the planets' clocks are at
+     */
+    void deathsDone(int clockHour) {
+        for (int i = 0; i < deathRosters.size(); i++) {
+            IntList deaths = deathsByRoster[deathRosters.get(i)];
+            Planet planet = locations.locationPlanet(people.getLocationId(deaths.get(0)));
+            journal.append(EventJournal.DIED, deathHour, day(planet, deathHour, clockHour), deaths.toArray(),
+                    planet == null ? -1 : locations.planetIndex(planet.getSymbol()));
+            deaths.clear();
+        }
+        deathRosters.clear();
+    }
+    
+    /**
+     * Records a ship leaving with the group that boarded it, if anyone did.
+     */
+    void departed(Spaceship ship, Planet departurePlanet, Roster group, int hour) {
+        int shipIndex = ship.getIndex();
+        long day = departurePlanet.getTime().getEpochDay();
+        if (group != null && !group.isEmpty()) {
+            journal.append(EventJournal.BOARDED, hour, day, group.toIdArray(), shipIndex);
+        }
+        journal.append(EventJournal.DEPARTED, hour, day, shipIndex, locations.planetIndex(departurePlanet.getSymbol()));
+    }
+    
+    void arrived(Spaceship ship, Planet destinationPlanet, int hour) {
+        journal.append(EventJournal.ARRIVED, hour, destinationPlanet.getTime().getEpochDay(),
+                ship.getIndex(), locations.planetIndex(destinationPlanet.getSymbol()));
+    }
+    
+    void destroyed(Spaceship ship, int hour) {
+        journal.append(EventJournal.DESTROYED, hour, day(LocationIndex.shipPlanet(ship)), ship.getIndex(), 0);
+    }
+    
+    private static long day(Planet planet) {
+        return planet == null ? -1 : planet.getTime().getEpochDay();
+    }
+    
+    // The planet's date at a later hour than the one its clock is at
+    private static long day(Planet planet, int hour, int clockHour) {
+        if (planet == null) {
+            return -1;
+        }
+        Time time = planet.getTime();
+        return Math.floorDiv(time.getEpochHour() + hour - clockHour, time.getDayLength());
+    }
+}
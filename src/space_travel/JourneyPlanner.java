@@ -0,0 +1,473 @@
+/**
+ * <p>
+ * This class finds the fastest way to travel from one planet to another on the ships
+ * of a scenario, changing ships on the way where that helps. Every planet counts its
+ * dates in its own day length, so the ship list is first compiled into connections in
+ * simulation hours: a ship leaves in the first hour its departure planet shows its
+ * departure date and arrives its travel duration later, exactly as in the simulation.
+ * The connections are kept sorted by departure, as plain arrays.
+ * </p>
+ * <p>
+ * A query scans the connections once, from the hour the traveller sets off, and keeps
+ * the earliest arrival found so far on every planet (connection scan). A connection
+ * can be taken if the traveller is already on its planet when it leaves. The scan
+ * finds the earliest arrival on all planets at once, so its result is kept per origin
+ * and date and every later query from there is answered without scanning. Within one
+ * hour, ships leave and arrive in ship order, like in the hourly loop: someone arriving
+ * on a ship can still catch the ships after it in the list that leave in the same hour.
+ * The planner only looks at the schedule; who is booked on which ship and who dies on
+ * the way make no difference to it.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JourneyPlanner {
+    /** What findPlanet() and earliestArrival() return when there is no such planet or journey. */
+    public static final int NONE = -1;
+    
+    // How many earliest-arrival entries the cache holds in all, spread over its results
+    private static final int CACHE_ENTRIES = 1 << 20;
+    
+    private final String[] planetNames;
+    private final long[] planetEpochHours;
+    private final int[] planetDayLengths;
+    // Like the simulation, a ship goes to the last planet of a name
+    private final Map<String, Integer> planetIndexes = new HashMap<>();
+    private final String[] shipNames;
+    
+    // The connections in scan order. Departures and arrivals are keys of the form
+    // hour * keysPerHour + ship, which order them the way the hourly loop does: by
+    // hour, then by ship.
+    private final long keysPerHour;
+    private final long[] departureKeys;
+    private final long[] arrivalKeys;
+    private final int[] fromPlanets;
+    private final int[] toPlanets;
+    // The departure key of the last connection to each planet, or -1 if there is none
+    private final long[] lastInbound;
+    
+    private final Map<Long, Arrivals> cache;
+    private int cacheSize;
+    
+    /**
+     * Compiles the schedule of the given planets and ships, which must not have been
+     * simulated yet. Ships from or to a planet that does not exist, and ships whose
+     * departure date has already passed, never leave and are left out.
+     * 
+     * @param planets The planets, as loaded
+     * @param ships The ships, as loaded
+     */
+    public JourneyPlanner(List<Planet> planets, List<Spaceship> ships) {
+        planetNames = new String[planets.size()];
+        planetEpochHours = new long[planets.size()];
+        planetDayLengths = new int[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            planetNames[i] = planet.getName();
+            planetEpochHours[i] = planet.getTime().getEpochHour();
+            planetDayLengths[i] = planet.getTime().getDayLength();
+            planetIndexes.put(planet.getName(), i);
+        }
+        
+        shipNames = new String[ships.size()];
+        keysPerHour = Math.max(ships.size(), 1);
+        int[] shipFrom = new int[ships.size()];
+        int[] shipTo = new int[ships.size()];
+        int[] shipHours = new int[ships.size()];
+        long[] keys = new long[ships.size()];
+        int count = 0;
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            shipNames[i] = ship.getName();
+            shipFrom[i] = findPlanet(ship.getDeparturePlanet());
+            shipTo[i] = findPlanet(ship.getDestinationPlanet());
+            if (shipFrom[i] == NONE || shipTo[i] == NONE) continue;
+            
+            long hour = planets.get(shipFrom[i]).getTime().hoursUntil(ship.getDepartureDay());
+            shipHours[i] = Math.max(ship.getTravelDuration(), 1) - 1;
+            if (hour > 0 && hour + shipHours[i] <= Integer.MAX_VALUE) {
+                keys[count++] = hour * keysPerHour + i;
+            }
+        }
+        
+        departureKeys = Arrays.copyOf(keys, count);
+        Arrays.sort(departureKeys);
+        arrivalKeys = new long[count];
+        fromPlanets = new int[count];
+        toPlanets = new int[count];
+        lastInbound = new long[planets.size()];
+        Arrays.fill(lastInbound, -1);
+        for (int c = 0; c < count; c++) {
+            int ship = (int) (departureKeys[c] % keysPerHour);
+            arrivalKeys[c] = departureKeys[c] + shipHours[ship] * keysPerHour;
+            fromPlanets[c] = shipFrom[ship];
+            toPlanets[c] = shipTo[ship];
+            lastInbound[toPlanets[c]] = departureKeys[c];
+        }
+        
+        cacheSize = Math.max(16, CACHE_ENTRIES / Math.max(planets.size(), 1));
+        cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Arrivals> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    /**
+     * Sets how many origins and dates the results are kept for; the least recently
+     * asked for are dropped first. 0 turns the cache off.
+     */
+    public void setCacheSize(int cacheSize) {
+        synchronized (cache) {
+            this.cacheSize = Math.max(cacheSize, 0);
+            cache.clear();
+        }
+    }
+    
+    /**
+     * Returns the number of connections, which is the number of ships that leave.
+     */
+    public int getConnectionCount() {
+        return departureKeys.length;
+    }
+    
+    public int getPlanetCount() {
+        return planetNames.length;
+    }
+    
+    public String getPlanetName(int planet) {
+        return planetNames[planet];
+    }
+    
+    /**
+     * Returns the index of the planet with the given name, or NONE.
+     */
+    public int findPlanet(String name) {
+        return planetIndexes.getOrDefault(name, NONE);
+    }
+    
+    /**
+     * Returns the local date on a planet at a simulation hour.
+     */
+    public String getPlanetDate(int planet, int hour) {
+        return Time.formatDate(Math.floorDiv(planetEpochHours[planet] + hour, planetDayLengths[planet]));
+    }
+    
+    /**
+     * Returns the simulation hour in which a traveller sets off from a planet on a date,
+     * which is when the ships of that date leave it, or NONE if the date has already
+     * passed there.
+     * 
+     * @param planet The planet's index
+     * @param epochDay The date as returned by Time.parseDay
+     */
+    public int getStartHour(int planet, long epochDay) {
+        long hour = new Time(planetEpochHours[planet], planetDayLengths[planet]).hoursUntil(epochDay);
+        return hour > 0 && hour <= Integer.MAX_VALUE ? (int) hour : NONE;
+    }
+    
+    /**
+     * Returns the hour of the earliest arrival on a planet for someone setting off from
+     * another planet on a date, or NONE if there is no way to get there.
+     * 
+     * @param origin The index of the planet the traveller sets off from
+     * @param destination The index of the planet to go to
+     * @param epochDay The date as returned by Time.parseDay, in the origin's calendar
+     */
+    public int earliestArrival(int origin, int destination, long epochDay) {
+        Arrivals arrivals = arrivals(origin, epochDay);
+        if (arrivals == null) {
+            return NONE;
+        }
+        if (destination == origin) {
+            return arrivals.startHour;
+        }
+        synchronized (arrivals) {
+            scanFor(arrivals, destination);
+            return arrivals.via[destination] == NONE ? NONE : (int) (arrivals.reached[destination] / keysPerHour);
+        }
+    }
+    
+    /**
+     * Finds the fastest journey between two planets for someone setting off on a date.
+     * 
+     * @param from The name of the planet to set off from
+     * @param to The name of the planet to go to
+     * @param date The date to set off, in dd.MM.yyyy format and the origin's calendar
+     * @return The journey, or null if there is no way to get there
+     * @throws IllegalArgumentException if a planet does not exist or the date is not valid
+     */
+    public Journey plan(String from, String to, String date) {
+        int origin = findPlanet(from);
+        int destination = findPlanet(to);
+        if (origin == NONE || destination == NONE) {
+            throw new IllegalArgumentException("There is no planet called '" + (origin == NONE ? from : to) + "'");
+        }
+        return plan(origin, destination, Time.parseDay(date));
+    }
+    
+    /**
+     * Finds the fastest journey between two planets by index.
+     * 
+     * @return The journey, or null if there is no way to get there
+     */
+    public Journey plan(int origin, int destination, long epochDay) {
+        Arrivals arrivals = arrivals(origin, epochDay);
+        if (arrivals == null) {
+            return null;
+        }
+        if (destination == origin) {
+            return new Journey(arrivals.startHour, new int[0]);
+        }
+        synchronized (arrivals) {
+            scanFor(arrivals, destination);
+            int[] via = arrivals.via;
+            if (via[destination] == NONE) {
+                return null;
+            }
+            int legs = 0;
+            for (int planet = destination; planet != origin; planet = fromPlanets[via[planet]]) {
+                legs++;
+            }
+            int[] connections = new int[legs];
+            for (int planet = destination; planet != origin; planet = fromPlanets[via[planet]]) {
+                connections[--legs] = via[planet];
+            }
+            return new Journey(arrivals.startHour, connections);
+        }
+    }
+    
+    /**
+     * Returns the scan from an origin on a date, from the cache or newly started, or
+     * null if the date has already passed there.
+     */
+    private Arrivals arrivals(int origin, long epochDay) {
+        // Days are whole numbers, so this cannot be the key of another origin
+        Long key = epochDay * planetNames.length + origin;
+        synchronized (cache) {
+            Arrivals cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int startHour = getStartHour(origin, epochDay);
+        if (startHour == NONE) {
+            return null;
+        }
+        Arrivals arrivals = new Arrivals(origin, startHour);
+        synchronized (cache) {
+            // Another thread may have started the same scan meanwhile
+            Arrivals cached = cache.putIfAbsent(key, arrivals);
+            return cached != null ? cached : arrivals;
+        }
+    }
+    
+    /**
+     * Goes on with a scan until the earliest arrival on a planet is known. Everything
+     * that leaves at or after an arrival can only arrive later, so the scan stops at the
+     * first connection that leaves no earlier than the best arrival found there, and
+     * the next query from the same origin and date goes on from that connection. Must
+     * be called holding the lock of the scan.
+     */
+    private void scanFor(Arrivals arrivals, int destination) {
+        long[] reached = arrivals.reached;
+        int[] via = arrivals.via;
+        int open = arrivals.open;
+        long latest = arrivals.latest;
+        
+        int c = arrivals.next;
+        for (; c < departureKeys.length; c++) {
+            long departure = departureKeys[c];
+            if (departure >= reached[destination]) {
+                break;
+            }
+            // Once every planet that can still be reached has been, nothing that leaves
+            // after the latest arrival so far can make any arrival earlier
+            if (open == 0 && departure >= latest) {
+                c = departureKeys.length;
+                break;
+            }
+            if (reached[fromPlanets[c]] >= departure) continue;
+            
+            int to = toPlanets[c];
+            long arrival = arrivalKeys[c];
+            if (arrival < reached[to]) {
+                if (via[to] == NONE) {
+                    open--;
+                }
+                reached[to] = arrival;
+                via[to] = c;
+                latest = Math.max(latest, arrival);
+            }
+        }
+        arrivals.next = c;
+        arrivals.open = open;
+        arrivals.latest = latest;
+    }
+    
+    /**
+     * A connection scan from one origin and start hour, as far as it has got: the
+     * earliest arrival key found so far on every planet, the connection it was reached
+     * on, and the next connection to look at.
+     */
+    private class Arrivals {
+        final int startHour;
+        final long[] reached;
+        final int[] via;
+        int next;
+        // Planets not reached yet that still have a connection to them from the start
+        // hour on, and the latest arrival key found so far
+        int open;
+        long latest;
+        
+        Arrivals(int origin, int startHour) {
+            this.startHour = startHour;
+            reached = new long[planetNames.length];
+            via = new int[planetNames.length];
+            Arrays.fill(reached, Long.MAX_VALUE);
+            Arrays.fill(via, NONE);
+            
+            // The traveller is there just before the first ship of the start hour leaves
+            long start = startHour * keysPerHour;
+            reached[origin] = start - 1;
+            next = Arrays.binarySearch(departureKeys, start);
+            next = next < 0 ? -next - 1 : next;
+            latest = start;
+            for (int planet = 0; planet < planetNames.length; planet++) {
+                if (planet != origin && lastInbound[planet] >= start) {
+                    open++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * A journey found by the planner: the ships to take in order, with the hours they
+     * leave and arrive. A journey to the planet the traveller is already on has no legs.
+     */
+    public class Journey {
+        private final int startHour;
+        private final int[] connections;
+        
+        private Journey(int startHour, int[] connections) {
+            this.startHour = startHour;
+            this.connections = connections;
+        }
+        
+        /**
+         * Returns the simulation hour the traveller sets off in.
+         */
+        public int getStartHour() {
+            return startHour;
+        }
+        
+        /**
+         * Returns the simulation hour the traveller gets there in.
+         */
+        public int getArrivalHour() {
+            return connections.length == 0 ? startHour : getArrivalHour(connections.length - 1);
+        }
+        
+        /**
+         * Returns how many hours the journey takes from setting off to getting there.
+         */
+        public int getHours() {
+            return getArrivalHour() - startHour;
+        }
+        
+        public int getLegCount() {
+            return connections.length;
+        }
+        
+        public String getShipName(int leg) {
+            return shipNames[(int) (departureKeys[connections[leg]] % keysPerHour)];
+        }
+        
+        public int getFromPlanet(int leg) {
+            return fromPlanets[connections[leg]];
+        }
+        
+        public int getToPlanet(int leg) {
+            return toPlanets[connections[leg]];
+        }
+        
+        public int getDepartureHour(int leg) {
+            return (int) (departureKeys[connections[leg]] / keysPerHour);
+        }
+        
+        public int getArrivalHour(int leg) {
+            return (int) (arrivalKeys[connections[leg]] / keysPerHour);
+        }
+        
+        /**
+         * Returns the date a leg leaves on, in the calendar of the planet it leaves from.
+         */
+        public String getDepartureDate(int leg) {
+            return getPlanetDate(getFromPlanet(leg), getDepartureHour(leg));
+        }
+        
+        /**
+         * Returns the date a leg arrives on, in the calendar of the planet it arrives at.
+         */
+        public String getArrivalDate(int leg) {
+            return getPlanetDate(getToPlanet(leg), getArrivalHour(leg));
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int leg = 0; leg < connections.length; leg++) {
+                sb.append(leg == 0 ? "" : ", ").append(getShipName(leg)).append(" (")
+                        .append(planetNames[getFromPlanet(leg)]).append(' ').append(getDepartureDate(leg)).append(" -> ")
+                        .append(planetNames[getToPlanet(leg)]).append(' ').append(getArrivalDate(leg)).append(')');
+            }
+            return sb.append(connections.length == 0 ? "no travel needed" : "").toString();
+        }
+    }
+    
+    /**
+     * Prints the fastest journey between two planets leaving on a date, leg by leg.
+     * Problems with the query are printed instead of thrown.
+     */
+    public void printJourney(String from, String to, String date, PrintStream out) {
+        Journey journey;
+        try {
+            journey = plan(from, to, date);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage() + ".");
+            return;
+        }
+        if (journey == null) {
+            if (getStartHour(findPlanet(from), Time.parseDay(date)) == NONE) {
+                out.println(date + " has already passed on " + from + ".");
+            } else {
+                out.println("There is no way to get from " + from + " to " + to + " leaving on " + date + ".");
+            }
+            return;
+        }
+        if (journey.getLegCount() == 0) {
+            out.println("Already on " + to + ".");
+            return;
+        }
+        
+        int last = journey.getLegCount() - 1;
+        out.println("From " + from + " on " + date + " to " + to + ": arrives " + journey.getArrivalDate(last)
+                + " after " + journey.getHours() + " hours on " + journey.getLegCount()
+                + (journey.getLegCount() == 1 ? " ship." : " ships."));
+        out.printf("%-12s %-12s %-12s %-12s %s%n", "Ship Name", "From", "Leaves", "To", "Arrives");
+        for (int leg = 0; leg <= last; leg++) {
+            out.printf("%-12s %-12s %-12s %-12s %s%n", journey.getShipName(leg),
+                    planetNames[journey.getFromPlanet(leg)], journey.getDepartureDate(leg),
+                    planetNames[journey.getToPlanet(leg)], journey.getArrivalDate(leg));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * <p>
+ * This class is the shared clock that people age against during a simulation.
+ * Advancing it ages everybody at once, so passing an hour no longer has to touch
+ * every person; each person only remembers the clock hour at which they die.
+ * </p>
+ */
+
+package space_travel;
+
+public class LifeClock {
+    private int hour;
+    
+    public int now() {
+        return hour;
+    }
+    
+    public void advance(int hours) {
+        hour += hours;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * <p>
+ * This class finds the planet or ship a location stands for. Planets are found by
+ * name, and planets and ships by the symbol id of their name, so people's locations
+ * can be looked up without any string work. Like the loader, the last planet or ship
+ * of a name counts, though every ship of a name can still be listed. Ships added while
+ * the simulation runs are added here as well.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LocationIndex {
+    private final List<Planet> planets;
+    private final List<Spaceship> ships;
+    private final SymbolTable symbols;
+    private final Map<String, Planet> planetsByName = new HashMap<>();
+    
+    // Planet and ship indexes by symbol id, or -1 for symbols that name neither
+    private int[] planetIndexBySymbol;
+    private int[] shipIndexBySymbol;
+    
+    // By ship index, the index of the ship added before it under the same name, or -1,
+    // so the ships of one name form a chain that starts at shipIndexBySymbol
+    private int[] previousShipOfName = new int[0];
+    
+    /**
+     * @param planets The planets, whose symbols have been set
+     * @param ships The ship list; each ship is looked up by symbol once passed to addShip()
+     * @param symbols The table the symbols come from
+     */
+    LocationIndex(List<Planet> planets, List<Spaceship> ships, SymbolTable symbols) {
+        this.planets = planets;
+        this.ships = ships;
+        this.symbols = symbols;
+        planetIndexBySymbol = new int[symbols.size()];
+        shipIndexBySymbol = new int[symbols.size()];
+        Arrays.fill(planetIndexBySymbol, -1);
+        Arrays.fill(shipIndexBySymbol, -1);
+        for (int i = 0; i < planets.size(); i++) {
+            planetsByName.put(planets.get(i).getName(), planets.get(i));
+            planetIndexBySymbol[planets.get(i).getSymbol()] = i;
+        }
+    }
+    
+    /**
+     * Returns the planet with the given name, or null if there is none.
+     */
+    Planet getPlanet(String name) {
+        return planetsByName.get(name);
+    }
+    
+    /**
+     * Returns the index of the planet a symbol names, or -1.
+     */
+    int planetIndex(int symbol) {
+        return symbol >= 0 && symbol < planetIndexBySymbol.length ? planetIndexBySymbol[symbol] : -1;
+    }
+    
+    /**
+     * Returns the index of the ship a symbol names, or -1.
+     */
+    int shipIndex(int symbol) {
+        return symbol >= 0 && symbol < shipIndexBySymbol.length ? shipIndexBySymbol[symbol] : -1;
+    }
+    
+    /**
+     * Returns the indexes of every ship a symbol names, in the order they were added.
+     */
+    int[] shipIndexes(int symbol) {
+        int count = 0;
+        for (int i = shipIndex(symbol); i >= 0; i = previousShipOfName[i]) {
+            count++;
+        }
+        int[] indexes = new int[count];
+        for (int i = shipIndex(symbol); i >= 0; i = previousShipOfName[i]) {
+            indexes[--count] = i;
+        }
+        return indexes;
+    }
+    
+    /**
+     * Returns the planet whose calendar applies to someone at the given location: the
+     * planet itself, or for a ship the planet it is flying to or waiting on. Returns null
+     * if there is none.
+     */
+    Planet locationPlanet(int symbol) {
+        int planet = planetIndex(symbol);
+        if (planet >= 0) {
+            return planets.get(planet);
+        }
+        int ship = shipIndex(symbol);
+        return ship >= 0 ? shipPlanet(ships.get(ship)) : null;
+    }
+    
+    static Planet shipPlanet(Spaceship ship) {
+        return ship.isInTransit() || ship.hasArrived() ? ship.getDestination() : ship.getDeparture();
+    }
+    
+    /**
+     * Adds a ship of the ship list once it has been resolved.
+     */
+    void addShip(Spaceship ship) {
+        // New ship names get new symbols, which the indexes by symbol must cover
+        if (symbols.size() > planetIndexBySymbol.length) {
+            int old = planetIndexBySymbol.length;
+            int size = Math.max(symbols.size(), 2 * old);
+            planetIndexBySymbol = Arrays.copyOf(planetIndexBySymbol, size);
+            shipIndexBySymbol = Arrays.copyOf(shipIndexBySymbol, size);
+            Arrays.fill(planetIndexBySymbol, old, size, -1);
+            Arrays.fill(shipIndexBySymbol, old, size, -1);
+        }
+        int index = ship.getIndex();
+        if (index >= previousShipOfName.length) {
+            previousShipOfName = Arrays.copyOf(previousShipOfName, Math.max(Math.max(16, ships.size()), 2 * index));
+        }
+        previousShipOfName[index] = shipIndexBySymbol[ship.getSymbol()];
+        shipIndexBySymbol[ship.getSymbol()] = index;
+    }
+}
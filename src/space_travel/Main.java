@@ -9,20 +9,378 @@
 
 package space_travel;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
 public class Main {
+    static final String PLANETS_FILE = "Gezegenler.txt";
+    static final String SHIPS_FILE = "Araclar.txt";
+    static final String PEOPLE_FILE = "Kisiler.txt";
+    
+    // Written by CompiledScenario; used instead of the text files while it is up to date
+    static final String COMPILED_FILE = "scenario.bin";
+    
     public static void main(String[] args) {
-
-        final String PLANETS_FILE = "Gezegenler.txt";
-        final String SHIPS_FILE = "Araclar.txt";
-        final String PEOPLE_FILE = "Kisiler.txt";
+        // A partitioned run leaves loading the scenario to its worker processes
+        int partitionsAt = Arrays.asList(args).indexOf("--partitions");
+        if (partitionsAt >= 0) {
+            runPartitioned(args, partitionsAt);
+            return;
+        }
         
-
-        var planets = FileReader.readPlanets(PLANETS_FILE);
-        var ships = FileReader.readSpaceships(SHIPS_FILE);
-        var people = FileReader.readPeople(PEOPLE_FILE);
+        Options options = Options.parse(args);
+        if (options == null) {
+            return;
+        }
+        Scenario scenario = CompiledScenario.load(COMPILED_FILE, PLANETS_FILE, SHIPS_FILE, PEOPLE_FILE, options.backend);
         
-
-        FileReader.placePeople(people, planets, ships);
-        new Simulation(planets, ships, people).start();
+        // Questions about a single hour, person or journey are answered without running anything
+        if (options.route != null) {
+            String[] route = options.route;
+            new JourneyPlanner(scenario.getPlanets(), scenario.getShips()).printJourney(route[0], route[1], route[2], System.out);
+            return;
+        }
+        if (options.queryHour >= 0 || options.queryPerson != null) {
+            TimelineIndex timeline = new TimelineIndex(scenario);
+            if (options.queryHour >= 0) {
+                timeline.printStateAt(options.queryHour, System.out);
+            }
+            if (options.queryPerson != null) {
+                timeline.printPerson(options.queryPerson, System.out);
+            }
+            return;
+        }
+        
+        if (options.runs > 0) {
+            MonteCarloRunner monteCarlo = new MonteCarloRunner(scenario);
+            monteCarlo.setRuns(options.runs);
+            monteCarlo.setSeed(options.seed);
+            monteCarlo.setTravelVariation(options.travelVariation);
+            monteCarlo.setLifeVariation(options.lifeVariation);
+            monteCarlo.run().print();
+            return;
+        }
+        simulate(scenario, options);
+    }
+    
+    private static void simulate(Scenario scenario, Options options) {
+        Simulation simulation = new Simulation(scenario.getPlanets(), scenario.getShips(), scenario.getPeople());
+        simulation.setEventDriven(options.eventDriven);
+        simulation.setParallel(options.parallel);
+        simulation.setHeadless(options.headless);
+        simulation.setSnapshotInterval(options.snapshotHours);
+        if (options.frameRate > 0) {
+            simulation.setFrameRate(options.frameRate);
+        }
+        if (options.journalFile != null) {
+            simulation.setJournal(Path.of(options.journalFile));
+        }
+        
+        if (options.checkpointFile != null) {
+            Path checkpoint = Path.of(options.checkpointFile);
+            if (options.resume && Files.exists(checkpoint)) {
+                try {
+                    simulation.restore(checkpoint);
+                    System.err.println("Resuming from checkpoint '" + options.checkpointFile + "'.");
+                } catch (IOException e) {
+                    System.err.println("Error: Cannot resume from '" + options.checkpointFile + "': " + e.getMessage());
+                    return;
+                }
+            }
+            simulation.setCheckpoint(checkpoint, options.checkpointHours);
+        }
+        
+        if (options.timeSeriesFile != null) {
+            simulation.setTimeSeries(Path.of(options.timeSeriesFile), options.timeSeriesHours, options.compressTimeSeries);
+        }
+        
+        if (options.feedFile != null) {
+            ScheduleFeed feed = new ScheduleFeed();
+            try {
+                feed.follow(Path.of(options.feedFile));
+            } catch (IOException e) {
+                System.err.println("Error: Cannot read schedule changes from '" + options.feedFile + "': " + e.getMessage());
+                return;
+            }
+            simulation.setScheduleFeed(feed);
+        }
+        StatusServer server = null;
+        if (options.servePort >= 0) {
+            try {
+                server = new StatusServer(options.servePort, simulation::getPublishedSnapshot);
+            } catch (IOException e) {
+                System.err.println("Error: Cannot serve on port " + options.servePort + ": " + e.getMessage());
+                return;
+            }
+            simulation.setPublishInterval(options.serveHours);
+            server.start();
+            System.err.println("Serving the state at http://localhost:" + server.getPort() + "/summary, /planets and /ships.");
+        }
+        TickMetrics metrics = options.metrics ? new TickMetrics() : null;
+        simulation.setMetrics(metrics);
+        simulation.start();
+        if (server != null) {
+            server.stop();
+        }
+        if (metrics != null) {
+            printMetrics(metrics, options.metricsFile);
+        }
+    }
+    
+    /**
+     * The command line options, read before anything is loaded so that each mode only
+     * builds what it needs.
+     */
+    private static class Options {
+        PersonStore.Backend backend = PersonStore.Backend.HEAP;
+        boolean eventDriven;
+        boolean parallel;
+        boolean headless;
+        int snapshotHours;
+        int frameRate;
+        String checkpointFile;
+        int checkpointHours = 100;
+        boolean resume;
+        String journalFile;
+        String timeSeriesFile;
+        int timeSeriesHours = 1;
+        boolean compressTimeSeries;
+        String feedFile;
+        int servePort = -1;
+        int serveHours = 1;
+        boolean metrics;
+        String metricsFile;
+        int queryHour = -1;
+        String queryPerson;
+        String[] route;
+        int runs;
+        long seed;
+        double travelVariation;
+        double lifeVariation;
+        
+        /**
+         * Reads the options, or prints what is wrong with them and returns null.
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--events":
+                        options.eventDriven = true;
+                        break;
+                    case "--parallel":
+                        options.parallel = true;
+                        break;
+                    case "--off-heap":
+                        options.backend = PersonStore.Backend.OFF_HEAP;
+                        break;
+                    case "--headless":
+                        options.headless = true;
+                        break;
+                    case "--every":
+                        options.snapshotHours = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.snapshotHours <= 0) {
+                            System.err.println("Error: --every needs a positive number of hours.");
+                            return null;
+                        }
+                        break;
+                    case "--fps":
+                        options.frameRate = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.frameRate <= 0) {
+                            System.err.println("Error: --fps needs a positive frame rate.");
+                            return null;
+                        }
+                        break;
+                    case "--checkpoint":
+                        if (i + 1 >= args.length) {
+                            System.err.println("Error: --checkpoint needs a file name.");
+                            return null;
+                        }
+                        options.checkpointFile = args[++i];
+                        break;
+                    case "--checkpoint-every":
+                        options.checkpointHours = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.checkpointHours <= 0) {
+                            System.err.println("Error: --checkpoint-every needs a positive number of hours.");
+                            return null;
+                        }
+                        break;
+                    case "--resume":
+                        options.resume = true;
+                        break;
+                    case "--journal":
+                        if (i + 1 >= args.length) {
+                            System.err.println("Error: --journal needs a file name.");
+                            return null;
+                        }
+                        options.journalFile = args[++i];
+                        break;
+                    case "--timeseries":
+                        if (i + 1 >= args.length) {
+                            System.err.println("Error: --timeseries needs a file name.");
+                            return null;
+                        }
+                        options.timeSeriesFile = args[++i];
+                        break;
+                    case "--timeseries-every":
+                        options.timeSeriesHours = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.timeSeriesHours <= 0) {
+                            System.err.println("Error: --timeseries-every needs a positive number of hours.");
+                            return null;
+                        }
+                        break;
+                    case "--timeseries-compress":
+                        options.compressTimeSeries = true;
+                        break;
+                    case "--feed":
+                        if (i + 1 >= args.length) {
+                            System.err.println("Error: --feed needs a file name.");
+                            return null;
+                        }
+                        options.feedFile = args[++i];
+                        break;
+                    case "--serve":
+                        options.servePort = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.servePort < 0 || options.servePort > 65535) {
+                            System.err.println("Error: --serve needs a port number.");
+                            return null;
+                        }
+                        break;
+                    case "--serve-every":
+                        options.serveHours = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.serveHours <= 0) {
+                            System.err.println("Error: --serve-every needs a positive number of hours.");
+                            return null;
+                        }
+                        break;
+                    case "--metrics":
+                        options.metrics = true;
+                        break;
+                    case "--metrics-file":
+                        if (i + 1 >= args.length) {
+                            System.err.println("Error: --metrics-file needs a file name.");
+                            return null;
+                        }
+                        options.metrics = true;
+                        options.metricsFile = args[++i];
+                        break;
+                    case "--at":
+                        options.queryHour = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.queryHour < 0) {
+                            System.err.println("Error: --at needs a non-negative hour.");
+                            return null;
+                        }
+                        break;
+                    case "--person":
+                        if (i + 1 >= args.length) {
+                            System.err.println("Error: --person needs a name.");
+                            return null;
+                        }
+                        options.queryPerson = args[++i];
+                        break;
+                    case "--route":
+                        if (i + 3 >= args.length) {
+                            System.err.println("Error: --route needs a departure planet, a destination planet and a date.");
+                            return null;
+                        }
+                        options.route = Arrays.copyOfRange(args, i + 1, i + 4);
+                        i += 3;
+                        break;
+                    case "--runs":
+                        options.runs = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.runs <= 0) {
+                            System.err.println("Error: --runs needs a positive number of runs.");
+                            return null;
+                        }
+                        break;
+                    case "--seed":
+                        options.seed = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (options.seed < 0) {
+                            System.err.println("Error: --seed needs a non-negative number.");
+                            return null;
+                        }
+                        break;
+                    case "--vary-travel":
+                    case "--vary-life":
+                        String option = args[i];
+                        int percent = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                        if (percent < 0 || percent > 100) {
+                            System.err.println("Error: " + option + " needs a percentage from 0 to 100.");
+                            return null;
+                        }
+                        if (option.equals("--vary-travel")) {
+                            options.travelVariation = percent / 100.0;
+                        } else {
+                            options.lifeVariation = percent / 100.0;
+                        }
+                        break;
+                    default:
+                        System.err.println("Error: Unknown option '" + args[i] + "'.");
+                        System.err.println("Usage: Main [--events] [--parallel] [--off-heap] [--fps N] [--headless [--every N]]");
+                        System.err.println("            [--checkpoint FILE [--checkpoint-every N] [--resume]] [--journal FILE]");
+                        System.err.println("            [--timeseries FILE [--timeseries-every N] [--timeseries-compress]]");
+                        System.err.println("            [--serve PORT [--serve-every N]] [--feed FILE] [--metrics | --metrics-file FILE]");
+                        System.err.println("       Main --runs N [--seed N] [--vary-travel PERCENT] [--vary-life PERCENT]");
+                        System.err.println("       Main [--at HOUR] [--person NAME]");
+                        System.err.println("       Main --route FROM TO DATE");
+                        System.err.println("       Main --partitions N [--headless] [--off-heap]");
+                        return null;
+                }
+            }
+            if (options.resume && options.checkpointFile == null) {
+                System.err.println("Error: --resume needs --checkpoint FILE.");
+                return null;
+            }
+            return options;
+        }
+    }
+    
+    private static void runPartitioned(String[] args, int partitionsAt) {
+        int partitions = partitionsAt + 1 < args.length ? parseCount(args[partitionsAt + 1]) : -1;
+        if (partitions <= 0) {
+            System.err.println("Error: --partitions needs a positive number of partitions.");
+            return;
+        }
+        boolean headless = false;
+        PersonStore.Backend backend = PersonStore.Backend.HEAP;
+        for (int i = 0; i < args.length; i++) {
+            if (i == partitionsAt || i == partitionsAt + 1) continue;
+            
+            switch (args[i]) {
+                case "--headless":
+                    headless = true;
+                    break;
+                case "--off-heap":
+                    backend = PersonStore.Backend.OFF_HEAP;
+                    break;
+                default:
+                    System.err.println("Error: --partitions only goes with --headless and --off-heap, not '" + args[i] + "'.");
+                    return;
+            }
+        }
+        new PartitionCoordinator(partitions, backend, headless).run();
+    }
+    
+    private static void printMetrics(TickMetrics metrics, String file) {
+        if (file == null) {
+            System.out.println();
+            metrics.print();
+            return;
+        }
+        try {
+            metrics.write(Path.of(file));
+        } catch (IOException e) {
+            System.err.println("Error: Cannot write metrics to '" + file + "': " + e.getMessage());
+        }
+    }
+    
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+/**
+ * <p>
+ * This class runs many independent simulations of one loaded scenario at the same
+ * time, each on its own virtual thread. Every run gets a copy of the scenario's
+ * mutable state with the ships' travel durations and the people's remaining lives
+ * shifted by a random amount, drawn from a generator seeded from the base seed and
+ * the run number, so a set of runs can be repeated exactly.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+public class MonteCarloRunner {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+    
+    private final Scenario scenario;
+    private int runs = 1000;
+    private long seed;
+    private double travelVariation;
+    private double lifeVariation;
+    private int maxConcurrentRuns = 2 * Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * @param scenario The loaded scenario; it is only copied, never simulated itself
+     */
+    public MonteCarloRunner(Scenario scenario) {
+        this.scenario = scenario;
+    }
+    
+    public void setRuns(int runs) {
+        this.runs = runs;
+    }
+    
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    /**
+     * Sets how far travel durations may be shifted, as a share of the original value.
+     * 0.1 lets every duration vary uniformly by up to 10% either way.
+     * 
+     * @param variation The largest relative change, from 0 to 1
+     */
+    public void setTravelVariation(double variation) {
+        this.travelVariation = variation;
+    }
+    
+    /**
+     * Sets how far remaining lives may be shifted, as a share of the original value.
+     * 
+     * @param variation The largest relative change, from 0 to 1
+     */
+    public void setLifeVariation(double variation) {
+        this.lifeVariation = variation;
+    }
+    
+    /**
+     * Limits how many runs hold a copy of the scenario at once, which bounds memory use.
+     * 
+     * @param runs The number of runs allowed in flight
+     */
+    public void setMaxConcurrentRuns(int runs) {
+        this.maxConcurrentRuns = runs;
+    }
+    
+    /**
+     * Runs all simulations and waits for them to finish.
+     * 
+     * @return The aggregated results
+     */
+    public MonteCarloSummary run() {
+        MonteCarloSummary summary = new MonteCarloSummary(scenario);
+        Semaphore inFlight = new Semaphore(maxConcurrentRuns);
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < runs; i++) {
+                int run = i;
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        runOnce(run, summary);
+                    } catch (RuntimeException e) {
+                        System.err.println("Error in run " + run + ": " + e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        
+        return summary;
+    }
+    
+    private void runOnce(int run, MonteCarloSummary summary) {
+        SplittableRandom random = new SplittableRandom(seed + run * SEED_STEP);
+        Scenario copy = scenario.copy(
+                ship -> vary(ship.getTravelDuration(), travelVariation, random),
+                person -> vary(person.getLifeRemaining(), lifeVariation, random));
+        
+        Simulation simulation = new Simulation(copy.getPlanets(), copy.getShips(), copy.getPeople());
+        simulation.setEventDriven(true);
+        simulation.setHeadless(true);
+        simulation.run();
+        
+        summary.record(simulation, copy);
+    }
+    
+    private static int vary(int value, double variation, SplittableRandom random) {
+        if (variation == 0) {
+            return value;
+        }
+        double factor = 1 + variation * (2 * random.nextDouble() - 1);
+        return (int) Math.round(value * factor);
+    }
+}
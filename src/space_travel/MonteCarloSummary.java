@@ -0,0 +1,124 @@
+/**
+ * <p>
+ * This class aggregates the outcome of many simulation runs of the same scenario as
+ * they finish. Each run is folded into per-ship and per-planet distributions and then
+ * dropped, so no run is kept in memory.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.List;
+
+public class MonteCarloSummary {
+    private final String[] shipNames;
+    private final String[] planetNames;
+    private final Distribution hours = new Distribution();
+    private final Distribution[] survivors;
+    private final Distribution[] populations;
+    private final int[] arrivals;
+    private final int[] destructions;
+    private int runs;
+    
+    public MonteCarloSummary(Scenario scenario) {
+        List<Spaceship> ships = scenario.getShips();
+        List<Planet> planets = scenario.getPlanets();
+        
+        shipNames = new String[ships.size()];
+        survivors = new Distribution[ships.size()];
+        arrivals = new int[ships.size()];
+        destructions = new int[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            shipNames[i] = ships.get(i).getName();
+            survivors[i] = new Distribution();
+        }
+        
+        planetNames = new String[planets.size()];
+        populations = new Distribution[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            planetNames[i] = planets.get(i).getName();
+            populations[i] = new Distribution();
+        }
+    }
+    
+    /**
+     * Adds the outcome of one finished run.
+     * 
+     * @param simulation The finished simulation
+     * @param scenario The scenario copy it ran on
+     */
+    public void record(Simulation simulation, Scenario scenario) {
+        StateSnapshot snapshot = simulation.captureSnapshot();
+        List<Spaceship> ships = scenario.getShips();
+        
+        // Work out the numbers before taking the lock so runs only wait for each other briefly
+        int[] alive = new int[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            alive[i] = ships.get(i).getLivingOriginalPassengers();
+        }
+        
+        synchronized (this) {
+            runs++;
+            hours.add(snapshot.getHour());
+            for (int i = 0; i < shipNames.length; i++) {
+                survivors[i].add(alive[i]);
+                String status = snapshot.getShipStatus(i);
+                if (status.equals("Arrived")) {
+                    arrivals[i]++;
+                } else if (status.equals("Destroyed")) {
+                    destructions[i]++;
+                }
+            }
+            for (int i = 0; i < planetNames.length; i++) {
+                populations[i].add(snapshot.getPopulation(i));
+            }
+        }
+    }
+    
+    public synchronized int getRuns() {
+        return runs;
+    }
+    
+    public synchronized Distribution getHours() {
+        return hours;
+    }
+    
+    public synchronized Distribution getSurvivors(int shipIndex) {
+        return survivors[shipIndex];
+    }
+    
+    public synchronized Distribution getPopulation(int planetIndex) {
+        return populations[planetIndex];
+    }
+    
+    public synchronized double getArrivalRate(int shipIndex) {
+        return runs == 0 ? 0 : (double) arrivals[shipIndex] / runs;
+    }
+    
+    public synchronized double getDestructionRate(int shipIndex) {
+        return runs == 0 ? 0 : (double) destructions[shipIndex] / runs;
+    }
+    
+    public synchronized void print() {
+        System.out.println("Monte Carlo results over " + runs + " runs:");
+        System.out.printf("%-14s mean %.1f, p5 %d, p50 %d, p95 %d%n", "Total hours",
+                hours.getMean(), hours.getPercentile(5), hours.getPercentile(50), hours.getPercentile(95));
+        
+        System.out.println("\nSpaceships:");
+        System.out.printf("%-12s %9s %10s %15s %6s %6s %6s%n", "Ship Name", "Arrived", "Destroyed", "Survivors mean", "p5", "p50", "p95");
+        for (int i = 0; i < shipNames.length; i++) {
+            Distribution d = survivors[i];
+            System.out.printf("%-12s %8.1f%% %9.1f%% %15.1f %6d %6d %6d%n", shipNames[i],
+                    100 * getArrivalRate(i), 100 * getDestructionRate(i),
+                    d.getMean(), d.getPercentile(5), d.getPercentile(50), d.getPercentile(95));
+        }
+        
+        System.out.println("\nPlanets:");
+        System.out.printf("%-12s %16s %6s %6s %6s%n", "Planet", "Population mean", "p5", "p50", "p95");
+        for (int i = 0; i < planetNames.length; i++) {
+            Distribution d = populations[i];
+            System.out.printf("%-12s %16.1f %6d %6d %6d%n", planetNames[i],
+                    d.getMean(), d.getPercentile(5), d.getPercentile(50), d.getPercentile(95));
+        }
+    }
+}
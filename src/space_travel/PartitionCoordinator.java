@@ -0,0 +1,382 @@
+/**
+ * <p>
+ * This class spreads a simulation over several local processes. It splits the planets
+ * between the partitions so that about as many ships leave from each, starts one
+ * PartitionWorker process per partition and keeps them in lockstep: after every tick
+ * it waits for all of them, passes the people each one handed over on to the
+ * partition that owns their planet, passes the deaths of people who set off on a ship
+ * of another partition on to that partition and tells them whether all ships
+ * everywhere are done. The workers talk to it over loopback sockets. At the end it puts their rows
+ * together into the same final report a single process would print.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class PartitionCoordinator {
+    // How long the workers may take to start and connect
+    private static final int CONNECT_TIMEOUT_MILLIS = 60_000;
+    
+    private final int partitions;
+    private final PersonStore.Backend backend;
+    private final boolean headless;
+    
+    /**
+     * @param partitions How many worker processes to run
+     * @param backend Where the workers keep their people
+     * @param headless Whether to print the summary after the final state table
+     */
+    public PartitionCoordinator(int partitions, PersonStore.Backend backend, boolean headless) {
+        this.partitions = partitions;
+        this.backend = backend;
+        this.headless = headless;
+    }
+    
+    /**
+     * Runs the simulation in the worker processes and prints the final report.
+     */
+    public void run() {
+        List<Planet> planets = FileReader.readPlanets(Main.PLANETS_FILE);
+        List<Spaceship> ships = FileReader.readSpaceships(Main.SHIPS_FILE);
+        
+        int count = Math.min(partitions, Math.max(planets.size(), 1));
+        Set<String> planetNames = new HashSet<>();
+        for (Planet planet : planets) {
+            planetNames.add(planet.getName());
+        }
+        for (Spaceship ship : ships) {
+            if (count > 1 && planetNames.contains(ship.getName())) {
+                // People arriving on such a planet would board the ship again, which
+                // only works while the ship and the planet are in the same process
+                System.err.println("Warning: Ship '" + ship.getName() + "' is named after a planet, so everything runs in one partition.");
+                count = 1;
+            }
+        }
+        int[] owners = assignPlanets(planets, ships, count);
+        
+        List<Process> workers = new ArrayList<>();
+        Link[] links = new Link[count];
+        try (ServerSocket server = new ServerSocket(0, count, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            for (int i = 0; i < count; i++) {
+                workers.add(launch(server.getLocalPort(), i));
+            }
+            for (int i = 0; i < count; i++) {
+                Link link = new Link(server.accept());
+                int index = link.in.readInt();
+                if (index < 0 || index >= count || links[index] != null) {
+                    throw new IOException("unexpected partition " + index);
+                }
+                link.index = index;
+                links[index] = link;
+                link.out.writeInt(owners.length);
+                for (int owner : owners) {
+                    link.out.writeInt(owner);
+                }
+                link.out.flush();
+            }
+            
+            int hours = coordinate(links, owners, assignShips(planets, ships, owners));
+            StateSnapshot result = collect(links, hours, planets, ships);
+            Simulation.displayState(result);
+            System.out.println("\nSimulation complete after " + hours + " hours.");
+            if (headless) {
+                Simulation.printSummary(result);
+            }
+        } catch (PartitionLost e) {
+            System.err.println("Error: Partition " + e.partition + " stopped unexpectedly.");
+        } catch (IOException e) {
+            System.err.println("Error: The partitioned run failed: " + e.getMessage());
+        } finally {
+            for (Link link : links) {
+                if (link != null) {
+                    link.close();
+                }
+            }
+            for (Process worker : workers) {
+                try {
+                    if (!worker.waitFor(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        worker.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    worker.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gives each planet to a partition. The planets with the most departing ships are
+     * placed first, each on the partition with the fewest ships so far, and every planet
+     * counts as one ship more so the quiet ones are spread out as well.
+     * 
+     * @return The partition of each planet, by planet index
+     */
+    static int[] assignPlanets(List<Planet> planets, List<Spaceship> ships, int partitions) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < planets.size(); i++) {
+            indexes.put(planets.get(i).getName(), i);
+        }
+        int[] load = new int[planets.size()];
+        for (Spaceship ship : ships) {
+            Integer departure = indexes.get(ship.getDeparturePlanet());
+            if (departure != null) {
+                load[departure]++;
+            }
+        }
+        
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < planets.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(load[b], load[a]));
+        
+        int[] owners = new int[planets.size()];
+        long[] totals = new long[partitions];
+        for (int planet : order) {
+            int lightest = 0;
+            for (int p = 1; p < partitions; p++) {
+                if (totals[p] < totals[lightest]) {
+                    lightest = p;
+                }
+            }
+            owners[planet] = lightest;
+            totals[lightest] += load[planet] + 1;
+        }
+        return owners;
+    }
+    
+    /**
+     * Works out the partition of each ship the way the workers do: the one that owns its
+     * departure planet, where the last planet of a name counts, or the first partition
+     * for ships leaving from nowhere.
+     * 
+     * @return The partition of each ship, by ship index
+     */
+    static int[] assignShips(List<Planet> planets, List<Spaceship> ships, int[] owners) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < planets.size(); i++) {
+            indexes.put(planets.get(i).getName(), i);
+        }
+        int[] shipOwners = new int[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            Integer departure = indexes.get(ships.get(i).getDeparturePlanet());
+            shipOwners[i] = departure == null ? 0 : owners[departure];
+        }
+        return shipOwners;
+    }
+    
+    // Starts a worker with the same Java, heap settings and code as this process
+    private Process launch(int port, int index) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-X")) {
+                command.add(argument);
+            }
+        }
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("-p");
+            command.add(modulePath);
+            command.add("-m");
+            command.add("space_travel/" + PartitionWorker.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(PartitionWorker.class.getName());
+        }
+        command.add(String.valueOf(port));
+        command.add(String.valueOf(index));
+        command.add(backend.name());
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+    
+    /**
+     * Runs the ticks: reads every partition's handed-over people and deaths, sends them
+     * on to the partitions that own their planets and ships and ends the tick for
+     * everyone.
+     * 
+     * @return How many hours the simulation ran
+     */
+    private int coordinate(Link[] links, int[] owners, int[] shipOwners) throws IOException {
+        ByteArrayOutputStream[] inboxes = new ByteArrayOutputStream[links.length];
+        DataOutputStream[] inboxData = new DataOutputStream[links.length];
+        int[] inboxGroups = new int[links.length];
+        IntList[] inboxDeaths = new IntList[links.length];
+        for (int i = 0; i < links.length; i++) {
+            inboxes[i] = new ByteArrayOutputStream();
+            inboxData[i] = new DataOutputStream(inboxes[i]);
+            inboxDeaths[i] = new IntList();
+        }
+        
+        int hours = 0;
+        while (true) {
+            hours++;
+            long active = 0;
+            for (Link link : links) {
+                DataInputStream in = link.in;
+                try {
+                    active += in.readInt();
+                    int groups = in.readInt();
+                    for (int g = 0; g < groups; g++) {
+                        int planet = in.readInt();
+                        int people = in.readInt();
+                        byte[] group = new byte[in.readInt()];
+                        in.readFully(group);
+                        
+                        int owner = owners[planet];
+                        inboxData[owner].writeInt(planet);
+                        inboxData[owner].writeInt(people);
+                        inboxData[owner].writeInt(group.length);
+                        inboxData[owner].write(group);
+                        inboxGroups[owner]++;
+                    }
+                    int deaths = in.readInt();
+                    for (int d = 0; d < deaths; d++) {
+                        int ship = in.readInt();
+                        inboxDeaths[shipOwners[ship]].add(ship);
+                    }
+                } catch (EOFException | SocketException e) {
+                    throw new PartitionLost(link.index);
+                }
+            }
+            
+            boolean complete = active == 0;
+            for (int i = 0; i < links.length; i++) {
+                DataOutputStream out = links[i].out;
+                out.writeBoolean(complete);
+                out.writeInt(inboxGroups[i]);
+                inboxes[i].writeTo(out);
+                out.writeInt(inboxDeaths[i].size());
+                for (int d = 0; d < inboxDeaths[i].size(); d++) {
+                    out.writeInt(inboxDeaths[i].get(d));
+                }
+                out.flush();
+                inboxes[i].reset();
+                inboxGroups[i] = 0;
+                inboxDeaths[i].clear();
+            }
+            if (complete) {
+                return hours;
+            }
+        }
+    }
+    
+    /**
+     * Reads every partition's rows of the final state table into one snapshot, in the
+     * order of the planet and ship files.
+     */
+    private StateSnapshot collect(Link[] links, int hours, List<Planet> planets, List<Spaceship> ships) throws IOException {
+        String[] planetNames = new String[planets.size()];
+        String[] planetDates = new String[planets.size()];
+        int[] populations = new int[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            planetNames[i] = planets.get(i).getName();
+        }
+        String[] shipNames = new String[ships.size()];
+        String[] statuses = new String[ships.size()];
+        String[] departures = new String[ships.size()];
+        String[] destinations = new String[ships.size()];
+        String[] remaining = new String[ships.size()];
+        String[] arrivalDates = new String[ships.size()];
+        int[] passengers = new int[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            shipNames[i] = ship.getName();
+            departures[i] = ship.getDeparturePlanet();
+            destinations[i] = ship.getDestinationPlanet();
+        }
+        
+        for (Link link : links) {
+            DataInputStream in = link.in;
+            try {
+                int hour = in.readInt();
+                if (hour != hours) {
+                    throw new IOException("partition " + link.index + " stopped at hour " + hour + " instead of " + hours);
+                }
+                int planetRows = in.readInt();
+                for (int r = 0; r < planetRows; r++) {
+                    int i = in.readInt();
+                    planetDates[i] = in.readUTF();
+                    populations[i] = in.readInt();
+                }
+                int shipRows = in.readInt();
+                for (int r = 0; r < shipRows; r++) {
+                    int i = in.readInt();
+                    statuses[i] = in.readUTF();
+                    remaining[i] = in.readUTF();
+                    arrivalDates[i] = in.readUTF();
+                    passengers[i] = in.readInt();
+                }
+            } catch (EOFException | SocketException e) {
+                throw new PartitionLost(link.index);
+            }
+        }
+        return new StateSnapshot(hours, planetNames, planetDates, populations,
+                shipNames, statuses, departures, destinations, remaining, arrivalDates, passengers);
+    }
+    
+    /**
+     * The connection to one worker.
+     */
+    private static class Link {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        int index = -1;
+        
+        Link(Socket socket) throws IOException {
+            this.socket = socket;
+            // Every tick waits for a small message, which must not sit in a buffer
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+        
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more to say to this worker anyway
+            }
+        }
+    }
+    
+    /**
+     * Thrown when a worker's connection ends in the middle of the run.
+     */
+    private static class PartitionLost extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        final int partition;
+        
+        PartitionLost(int partition) {
+            super("partition " + partition + " stopped");
+            this.partition = partition;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * <p>
+ * This class runs one partition of a simulation spread over several processes by
+ * PartitionCoordinator. The partition owns some of the planets: it loads only the
+ * ships leaving from them and the people starting on them, and simulates those with
+ * an ordinary Simulation. The clocks of the other planets run along, so dates come
+ * out the same everywhere. When a ship arrives on a planet the partition does not
+ * own, its passengers are handed over as a message with their remaining lives, and
+ * the partition that owns the planet takes them in. The sender forgets them and
+ * reuses their ids; only the ships they set off on travel along with them, so that
+ * whoever holds them when they die can tell those ships' partitions.
+ * </p>
+ * <p>
+ * The partitions run in lockstep. At the end of every tick each one sends the
+ * coordinator the people it hands over, the ships of other partitions that lost an
+ * original passenger and how many of its own ships are still under way, then waits
+ * for the people and deaths sent to it and for word whether every partition is done.
+ * Once they all are, it sends its rows of the final state table.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class PartitionWorker {
+    private final int index;
+    private final int[] owners;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private Simulation simulation;
+    private List<Spaceship> ships;
+    
+    // The index in the ship file of each of this partition's ships, and the other way round
+    private int[] globalShips;
+    private int[] localShips;
+    
+    // For people taken in from other partitions, by id: the ships, as indexes in the ship
+    // file, that count them as original passengers
+    private int[][] carriedShips = new int[16][];
+    
+    // The ships, as indexes in the ship file, that lost an original passenger in the
+    // current tick
+    private final IntList deaths = new IntList();
+    
+    // The people handed over in the current tick, as groups ready to send
+    private final ByteArrayOutputStream outgoing = new ByteArrayOutputStream();
+    private final DataOutputStream outgoingData = new DataOutputStream(outgoing);
+    private int outgoingGroups;
+    private final ByteArrayOutputStream group = new ByteArrayOutputStream();
+    private final DataOutputStream groupData = new DataOutputStream(group);
+    
+    /**
+     * @param index This partition's number
+     * @param owners The partition that owns each planet, by planet index
+     * @param in Where the coordinator's messages come from
+     * @param out Where this partition's messages go
+     */
+    PartitionWorker(int index, int[] owners, DataInputStream in, DataOutputStream out) {
+        this.index = index;
+        this.owners = owners;
+        this.in = in;
+        this.out = out;
+    }
+    
+    /**
+     * Returns true if the planet with the given index belongs to this partition.
+     */
+    boolean owns(int planet) {
+        return owners[planet] == index;
+    }
+    
+    /**
+     * Loads this partition's part of the scenario, simulates it until every partition
+     * is done and sends the coordinator the final rows.
+     */
+    void run(PersonStore.Backend backend) throws IOException {
+        // The coordinator has already warned about the planet and ship files, and the
+        // first partition warns about the people file for everyone
+        Consumer<String> quiet = warning -> { };
+        List<Planet> planets = FileReader.readPlanets(Main.PLANETS_FILE, quiet);
+        List<Spaceship> allShips = FileReader.readSpaceships(Main.SHIPS_FILE, quiet);
+        if (planets.size() != owners.length) {
+            throw new IOException("found " + planets.size() + " planets, but the coordinator found " + owners.length);
+        }
+        
+        // Like FileReader.placePeople, the last planet or ship of a name counts and ships
+        // win over planets. People and ships that belong nowhere go to the first partition
+        Map<String, Integer> planetIndexes = new HashMap<>();
+        for (int i = 0; i < planets.size(); i++) {
+            planetIndexes.put(planets.get(i).getName(), i);
+        }
+        Map<String, Integer> startPlanets = new HashMap<>(planetIndexes);
+        ships = new ArrayList<>();
+        IntList shipIndexes = new IntList();
+        localShips = new int[allShips.size()];
+        for (int i = 0; i < allShips.size(); i++) {
+            Spaceship ship = allShips.get(i);
+            int departure = planetIndexes.getOrDefault(ship.getDeparturePlanet(), -1);
+            startPlanets.put(ship.getName(), departure);
+            if (departure >= 0 ? owns(departure) : index == 0) {
+                localShips[i] = ships.size();
+                ships.add(ship);
+                shipIndexes.add(i);
+            } else {
+                localShips[i] = -1;
+            }
+        }
+        globalShips = shipIndexes.toArray();
+        
+        PersonStore people = FileReader.readPeople(Main.PEOPLE_FILE, backend, location -> {
+            int planet = startPlanets.getOrDefault(location, -1);
+            return planet >= 0 ? owns(planet) : index == 0;
+        }, index == 0 ? System.err::println : quiet);
+        FileReader.placePeople(people, planets, ships);
+        
+        simulation = new Simulation(planets, ships, people);
+        simulation.setHeadless(true);
+        simulation.setPartition(this);
+        simulation.run();
+        sendRows(simulation.captureSnapshot());
+    }
+    
+    /**
+     * Queues the people who just arrived on a planet of another partition, with what
+     * they need to go on there: name, age, remaining life and the ships that count them
+     * as original passengers. Those ships stop waiting for them here.
+     */
+    void handOver(PersonStore people, int[] ids, int planet) {
+        if (ids.length == 0) {
+            return;
+        }
+        try {
+            group.reset();
+            for (int id : ids) {
+                byte[] name = people.getName(id).getBytes(StandardCharsets.UTF_8);
+                groupData.writeInt(name.length);
+                groupData.write(name);
+                groupData.writeInt(people.getAge(id));
+                groupData.writeInt(people.getLifeRemaining(id));
+                
+                Spaceship[] mine = simulation.originalShips(id);
+                int[] carried = takeCarriedShips(id);
+                groupData.writeInt(mine.length + carried.length);
+                for (Spaceship ship : mine) {
+                    groupData.writeInt(globalShips[ship.getIndex()]);
+                }
+                for (int ship : carried) {
+                    groupData.writeInt(ship);
+                }
+            }
+            outgoingData.writeInt(planet);
+            outgoingData.writeInt(ids.length);
+            outgoingData.writeInt(group.size());
+            group.writeTo(outgoingData);
+            outgoingGroups++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Returns the ships of other partitions someone brought along and forgets them
+    private int[] takeCarriedShips(int id) {
+        if (id >= carriedShips.length || carriedShips[id] == null) {
+            return new int[0];
+        }
+        int[] carried = carriedShips[id];
+        carriedShips[id] = null;
+        return carried;
+    }
+    
+    /**
+     * Tells the ships that count someone who just died here as an original passenger,
+     * if they were taken in from another partition.
+     */
+    void died(int id) {
+        for (int ship : takeCarriedShips(id)) {
+            deaths.add(ship);
+        }
+    }
+    
+    /**
+     * Sends what this partition did in the tick, takes in the people and deaths handed
+     * to it and returns true once every partition is done.
+     * 
+     * @param activeShips How many of this partition's ships are still under way
+     */
+    boolean endTick(int activeShips) {
+        try {
+            out.writeInt(activeShips);
+            out.writeInt(outgoingGroups);
+            outgoing.writeTo(out);
+            out.writeInt(deaths.size());
+            for (int i = 0; i < deaths.size(); i++) {
+                out.writeInt(deaths.get(i));
+            }
+            out.flush();
+            outgoing.reset();
+            outgoingGroups = 0;
+            deaths.clear();
+            
+            boolean complete = in.readBoolean();
+            int groups = in.readInt();
+            for (int g = 0; g < groups; g++) {
+                int planet = in.readInt();
+                int count = in.readInt();
+                in.readInt(); // The group's size in bytes, which only the coordinator needs
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[in.readInt()];
+                    in.readFully(name);
+                    int age = in.readInt();
+                    int id = simulation.admit(name, age, in.readInt(), planet);
+                    int[] carried = new int[in.readInt()];
+                    for (int j = 0; j < carried.length; j++) {
+                        carried[j] = in.readInt();
+                    }
+                    if (carried.length > 0) {
+                        if (id >= carriedShips.length) {
+                            carriedShips = Arrays.copyOf(carriedShips, Math.max(2 * carriedShips.length, id + 1));
+                        }
+                        carriedShips[id] = carried;
+                    }
+                }
+            }
+            // Original passengers of this partition's ships who died elsewhere
+            int died = in.readInt();
+            for (int i = 0; i < died; i++) {
+                ships.get(localShips[in.readInt()]).originalPassengerDied();
+            }
+            return complete;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Sends the rows of the final state table this partition is responsible for: its
+     * own planets and the ships leaving from them.
+     */
+    private void sendRows(StateSnapshot snapshot) throws IOException {
+        out.writeInt(snapshot.getHour());
+        int planets = 0;
+        for (int i = 0; i < owners.length; i++) {
+            if (owns(i)) planets++;
+        }
+        out.writeInt(planets);
+        for (int i = 0; i < owners.length; i++) {
+            if (!owns(i)) continue;
+            out.writeInt(i);
+            out.writeUTF(snapshot.getPlanetDate(i));
+            out.writeInt(snapshot.getPopulation(i));
+        }
+        out.writeInt(globalShips.length);
+        for (int i = 0; i < globalShips.length; i++) {
+            out.writeInt(globalShips[i]);
+            out.writeUTF(snapshot.getShipStatus(i));
+            out.writeUTF(snapshot.getHoursRemaining(i));
+            out.writeUTF(snapshot.getArrivalDate(i));
+            out.writeInt(snapshot.getPassengers(i));
+        }
+        out.flush();
+    }
+    
+    /**
+     * Started by PartitionCoordinator as: PartitionWorker PORT PARTITION BACKEND
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: PartitionWorker PORT PARTITION HEAP|OFF_HEAP");
+            System.exit(2);
+        }
+        int index = Integer.parseInt(args[1]);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            // Every tick waits for a small message, which must not sit in a buffer
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            out.writeInt(index);
+            out.flush();
+            
+            int[] owners = new int[in.readInt()];
+            for (int i = 0; i < owners.length; i++) {
+                owners[i] = in.readInt();
+            }
+            new PartitionWorker(index, owners, in, out).run(PersonStore.Backend.valueOf(args[2]));
+        } catch (UncheckedIOException e) {
+            fail(index, e.getCause());
+        } catch (IOException e) {
+            fail(index, e);
+        }
+    }
+    
+    private static void fail(int index, IOException e) {
+        String reason = e instanceof EOFException ? "the coordinator went away" : e.getMessage();
+        System.err.println("Error: Partition " + index + " stopped: " + reason);
+        System.exit(1);
+    }
+}
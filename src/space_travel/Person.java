@@ -4,55 +4,90 @@
  * <p>
  * This class represents a person in the space travel simulation.
  * It tracks the person's name, age, remaining life, and current location.
+ * The values themselves live in a PersonStore; a Person is only a view of one
+ * entry, so it can be made and thrown away freely.
  * </p>
  */
 
 package space_travel;
 
+import java.util.List;
+
 public class Person {
-    private String name;
-    private int age;
-    private int lifeRemaining;
-    private String currentVehicle;
+    final PersonStore store;
+    
+    // Position in the store, also used by checkpoints
+    final int id;
     
-    public Person(String name, int age, int lifeRemaining, String currentVehicle) {
-        this.name = name;
-        this.age = age;
-        this.lifeRemaining = lifeRemaining;
-        this.currentVehicle = currentVehicle;
+    Person(PersonStore store, int id) {
+        this.store = store;
+        this.id = id;
     }
     
     public void passHour() {
-        lifeRemaining--;
+        store.passHours(id, 1);
+    }
+    
+    public void passHours(int hours) {
+        store.passHours(id, hours);
+    }
+    
+    /**
+     * Returns the hour on the store's clock at which this person's remaining life runs out.
+     */
+    public int getDeathHour() {
+        return store.getDeathHour(id);
     }
     
     public boolean isAlive() {
-        return lifeRemaining > 0;
+        return store.isAlive(id);
     }
     
     public String getName() {
-        return name;
+        return store.getName(id);
     }
     
     public int getAge() {
-        return age;
+        return store.getAge(id);
     }
     
     public int getLifeRemaining() {
-        return lifeRemaining;
+        return store.getLifeRemaining(id);
     }
     
     public String getCurrentVehicle() {
-        return currentVehicle;
+        return store.getLocation(id);
     }
     
     public void setCurrentVehicle(String currentVehicle) {
-        this.currentVehicle = currentVehicle;
+        store.setLocation(id, currentVehicle);
+    }
+    
+    /**
+     * Returns the ids of the given people, in order.
+     */
+    static int[] ids(List<Person> people) {
+        int[] ids = new int[people.size()];
+        int i = 0;
+        for (Person person : people) {
+            ids[i++] = person.id;
+        }
+        return ids;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Person && ((Person) o).store == store && ((Person) o).id == id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return id;
     }
     
     @Override
     public String toString() {
         return String.format("%s (Age: %d, Life Remaining: %d hours, Location: %s)",
-                name, age, lifeRemaining, currentVehicle);
+                getName(), getAge(), getLifeRemaining(), getCurrentVehicle());
     }
 }
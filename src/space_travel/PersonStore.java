@@ -0,0 +1,832 @@
+/**
+ * <p>
+ * This class holds every person of a scenario as a set of parallel columns instead of
+ * one object per person. Ages, death hours, locations and roster positions are plain
+ * int columns indexed by the person's id, names are packed one after another into a
+ * single UTF-8 byte area, and locations are ids from a SymbolTable of ship and planet
+ * names, which copies of the store share. Person objects are only thin views that are made when asked for.
+ * </p>
+ * <p>
+ * The columns live either in Java arrays or, with the OFF_HEAP backend, in direct
+ * buffers outside the Java heap, which keeps very large populations out of the way of
+ * the garbage collector. Both backends behave exactly the same.
+ * </p>
+ */
+
+package space_travel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+public class PersonStore {
+    private static final int NO_ROSTER = -1;
+    
+    public enum Backend {
+        HEAP, OFF_HEAP;
+        
+        private IntColumn ints(int capacity) {
+            return this == HEAP ? new HeapInts(capacity) : new DirectInts(capacity);
+        }
+        
+        // The most people an int column of this kind can hold
+        private int maxCapacity() {
+            return this == HEAP ? Integer.MAX_VALUE - 8 : DirectInts.MAX_CAPACITY;
+        }
+        
+        private ByteColumn bytes(int capacity) {
+            return this == HEAP ? new HeapBytes(capacity) : new DirectBytes(capacity);
+        }
+    }
+    
+    private final Backend backend;
+    private int size;
+    private int nameLength;
+    private ByteColumn names;
+    private IntColumn nameEnds;
+    private IntColumn ages;
+    private IntColumn deathHours;
+    private IntColumn locations;
+    private IntColumn rosters;
+    private IntColumn slots;
+    private LifeClock clock;
+    
+    // Where each name starts in the name area, made the first time someone is removed.
+    // Until then every name starts where the one before it ends
+    private IntColumn nameStarts;
+    // The ids of removed people, which the next people added get
+    private final IntList freeIds = new IntList();
+    // How much of the name area only holds the names of removed people
+    private int unusedNameBytes;
+    
+    // Copies share the names, where they start and end, and the ages, which never change
+    // once written. Whichever store adds or removes a person after copying takes its own
+    // copy of them first
+    private boolean columnsShared;
+    
+    private final SymbolTable symbols;
+    
+    // Only grows; the volatile write after each addition publishes it to other threads
+    private volatile Roster[] rosterTable = new Roster[16];
+    private int rosterCount;
+    
+    public PersonStore() {
+        this(Backend.HEAP);
+    }
+    
+    public PersonStore(Backend backend) {
+        this(backend, 16);
+    }
+    
+    /**
+     * @param backend Where to keep the columns
+     * @param capacity The number of people to make room for up front
+     */
+    public PersonStore(Backend backend, int capacity) {
+        this(backend, capacity, new SymbolTable());
+    }
+    
+    /**
+     * @param backend Where to keep the columns
+     * @param capacity The number of people to make room for up front
+     * @param symbols The table that location names are turned into ids with
+     */
+    public PersonStore(Backend backend, int capacity, SymbolTable symbols) {
+        this.backend = backend;
+        this.symbols = symbols;
+        capacity = Math.max(capacity, 1);
+        if (capacity > backend.maxCapacity()) {
+            throw new IllegalArgumentException("a " + backend + " store holds at most " + backend.maxCapacity() + " people");
+        }
+        this.names = backend.bytes((int) Math.min(Integer.MAX_VALUE - 8, 16L * capacity));
+        this.nameEnds = backend.ints(capacity);
+        this.ages = backend.ints(capacity);
+        this.deathHours = backend.ints(capacity);
+        this.locations = backend.ints(capacity);
+        this.rosters = backend.ints(capacity);
+        this.slots = backend.ints(capacity);
+    }
+    
+    // Makes a copy that shares the source's unchanging columns and has fresh ones for the rest
+    private PersonStore(PersonStore source) {
+        int capacity = Math.max(source.size, 1);
+        this.backend = source.backend;
+        this.symbols = source.symbols;
+        this.names = source.names;
+        this.nameEnds = source.nameEnds;
+        this.ages = source.ages;
+        this.nameStarts = source.nameStarts;
+        this.nameLength = source.nameLength;
+        this.unusedNameBytes = source.unusedNameBytes;
+        this.size = source.size;
+        for (int i = 0; i < source.freeIds.size(); i++) {
+            this.freeIds.add(source.freeIds.get(i));
+        }
+        this.columnsShared = true;
+        source.columnsShared = true;
+        this.deathHours = backend.ints(capacity);
+        this.locations = backend.ints(capacity);
+        this.rosters = backend.ints(capacity);
+        this.slots = backend.ints(capacity);
+    }
+    
+    public Backend getBackend() {
+        return backend;
+    }
+    
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+    
+    /**
+     * Returns the number of ids handed out so far, including those of removed people
+     * that are waiting for someone new.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Adds a person who is not on any planet or ship yet.
+     * 
+     * @return The new person's id
+     */
+    public int add(String name, int age, int lifeRemaining, String location) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        return add(encoded, 0, encoded.length, age, lifeRemaining, location);
+    }
+    
+    /**
+     * Adds a person whose name is already UTF-8 encoded.
+     */
+    int add(byte[] name, int offset, int length, int age, int lifeRemaining, String location) {
+        int id = reserve(length);
+        names.put(nameLength, name, offset, length);
+        return fill(id, length, age, lifeRemaining, symbols.intern(location));
+    }
+    
+    /**
+     * Adds a person whose UTF-8 encoded name sits in a buffer, such as a mapped file.
+     * 
+     * @param location The id of the person's location in this store's symbol table
+     */
+    int add(ByteBuffer source, int offset, int length, int age, int lifeRemaining, int location) {
+        int id = reserve(length);
+        names.put(nameLength, source, offset, length);
+        return fill(id, length, age, lifeRemaining, location);
+    }
+    
+    // Makes room for one more person and picks their id, reusing a removed person's if there is one
+    private int reserve(int nameBytes) {
+        makeRoom(freeIds.isEmpty() ? 1 : 0, nameBytes);
+        return freeIds.isEmpty() ? size : freeIds.removeLast();
+    }
+    
+    // Makes sure the given number of people and name bytes can be added without growing
+    private void makeRoom(int people, int nameBytes) {
+        if (columnsShared) {
+            names = names.grow(names.capacity());
+            nameEnds = nameEnds.grow(nameEnds.capacity());
+            ages = ages.grow(ages.capacity());
+            if (nameStarts != null) {
+                nameStarts = nameStarts.grow(nameStarts.capacity());
+            }
+            columnsShared = false;
+        }
+        // Once removed people's names fill half the area, it is packed instead of grown
+        if ((long) nameLength + nameBytes > names.capacity() && unusedNameBytes >= names.capacity() / 2) {
+            compactNames();
+        }
+        if ((long) nameLength + nameBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("names take up more than 2 GB");
+        }
+        if ((long) size + people > deathHours.capacity()) {
+            if ((long) size + people > backend.maxCapacity()) {
+                throw new IllegalStateException("a " + backend + " store holds at most " + backend.maxCapacity() + " people");
+            }
+            int capacity = (int) Math.min(backend.maxCapacity(), Math.max(2L * size, (long) size + people));
+            nameEnds = nameEnds.grow(capacity);
+            if (nameStarts != null) {
+                nameStarts = nameStarts.grow(capacity);
+            }
+            ages = ages.grow(capacity);
+            deathHours = deathHours.grow(capacity);
+            locations = locations.grow(capacity);
+            rosters = rosters.grow(capacity);
+            slots = slots.grow(capacity);
+        }
+        if (nameLength + nameBytes > names.capacity()) {
+            names = names.grow((int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * names.capacity(), (long) nameLength + nameBytes)));
+        }
+    }
+    
+    // Moves every name to the front of a fresh name area of the same size, leaving out
+    // the names of removed people
+    private void compactNames() {
+        ByteColumn packed = backend.bytes(names.capacity());
+        int length = 0;
+        for (int id = 0; id < size; id++) {
+            int start = nameStarts.get(id);
+            int bytes = nameEnds.get(id) - start;
+            if (bytes > 0) {
+                packed.put(length, names.slice(start, bytes), 0, bytes);
+            }
+            nameStarts.set(id, length);
+            length += bytes;
+            nameEnds.set(id, length);
+        }
+        names = packed;
+        nameLength = length;
+        unusedNameBytes = 0;
+    }
+    
+    private int fill(int id, int nameBytes, int age, int lifeRemaining, int location) {
+        if (nameStarts != null) {
+            nameStarts.set(id, nameLength);
+        }
+        nameLength += nameBytes;
+        nameEnds.set(id, nameLength);
+        ages.set(id, age);
+        deathHours.set(id, lifeRemaining + (clock == null ? 0 : clock.now()));
+        locations.set(id, location);
+        rosters.set(id, NO_ROSTER);
+        slots.set(id, 0);
+        if (id == size) {
+            size++;
+        }
+        return id;
+    }
+    
+    /**
+     * Removes someone who is on no planet or ship, so their id and their place in the
+     * columns go to the next person added. Lists that still hold the id, such as the
+     * original passengers of a ship, show that newcomer from then on.
+     */
+    void remove(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+        if (rosters.get(id) != NO_ROSTER) {
+            throw new IllegalStateException("person " + id + " is still on a planet or ship");
+        }
+        makeRoom(0, 0);
+        if (nameStarts == null) {
+            IntColumn starts = backend.ints(nameEnds.capacity());
+            for (int i = 0; i < size; i++) {
+                starts.set(i, nameStart(i));
+            }
+            nameStarts = starts;
+        }
+        int start = nameStarts.get(id);
+        unusedNameBytes += nameEnds.get(id) - start;
+        nameEnds.set(id, start);
+        locations.set(id, SymbolTable.NONE);
+        freeIds.add(id);
+    }
+    
+    /**
+     * Appends people straight from columns laid out the way this store keeps them, as
+     * people who are not on any planet or ship yet. The names and ages are copied in
+     * bulk; the int columns are read in the byte order of their buffers.
+     * 
+     * @param count How many people to add
+     * @param names Their UTF-8 names, one after another, filling the whole buffer
+     * @param nameEnds Where each name ends in names
+     * @param lives Each person's remaining life
+     * @param locations Each person's location, as an index into locationSymbols
+     * @param locationSymbols The symbol id in this store's table of each location index
+     */
+    void addColumns(int count, ByteBuffer names, ByteBuffer nameEnds, ByteBuffer ages, ByteBuffer lives,
+            ByteBuffer locations, int[] locationSymbols) {
+        int nameBytes = names.limit();
+        makeRoom(count, nameBytes);
+        IntBuffer ends = nameEnds.asIntBuffer();
+        IntBuffer remaining = lives.asIntBuffer();
+        IntBuffer places = locations.asIntBuffer();
+        
+        this.names.put(nameLength, names, 0, nameBytes);
+        this.ages.put(size, ages.asIntBuffer(), count);
+        if (nameLength == 0) {
+            this.nameEnds.put(size, ends, count);
+        }
+        if (clock == null) {
+            deathHours.put(size, remaining, count);
+        }
+        for (int i = 0; i < count; i++) {
+            int id = size + i;
+            if (nameLength != 0) {
+                this.nameEnds.set(id, nameLength + ends.get(i));
+            }
+            if (nameStarts != null) {
+                nameStarts.set(id, nameLength + (i == 0 ? 0 : ends.get(i - 1)));
+            }
+            if (clock != null) {
+                deathHours.set(id, remaining.get(i) + clock.now());
+            }
+            this.locations.set(id, locationSymbols[places.get(i)]);
+            rosters.set(id, NO_ROSTER);
+            slots.set(id, 0);
+        }
+        nameLength += nameBytes;
+        size += count;
+    }
+    
+    /**
+     * Appends everyone from another store, in order, as people who are not on any
+     * planet or ship yet. Their ids in this store start at the current size.
+     * 
+     * @param other A store whose people have not been placed
+     */
+    public void addAll(PersonStore other) {
+        int[] locationMap = new int[other.symbols.size()];
+        Arrays.fill(locationMap, Integer.MIN_VALUE);
+        byte[] buffer = new byte[256];
+        
+        for (int id = 0; id < other.size; id++) {
+            int start = other.nameStart(id);
+            int length = other.nameEnds.get(id) - start;
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, 2 * buffer.length)];
+            }
+            other.names.get(start, buffer, 0, length);
+            
+            int location = other.locations.get(id);
+            if (location != SymbolTable.NONE && other.symbols != symbols) {
+                if (locationMap[location] == Integer.MIN_VALUE) {
+                    locationMap[location] = symbols.intern(other.symbols.name(location));
+                }
+                location = locationMap[location];
+            }
+            
+            int copy = reserve(length);
+            names.put(nameLength, buffer, 0, length);
+            fill(copy, length, other.ages.get(id), other.getLifeRemaining(id), location);
+        }
+    }
+    
+    /**
+     * Appends everyone from several stores, one store after another, as people who are
+     * not on any planet or ship yet. Room for all of them is made once, then each
+     * store's columns are copied whole into its own range of ids, all stores at once.
+     * Nobody may have been removed from any of the stores.
+     * 
+     * @param others Stores of people who have not been placed, sharing this store's symbols
+     */
+    void addAll(List<PersonStore> others) {
+        if (nameStarts != null) {
+            throw new IllegalStateException("people have been removed from this store");
+        }
+        int[] firstIds = new int[others.size() + 1];
+        int[] nameStarts = new int[others.size() + 1];
+        firstIds[0] = size;
+        nameStarts[0] = nameLength;
+        for (int i = 0; i < others.size(); i++) {
+            PersonStore other = others.get(i);
+            if (other.symbols != symbols) {
+                throw new IllegalArgumentException("the stores do not share a symbol table");
+            }
+            if (other.nameStarts != null) {
+                throw new IllegalArgumentException("people have been removed from one of the stores");
+            }
+            if ((long) firstIds[i] + other.size > backend.maxCapacity()) {
+                throw new IllegalStateException("a " + backend + " store holds at most " + backend.maxCapacity() + " people");
+            }
+            if ((long) nameStarts[i] + other.nameLength > Integer.MAX_VALUE) {
+                throw new IllegalStateException("names take up more than 2 GB");
+            }
+            firstIds[i + 1] = firstIds[i] + other.size;
+            nameStarts[i + 1] = nameStarts[i] + other.nameLength;
+        }
+        int last = others.size();
+        makeRoom(firstIds[last] - size, nameStarts[last] - nameLength);
+        
+        // Every store writes to its own ids and name bytes, so they need not wait for each other
+        IntStream.range(0, last).parallel()
+                .forEach(i -> copyColumns(others.get(i), firstIds[i], nameStarts[i]));
+        size = firstIds[last];
+        nameLength = nameStarts[last];
+    }
+    
+    private void copyColumns(PersonStore other, int firstId, int nameStart) {
+        int count = other.size;
+        names.put(nameStart, other.names.slice(0, other.nameLength), 0, other.nameLength);
+        ages.put(firstId, other.ages.slice(0, count), count);
+        locations.put(firstId, other.locations.slice(0, count), count);
+        if (clock == null && other.clock == null) {
+            deathHours.put(firstId, other.deathHours.slice(0, count), count);
+        }
+        for (int i = 0; i < count; i++) {
+            int id = firstId + i;
+            nameEnds.set(id, nameStart + other.nameEnds.get(i));
+            if (clock != null || other.clock != null) {
+                deathHours.set(id, other.getLifeRemaining(i) + (clock == null ? 0 : clock.now()));
+            }
+            rosters.set(id, NO_ROSTER);
+            slots.set(id, 0);
+        }
+    }
+    
+    /**
+     * Builds a new store with the same people, not placed anywhere, each with the remaining
+     * life the function gives for them. The new store uses the same backend and shares
+     * this store's symbol table, names and ages; only the columns a run changes are
+     * copied.
+     * 
+     * @param lifeRemaining Gives the remaining life for the copy of each person, in id order
+     */
+    public PersonStore copy(ToIntFunction<Person> lifeRemaining) {
+        PersonStore copy = new PersonStore(this);
+        for (int id = 0; id < size; id++) {
+            copy.deathHours.set(id, lifeRemaining.applyAsInt(get(id)));
+            copy.locations.set(id, locations.get(id));
+            copy.rosters.set(id, NO_ROSTER);
+        }
+        return copy;
+    }
+    
+    /**
+     * Returns a view of one person. Views are cheap and compare equal when they show
+     * the same person of the same store.
+     */
+    public Person get(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+        return new Person(this, id);
+    }
+    
+    /**
+     * Returns a read-only list of everyone, in id order.
+     */
+    public List<Person> asList() {
+        return new View(null);
+    }
+    
+    /**
+     * Returns a read-only list of the given people, in the given order.
+     */
+    List<Person> view(int[] ids) {
+        return new View(ids);
+    }
+    
+    public String getName(int id) {
+        int start = nameStart(id);
+        byte[] bytes = new byte[nameEnds.get(id) - start];
+        names.get(start, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private int nameStart(int id) {
+        if (nameStarts != null) {
+            return nameStarts.get(id);
+        }
+        return id == 0 ? 0 : nameEnds.get(id - 1);
+    }
+    
+    /**
+     * Returns the offset just past the person's name in the name area; the name starts
+     * where the previous person's ends, as long as nobody has been removed.
+     */
+    int getNameEnd(int id) {
+        return nameEnds.get(id);
+    }
+    
+    /**
+     * Copies raw UTF-8 bytes out of the name area.
+     */
+    void getNameBytes(int offset, byte[] target, int targetOffset, int length) {
+        names.get(offset, target, targetOffset, length);
+    }
+    
+    public int getAge(int id) {
+        return ages.get(id);
+    }
+    
+    public int getLifeRemaining(int id) {
+        return clock == null ? deathHours.get(id) : deathHours.get(id) - clock.now();
+    }
+    
+    public boolean isAlive(int id) {
+        return getLifeRemaining(id) > 0;
+    }
+    
+    /**
+     * Sets the remaining life from now on, keeping the person attached to the clock.
+     */
+    void setLifeRemaining(int id, int lifeRemaining) {
+        deathHours.set(id, lifeRemaining + (clock == null ? 0 : clock.now()));
+    }
+    
+    void passHours(int id, int hours) {
+        deathHours.set(id, deathHours.get(id) - hours);
+    }
+    
+    /**
+     * Returns the hour on the store's clock at which the person's remaining life runs out.
+     */
+    int getDeathHour(int id) {
+        return deathHours.get(id);
+    }
+    
+    /**
+     * Makes everyone age along with a shared clock instead of through passHours().
+     * Remaining lives are kept as they are at the moment of attaching.
+     * 
+     * @param clock The clock to age against, or null to detach
+     */
+    void setClock(LifeClock clock) {
+        int shift = (clock == null ? 0 : clock.now()) - (this.clock == null ? 0 : this.clock.now());
+        this.clock = clock;
+        if (shift != 0) {
+            for (int id = 0; id < size; id++) {
+                deathHours.set(id, deathHours.get(id) + shift);
+            }
+        }
+    }
+    
+    public String getLocation(int id) {
+        return symbols.name(locations.get(id));
+    }
+    
+    public void setLocation(int id, String location) {
+        locations.set(id, symbols.intern(location));
+    }
+    
+    /**
+     * Returns the symbol table id of the person's location.
+     */
+    int getLocationId(int id) {
+        return locations.get(id);
+    }
+    
+    void setLocationId(int id, int location) {
+        locations.set(id, location);
+    }
+    
+    /**
+     * Returns the roster the person is in, or null if they are not on a planet or ship.
+     */
+    Roster getRoster(int id) {
+        int roster = rosters.get(id);
+        return roster == NO_ROSTER ? null : rosterTable[roster];
+    }
+    
+    /**
+     * Returns the handle of the roster a person is on, or -1. Everyone on the same
+     * roster is in the same place.
+     */
+    int getRosterHandle(int id) {
+        return rosters.get(id);
+    }
+    
+    int getSlot(int id) {
+        return slots.get(id);
+    }
+    
+    void setMembership(int id, int roster, int slot) {
+        rosters.set(id, roster);
+        slots.set(id, slot);
+    }
+    
+    void clearMembership(int id) {
+        rosters.set(id, NO_ROSTER);
+    }
+    
+    /**
+     * Gives a roster the handle its members are marked with.
+     */
+    synchronized int register(Roster roster) {
+        Roster[] table = rosterTable;
+        if (rosterCount == table.length) {
+            table = Arrays.copyOf(table, 2 * rosterCount);
+        }
+        table[rosterCount] = roster;
+        rosterTable = table;
+        return rosterCount++;
+    }
+    
+    private class View extends AbstractList<Person> implements RandomAccess {
+        private final int[] ids;
+        
+        View(int[] ids) {
+            this.ids = ids;
+        }
+        
+        @Override
+        public Person get(int index) {
+            if (ids == null) {
+                return PersonStore.this.get(index);
+            }
+            return new Person(PersonStore.this, ids[index]);
+        }
+        
+        @Override
+        public int size() {
+            return ids == null ? size : ids.length;
+        }
+    }
+    
+    private interface IntColumn {
+        int get(int index);
+        
+        void set(int index, int value);
+        
+        void put(int index, IntBuffer source, int length);
+        
+        // A view of part of the column, which sees later changes to it
+        IntBuffer slice(int index, int length);
+        
+        int capacity();
+        
+        IntColumn grow(int capacity);
+    }
+    
+    private interface ByteColumn {
+        void get(int index, byte[] target, int offset, int length);
+        
+        void put(int index, byte[] source, int offset, int length);
+        
+        void put(int index, ByteBuffer source, int offset, int length);
+        
+        // A view of part of the column, which sees later changes to it
+        ByteBuffer slice(int index, int length);
+        
+        int capacity();
+        
+        ByteColumn grow(int capacity);
+    }
+    
+    private static class HeapInts implements IntColumn {
+        private final int[] values;
+        
+        HeapInts(int capacity) {
+            this.values = new int[capacity];
+        }
+        
+        private HeapInts(int[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public int get(int index) {
+            return values[index];
+        }
+        
+        @Override
+        public void set(int index, int value) {
+            values[index] = value;
+        }
+        
+        @Override
+        public void put(int index, IntBuffer source, int length) {
+            source.get(0, values, index, length);
+        }
+        
+        @Override
+        public IntBuffer slice(int index, int length) {
+            return IntBuffer.wrap(values, index, length).slice();
+        }
+        
+        @Override
+        public int capacity() {
+            return values.length;
+        }
+        
+        @Override
+        public IntColumn grow(int capacity) {
+            return new HeapInts(Arrays.copyOf(values, capacity));
+        }
+    }
+    
+    private static class DirectInts implements IntColumn {
+        // A direct buffer holds at most Integer.MAX_VALUE - 8 bytes
+        static final int MAX_CAPACITY = (Integer.MAX_VALUE - 8) / 4;
+        
+        private final ByteBuffer values;
+        
+        DirectInts(int capacity) {
+            long bytes = 4L * capacity;
+            if (capacity > MAX_CAPACITY) {
+                throw new IllegalArgumentException("an off-heap column holds at most " + MAX_CAPACITY + " values, not " + capacity);
+            }
+            this.values = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        }
+        
+        @Override
+        public int get(int index) {
+            return values.getInt(index << 2);
+        }
+        
+        @Override
+        public void set(int index, int value) {
+            values.putInt(index << 2, value);
+        }
+        
+        @Override
+        public void put(int index, IntBuffer source, int length) {
+            values.asIntBuffer().put(index, source, 0, length);
+        }
+        
+        @Override
+        public IntBuffer slice(int index, int length) {
+            return values.slice(index << 2, length << 2).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        
+        @Override
+        public int capacity() {
+            return values.capacity() >> 2;
+        }
+        
+        @Override
+        public IntColumn grow(int capacity) {
+            DirectInts grown = new DirectInts(capacity);
+            grown.values.put(0, values, 0, Math.min(values.capacity(), grown.values.capacity()));
+            return grown;
+        }
+    }
+    
+    private static class HeapBytes implements ByteColumn {
+        private final byte[] values;
+        
+        HeapBytes(int capacity) {
+            this.values = new byte[capacity];
+        }
+        
+        private HeapBytes(byte[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public void get(int index, byte[] target, int offset, int length) {
+            System.arraycopy(values, index, target, offset, length);
+        }
+        
+        @Override
+        public void put(int index, byte[] source, int offset, int length) {
+            System.arraycopy(source, offset, values, index, length);
+        }
+        
+        @Override
+        public void put(int index, ByteBuffer source, int offset, int length) {
+            source.get(offset, values, index, length);
+        }
+        
+        @Override
+        public ByteBuffer slice(int index, int length) {
+            return ByteBuffer.wrap(values, index, length).slice();
+        }
+        
+        @Override
+        public int capacity() {
+            return values.length;
+        }
+        
+        @Override
+        public ByteColumn grow(int capacity) {
+            return new HeapBytes(Arrays.copyOf(values, capacity));
+        }
+    }
+    
+    private static class DirectBytes implements ByteColumn {
+        private final ByteBuffer values;
+        
+        DirectBytes(int capacity) {
+            this.values = ByteBuffer.allocateDirect(capacity);
+        }
+        
+        @Override
+        public void get(int index, byte[] target, int offset, int length) {
+            values.get(index, target, offset, length);
+        }
+        
+        @Override
+        public void put(int index, byte[] source, int offset, int length) {
+            values.put(index, source, offset, length);
+        }
+        
+        @Override
+        public void put(int index, ByteBuffer source, int offset, int length) {
+            values.put(index, source, offset, length);
+        }
+        
+        @Override
+        public ByteBuffer slice(int index, int length) {
+            return values.slice(index, length);
+        }
+        
+        @Override
+        public int capacity() {
+            return values.capacity();
+        }
+        
+        @Override
+        public ByteColumn grow(int capacity) {
+            DirectBytes grown = new DirectBytes(capacity);
+            grown.values.put(0, values, 0, Math.min(values.capacity(), capacity));
+            return grown;
+        }
+    }
+}
@@ -4,58 +4,158 @@
  * <p>
  * This class represents a planet in the space travel simulation.
  * It manages the planet's time, population, and interactions with spaceships.
+ * The population is kept in groups by the ship (or planet) each person is booked on,
+ * so a departing ship takes its whole group without looking at anyone else. Groups are
+ * found by the symbol id of that name, so no names are compared while simulating, and a
+ * departing group is swapped out of the list of groups without scanning it.
  * </p>
  */
 
 package space_travel;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 public class Planet {
     private String name;
     private int dayLength;
     private Time time;
-    private List<Person> population;
+    private int symbol = SymbolTable.NONE;
+    private PersonStore people;
+    
+    // Groups by symbol id with their place in the list of groups, and for every place
+    // the symbol id of the group there
+    private Roster[] boarding = new Roster[0];
+    private int[] positions = new int[0];
+    private final List<Roster> groups = new ArrayList<>();
+    private int[] groupSymbols = new int[4];
+    private final List<Person> population = new Population();
     
     public Planet(String name, int dayLength, String date) {
         this.name = name;
         this.dayLength = dayLength;
         this.time = new Time(date, dayLength);
-        this.population = new ArrayList<>();
     }
     
+    Planet(String name, int dayLength, long epochHour) {
+        this.name = name;
+        this.dayLength = dayLength;
+        this.time = new Time(epochHour, dayLength);
+    }
+    
+    /**
+     * Creates an empty copy of a planet at the same point in time.
+     * 
+     * @param template The planet to copy
+     */
+    Planet(Planet template) {
+        this.name = template.name;
+        this.dayLength = template.dayLength;
+        this.time = new Time(template.time.getEpochHour(), template.dayLength);
+    }
+    
+    /**
+     * Advances the planet's clock by one hour. People who die are taken off the
+     * planet by the simulation's timing wheel, so the population is not scanned here.
+     */
     public void passHour() {
         time.increaseHour();
-        
-        List<Person> alive = new ArrayList<>();
-        for (Person person : population) {
-            if (person.isAlive()) {
-                alive.add(person);
-            }
-        }
-        
-        population = alive;
     }
     
+    /**
+     * Moves the planet's clock forward by several hours at once.
+     * Equivalent to calling passHour() that many times.
+     * 
+     * @param hours The number of hours to skip
+     */
+    public void passHours(int hours) {
+        time.addHours(hours);
+    }
+    
+    /**
+     * Adds a person to the group of the ship they are booked on. The person's vehicle
+     * must not change while they are on the planet.
+     */
     public void addPerson(Person person) {
-        population.add(person);
+        addPerson(person.store, person.id);
     }
     
-    public List<Person> removePeople(String shipName) {
-        List<Person> passengersOnShip = new ArrayList<>();
-        List<Person> remainingPopulation = new ArrayList<>();
-        
-        for (Person person : population) {
-            if (person.getCurrentVehicle().equals(shipName)) {
-                passengersOnShip.add(person);
-            } else {
-                remainingPopulation.add(person);
+    void addPerson(PersonStore people, int id) {
+        this.people = people;
+        int vehicle = people.getLocationId(id);
+        if (vehicle >= boarding.length) {
+            boarding = Arrays.copyOf(boarding, Math.max(vehicle + 1, 2 * boarding.length));
+            positions = Arrays.copyOf(positions, boarding.length);
+        }
+        Roster group = boarding[vehicle];
+        if (group == null) {
+            group = new Roster();
+            boarding[vehicle] = group;
+            if (groups.size() == groupSymbols.length) {
+                groupSymbols = Arrays.copyOf(groupSymbols, 2 * groupSymbols.length);
             }
+            positions[vehicle] = groups.size();
+            groupSymbols[groups.size()] = vehicle;
+            groups.add(group);
         }
+        group.add(people, id);
+    }
+    
+    /**
+     * Takes everyone booked on the given ship off the planet.
+     * 
+     * @param shipName The name of the departing ship
+     * @return The people who were waiting for it
+     */
+    public List<Person> removePeople(String shipName) {
+        Roster group = people == null ? null : takeBoarding(people.getSymbols().find(shipName));
+        if (group == null) {
+            return new ArrayList<>();
+        }
+        List<Person> boarded = new ArrayList<>(group);
+        group.clear();
+        return boarded;
+    }
+    
+    /**
+     * Hands over the whole group booked on the given ship, roster and all, so the
+     * ship can take it on board without moving anyone.
+     * 
+     * @param ship The symbol id of the departing ship's name
+     * @return The group, or null if nobody was waiting for it
+     */
+    Roster takeBoarding(int ship) {
+        if (ship < 0 || ship >= boarding.length || boarding[ship] == null) {
+            return null;
+        }
+        Roster group = boarding[ship];
+        boarding[ship] = null;
         
-        population = remainingPopulation;
-        return passengersOnShip;
+        // The last group takes the place of the one leaving, so no other group moves
+        int position = positions[ship];
+        int last = groups.size() - 1;
+        Roster moved = groups.remove(last);
+        if (position != last) {
+            groups.set(position, moved);
+            groupSymbols[position] = groupSymbols[last];
+            positions[groupSymbols[position]] = position;
+        }
+        return group;
+    }
+    
+    /**
+     * Returns the symbol id of this planet's name, given by the simulation.
+     */
+    int getSymbol() {
+        return symbol;
+    }
+    
+    void setSymbol(int symbol) {
+        this.symbol = symbol;
     }
     
     public String getName() {
@@ -70,10 +170,73 @@ public class Planet {
         return time;
     }
     
+    /**
+     * Returns a read-only view of everyone on the planet, group by group.
+     */
     public List<Person> getPopulation() {
         return population;
     }
     
+    /**
+     * Returns the store ids of everyone on the planet, in population order.
+     */
+    int[] getPopulationIds() {
+        int[] ids = new int[population.size()];
+        int i = 0;
+        for (Roster group : groups) {
+            for (int j = 0; j < group.size(); j++) {
+                ids[i++] = group.getId(j);
+            }
+        }
+        return ids;
+    }
+    
+    // Dead people leave their group through Roster, so the size is summed from the groups
+    private class Population extends AbstractList<Person> {
+        @Override
+        public int size() {
+            int size = 0;
+            for (Roster group : groups) {
+                size += group.size();
+            }
+            return size;
+        }
+        
+        @Override
+        public Person get(int index) {
+            int offset = index;
+            for (Roster group : groups) {
+                if (offset < group.size()) {
+                    return group.get(offset);
+                }
+                offset -= group.size();
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+        
+        @Override
+        public Iterator<Person> iterator() {
+            Iterator<Roster> remaining = groups.iterator();
+            return new Iterator<>() {
+                private Iterator<Person> current = Collections.emptyIterator();
+                
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && remaining.hasNext()) {
+                        current = remaining.next().iterator();
+                    }
+                    return current.hasNext();
+                }
+                
+                @Override
+                public Person next() {
+                    hasNext();
+                    return current.next();
+                }
+            };
+        }
+    }
+    
     @Override
     public String toString() {
         return String.format("%s (Time: %s, Population: %d people)",
@@ -0,0 +1,290 @@
+/**
+ * <p>
+ * This class walks the '#'-separated records of an input file straight from a
+ * memory-mapped view of its bytes. Lines are found by scanning for '\n', fields by
+ * scanning for '#', and numbers are parsed from the bytes directly, so nothing is
+ * allocated per line except the strings that end up in the domain objects. Text is
+ * decoded as UTF-8, and names that repeat a lot (ship and planet names) can be pooled.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class RecordScanner {
+    private static final int WINDOW_SIZE = 1 << 28;
+    private static final int POOL_LIMIT = 1 << 16;
+    
+    private final FileChannel channel;
+    private final long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLength;
+    private long position;
+    private int lineNumber;
+    
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount;
+    
+    private byte[] scratch = new byte[64];
+    private byte[][] poolKeys = new byte[64][];
+    private String[] poolValues = new String[64];
+    private int poolSize;
+    
+    /**
+     * Creates a scanner over part of a file. The range should start at the beginning of
+     * a line; it ends at the given offset, which should be just after a newline or at the
+     * end of the file.
+     * 
+     * @param channel The open file
+     * @param start Offset of the first byte to read
+     * @param end Offset just past the last byte to read
+     */
+    public RecordScanner(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        this.end = end;
+        this.position = start;
+        if (start == 0) {
+            skipByteOrderMark();
+        }
+    }
+    
+    public RecordScanner(FileChannel channel) throws IOException {
+        this(channel, 0, channel.size());
+    }
+    
+    private void skipByteOrderMark() throws IOException {
+        if (end >= 3) {
+            map(0);
+            if ((window.get(0) & 0xFF) == 0xEF && (window.get(1) & 0xFF) == 0xBB && (window.get(2) & 0xFF) == 0xBF) {
+                position = 3;
+            }
+        }
+    }
+    
+    private void map(long start) throws IOException {
+        windowStart = start;
+        windowLength = (int) Math.min(WINDOW_SIZE, end - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, windowLength);
+    }
+    
+    /**
+     * Moves to the next line that is not blank and splits it into fields.
+     * 
+     * @return false once the end of the range is reached
+     */
+    public boolean nextRecord() throws IOException {
+        while (position < end) {
+            if (window == null || position < windowStart || position >= windowStart + windowLength) {
+                map(position);
+            }
+            
+            int lineStart = (int) (position - windowStart);
+            int limit = windowLength;
+            int i = lineStart;
+            while (i < limit && window.get(i) != '\n') {
+                i++;
+            }
+            
+            if (i == limit && windowStart + limit < end) {
+                // The line runs past this window; map again starting at the line
+                if (lineStart == 0) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is longer than " + WINDOW_SIZE + " bytes");
+                }
+                map(position);
+                continue;
+            }
+            
+            lineNumber++;
+            position = windowStart + Math.min(i + 1, limit);
+            if (split(lineStart, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean split(int start, int stop) {
+        fieldCount = 0;
+        boolean blank = true;
+        int fieldStart = start;
+        
+        for (int i = start; i < stop; i++) {
+            byte b = window.get(i);
+            if (b == '#') {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+                blank = false;
+            } else if ((b & 0xFF) > ' ') {
+                blank = false;
+            }
+        }
+        if (blank) {
+            return false;
+        }
+        
+        addField(fieldStart, stop);
+        return true;
+    }
+    
+    private void addField(int start, int stop) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        
+        // Trim the same way String.trim() does
+        while (start < stop && (window.get(start) & 0xFF) <= ' ') start++;
+        while (stop > start && (window.get(stop - 1) & 0xFF) <= ' ') stop--;
+        
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = stop;
+        fieldCount++;
+    }
+    
+    /**
+     * Returns the 1-based number of the current line within the scanned range,
+     * counting blank lines too.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+    
+    public int getFieldCount() {
+        return fieldCount;
+    }
+    
+    /**
+     * Checks that the current record has at least the given number of fields.
+     * 
+     * @throws IllegalArgumentException if fields are missing
+     */
+    public void requireFields(int count) {
+        if (fieldCount < count) {
+            throw new IllegalArgumentException("expected " + count + " fields separated by '#' but found " + fieldCount);
+        }
+    }
+    
+    /**
+     * Parses a field as a decimal int, with an optional sign.
+     * 
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int intField(int field) {
+        int start = fieldStarts[field];
+        int stop = fieldEnds[field];
+        boolean negative = false;
+        
+        if (start < stop && (window.get(start) == '-' || window.get(start) == '+')) {
+            negative = window.get(start) == '-';
+            start++;
+        }
+        if (start == stop) {
+            throw new NumberFormatException("field " + (field + 1) + " is not a number: \"" + stringField(field) + "\"");
+        }
+        
+        long value = 0;
+        for (int i = start; i < stop; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("field " + (field + 1) + " is not a number: \"" + stringField(field) + "\"");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("field " + (field + 1) + " is out of range: \"" + stringField(field) + "\"");
+            }
+        }
+        
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("field " + (field + 1) + " is out of range: \"" + stringField(field) + "\"");
+        }
+        return (int) value;
+    }
+    
+    /**
+     * Decodes a field as a new UTF-8 string.
+     */
+    public String stringField(int field) {
+        int length = copyField(field);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Decodes a field as a UTF-8 string, handing back the same String object every
+     * time the same bytes come up. Meant for values that repeat across many lines.
+     */
+    public String pooledField(int field) {
+        int length = copyField(field);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + scratch[i];
+        }
+        
+        int mask = poolKeys.length - 1;
+        int slot = hash & mask;
+        while (poolKeys[slot] != null) {
+            if (Arrays.equals(poolKeys[slot], 0, poolKeys[slot].length, scratch, 0, length)) {
+                return poolValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        if (poolSize < POOL_LIMIT) {
+            poolKeys[slot] = Arrays.copyOf(scratch, length);
+            poolValues[slot] = value;
+            if (++poolSize * 2 > poolKeys.length) {
+                growPool();
+            }
+        }
+        return value;
+    }
+    
+    /**
+     * Copies a field's raw bytes into a buffer owned by the scanner and returns their
+     * count. The bytes are valid until the next call that reads a field.
+     */
+    int rawField(int field) {
+        return copyField(field);
+    }
+    
+    byte[] rawBytes() {
+        return scratch;
+    }
+    
+    private void growPool() {
+        byte[][] oldKeys = poolKeys;
+        String[] oldValues = poolValues;
+        poolKeys = new byte[oldKeys.length * 2][];
+        poolValues = new String[oldKeys.length * 2];
+        int mask = poolKeys.length - 1;
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key == null) continue;
+            int slot = Arrays.hashCode(key) & mask;
+            while (poolKeys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            poolKeys[slot] = key;
+            poolValues[slot] = oldValues[i];
+        }
+    }
+    
+    private int copyField(int field) {
+        int start = fieldStarts[field];
+        int length = fieldEnds[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        window.get(start, scratch, 0, length);
+        return length;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * <p>
+ * This class holds the people currently on a planet or aboard a spaceship.
+ * It keeps their ids in the PersonStore, and the store remembers for every person
+ * which roster they are in and at which position, so a single person can be removed
+ * in constant time when they die. A person can only be in one roster at a time;
+ * adding them to a new one takes them out of the old one.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+public class Roster extends AbstractList<Person> {
+    private PersonStore store;
+    private int handle;
+    private int[] ids = new int[8];
+    private int size;
+    
+    @Override
+    public Person get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return new Person(store, ids[index]);
+    }
+    
+    /**
+     * Returns the store id of the person at the given position.
+     */
+    int getId(int index) {
+        return ids[index];
+    }
+    
+    /**
+     * Returns the store the people in this roster belong to, or null while it has never had anyone.
+     */
+    PersonStore getStore() {
+        return store;
+    }
+    
+    int[] toIdArray() {
+        return Arrays.copyOf(ids, size);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean add(Person person) {
+        add(person.store, person.id);
+        return true;
+    }
+    
+    void add(PersonStore people, int id) {
+        if (store != people) {
+            bind(people);
+        }
+        Roster current = people.getRoster(id);
+        if (current != null) {
+            current.removeId(id);
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        people.setMembership(id, handle, size);
+        ids[size++] = id;
+        modCount++;
+    }
+    
+    // A roster takes its store from the first person added to it
+    private void bind(PersonStore people) {
+        if (store != null) {
+            throw new IllegalArgumentException("a roster can only hold people from one store");
+        }
+        store = people;
+        handle = people.register(this);
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Person)) return false;
+        Person person = (Person) o;
+        if (person.store != store || store.getRoster(person.id) != this) return false;
+        
+        removeId(person.id);
+        return true;
+    }
+    
+    /**
+     * Takes a person who is in this roster out of it.
+     */
+    void removeId(int id) {
+        // Fill the hole with the last person instead of shifting everyone down
+        int slot = store.getSlot(id);
+        int last = ids[--size];
+        ids[slot] = last;
+        store.setMembership(last, handle, slot);
+        store.clearMembership(id);
+        modCount++;
+    }
+    
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            store.clearMembership(ids[i]);
+        }
+        size = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * <p>
+ * This class holds everything loaded from the input files for one simulation run:
+ * the planets, the spaceships and the people, with the people already placed on
+ * their starting planets. A scenario that has not been simulated can be copied
+ * for further runs; the copies share all names and dates with it and only get
+ * their own planets, ships and people.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+public class Scenario {
+    private final List<Planet> planets;
+    private final List<Spaceship> ships;
+    private final PersonStore people;
+    private int[][] placement;
+    
+    public Scenario(List<Planet> planets, List<Spaceship> ships, PersonStore people) {
+        this.planets = planets;
+        this.ships = ships;
+        this.people = people;
+    }
+    
+    public List<Planet> getPlanets() {
+        return planets;
+    }
+    
+    public List<Spaceship> getShips() {
+        return ships;
+    }
+    
+    public PersonStore getPeople() {
+        return people;
+    }
+    
+    /**
+     * Builds a new scenario with its own planets, ships and people, placed exactly like
+     * the people of this one. Safe to call from several threads at once as long as this
+     * scenario itself is not being simulated.
+     * 
+     * @param travelDuration Gives the travel duration for the copy of each ship, in ship order
+     * @param lifeRemaining Gives the remaining life for the copy of each person, in file order
+     * @return The copied scenario
+     */
+    public Scenario copy(ToIntFunction<Spaceship> travelDuration, ToIntFunction<Person> lifeRemaining) {
+        int[][] placement = getPlacement();
+        
+        List<Planet> planetCopies = new ArrayList<>(planets.size());
+        for (Planet planet : planets) {
+            planetCopies.add(new Planet(planet));
+        }
+        
+        List<Spaceship> shipCopies = new ArrayList<>(ships.size());
+        for (Spaceship ship : ships) {
+            shipCopies.add(new Spaceship(ship, travelDuration.applyAsInt(ship)));
+        }
+        
+        PersonStore peopleCopies = people.copy(lifeRemaining);
+        for (int i = 0; i < planetCopies.size(); i++) {
+            Planet planet = planetCopies.get(i);
+            for (int id : placement[i]) {
+                planet.addPerson(peopleCopies, id);
+            }
+        }
+        
+        return new Scenario(planetCopies, shipCopies, peopleCopies);
+    }
+    
+    /**
+     * Returns, for every planet, the store ids of the people on it in population order.
+     */
+    synchronized int[][] getPlacement() {
+        if (placement == null) {
+            placement = new int[planets.size()][];
+            for (int i = 0; i < planets.size(); i++) {
+                placement[i] = planets.get(i).getPopulationIds();
+            }
+        }
+        return placement;
+    }
+}
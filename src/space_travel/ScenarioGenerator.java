@@ -0,0 +1,343 @@
+/**
+ * <p>
+ * This class writes synthetic planet, spaceship and people files in the same
+ * '#'-separated format FileReader reads, for testing at sizes the sample files
+ * cannot reach. Every value is drawn from a seeded generator, so the same settings
+ * always give the same files. Lines are written out as they are generated, which
+ * keeps memory use constant no matter how many people are written; only the
+ * ship-popularity table grows, with the number of ships.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+public class ScenarioGenerator {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String[] FIRST_NAMES = {
+        "Ali", "Ayşe", "Mehmet", "Fatma", "Mustafa", "Zeynep", "Ahmet", "Elif", "Can", "Deniz"
+    };
+    
+    private long seed;
+    private int planets = 4;
+    private int ships = 6;
+    private long people = 25;
+    private String startDate = "01.01.2025";
+    private Sampler dayLength = Sampler.uniform(10, 30);
+    private Sampler departureDay = Sampler.uniform(0, 30);
+    private Sampler travelDuration = Sampler.uniform(24, 1000);
+    private Sampler lifespan = Sampler.uniform(50, 2000);
+    private Sampler age = Sampler.uniform(1, 90);
+    private double occupancySkew;
+    private double onPlanetShare = 0.1;
+    
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    public void setPlanets(int planets) {
+        this.planets = planets;
+    }
+    
+    public void setShips(int ships) {
+        this.ships = ships;
+    }
+    
+    public void setPeople(long people) {
+        this.people = people;
+    }
+    
+    /**
+     * Sets the date every planet's calendar starts on. Departure days count from here.
+     * 
+     * @param startDate A date in dd.MM.yyyy format
+     */
+    public void setStartDate(String startDate) {
+        Time.parseDay(startDate);
+        this.startDate = startDate;
+    }
+    
+    public void setDayLength(Sampler dayLength) {
+        this.dayLength = dayLength;
+    }
+    
+    /**
+     * Sets how many days after the start date ships leave.
+     */
+    public void setDepartureDay(Sampler departureDay) {
+        this.departureDay = departureDay;
+    }
+    
+    public void setTravelDuration(Sampler travelDuration) {
+        this.travelDuration = travelDuration;
+    }
+    
+    public void setLifespan(Sampler lifespan) {
+        this.lifespan = lifespan;
+    }
+    
+    public void setAge(Sampler age) {
+        this.age = age;
+    }
+    
+    /**
+     * Sets how unevenly people are spread over the ships. Ship number k gets a share
+     * proportional to 1 / k^skew, so 0 books every ship equally and values around 1
+     * give a few crowded ships and a long tail of nearly empty ones.
+     * 
+     * @param skew The Zipf exponent, 0 or more
+     */
+    public void setOccupancySkew(double skew) {
+        this.occupancySkew = skew;
+    }
+    
+    /**
+     * Sets the share of people who start on a planet instead of being booked on a ship.
+     * 
+     * @param share A value from 0 to 1
+     */
+    public void setOnPlanetShare(double share) {
+        this.onPlanetShare = share;
+    }
+    
+    public static String planetName(int index) {
+        return "P" + (index + 1);
+    }
+    
+    public static String shipName(int index) {
+        return "S" + (index + 1);
+    }
+    
+    /**
+     * Writes Gezegenler.txt, Araclar.txt and Kisiler.txt into a directory.
+     * 
+     * @param directory The directory to write to; it is created if needed
+     */
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (Writer out = open(directory.resolve("Gezegenler.txt"))) {
+            writePlanets(out);
+        }
+        try (Writer out = open(directory.resolve("Araclar.txt"))) {
+            writeShips(out);
+        }
+        try (Writer out = open(directory.resolve("Kisiler.txt"))) {
+            writePeople(out);
+        }
+    }
+    
+    private static Writer open(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+    
+    // Each file gets its own stream of random numbers, so changing the settings of one
+    // file does not change what is written to the others
+    private SplittableRandom random(int file) {
+        return new SplittableRandom(seed * 31 + file);
+    }
+    
+    public void writePlanets(Writer out) throws IOException {
+        SplittableRandom random = random(0);
+        StringBuilder line = new StringBuilder(64);
+        
+        for (int i = 0; i < planets; i++) {
+            line.setLength(0);
+            line.append(planetName(i)).append('#')
+                    .append(Math.max(1, dayLength.sample(random))).append('#')
+                    .append(startDate).append('\n');
+            out.append(line);
+        }
+    }
+    
+    public void writeShips(Writer out) throws IOException {
+        SplittableRandom random = random(1);
+        StringBuilder line = new StringBuilder(64);
+        long startDay = Time.parseDay(startDate);
+        
+        for (int i = 0; i < ships; i++) {
+            int from = random.nextInt(planets);
+            int to = planets < 2 ? from : (from + 1 + random.nextInt(planets - 1)) % planets;
+            long day = startDay + Math.max(0, departureDay.sample(random));
+            
+            line.setLength(0);
+            line.append(shipName(i)).append('#')
+                    .append(planetName(from)).append('#')
+                    .append(planetName(to)).append('#')
+                    .append(Time.formatDate(day)).append('#')
+                    .append(Math.max(1, travelDuration.sample(random))).append('\n');
+            out.append(line);
+        }
+    }
+    
+    public void writePeople(Writer out) throws IOException {
+        SplittableRandom random = random(2);
+        StringBuilder line = new StringBuilder(64);
+        double[] shipWeights = cumulativeShipWeights();
+        
+        for (long i = 0; i < people; i++) {
+            String location;
+            if (ships == 0 || random.nextDouble() < onPlanetShare) {
+                location = planetName(random.nextInt(planets));
+            } else {
+                location = shipName(pickShip(shipWeights, random.nextDouble()));
+            }
+            
+            line.setLength(0);
+            line.append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ').append(i + 1).append('#')
+                    .append(Math.max(0, age.sample(random))).append('#')
+                    .append(Math.max(1, lifespan.sample(random))).append('#')
+                    .append(location).append('\n');
+            out.append(line);
+        }
+    }
+    
+    private double[] cumulativeShipWeights() {
+        double[] cumulative = new double[ships];
+        double total = 0;
+        for (int k = 0; k < ships; k++) {
+            total += 1 / Math.pow(k + 1, occupancySkew);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < ships; k++) {
+            cumulative[k] /= total;
+        }
+        return cumulative;
+    }
+    
+    private static int pickShip(double[] cumulative, double u) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * A distribution of whole numbers to draw generated values from.
+     */
+    public interface Sampler {
+        long sample(SplittableRandom random);
+        
+        static Sampler constant(long value) {
+            return random -> value;
+        }
+        
+        static Sampler uniform(long min, long max) {
+            if (max < min) {
+                throw new IllegalArgumentException("uniform range " + min + ":" + max + " is empty");
+            }
+            return random -> random.nextLong(min, max + 1);
+        }
+        
+        static Sampler normal(double mean, double deviation) {
+            return random -> Math.round(mean + deviation * gaussian(random));
+        }
+        
+        static Sampler exponential(double mean) {
+            return random -> Math.round(-mean * Math.log(1 - random.nextDouble()));
+        }
+        
+        /**
+         * Reads a distribution written as "N" (always N), "MIN:MAX" or "uniform:MIN:MAX",
+         * "normal:MEAN:DEVIATION" or "exponential:MEAN".
+         * 
+         * @throws IllegalArgumentException if the text is not one of these forms
+         */
+        static Sampler parse(String spec) {
+            String[] parts = spec.split(":");
+            try {
+                switch (parts[0]) {
+                    case "uniform":
+                        if (parts.length == 3) return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                        break;
+                    case "normal":
+                        if (parts.length == 3) return normal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                        break;
+                    case "exponential":
+                        if (parts.length == 2) return exponential(Double.parseDouble(parts[1]));
+                        break;
+                    default:
+                        if (parts.length == 1) return constant(Long.parseLong(parts[0]));
+                        if (parts.length == 2) return uniform(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below together with the other malformed forms
+            }
+            throw new IllegalArgumentException("'" + spec + "' is not a distribution (use N, MIN:MAX, normal:MEAN:DEVIATION or exponential:MEAN)");
+        }
+        
+        private static double gaussian(SplittableRandom random) {
+            // Box-Muller transform
+            double u = 1 - random.nextDouble();
+            double v = random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+        }
+    }
+    
+    /**
+     * Writes a scenario from the command line, for example:
+     * <pre>
+     * ScenarioGenerator --out big --planets 200 --ships 5000 --people 50000000 --seed 7 --skew 1.1 --life normal:800:300
+     * </pre>
+     */
+    public static void main(String[] args) {
+        ScenarioGenerator generator = new ScenarioGenerator();
+        Path out = Path.of(".");
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(option + " needs a value");
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--out": out = Path.of(value); break;
+                    case "--seed": generator.setSeed(Long.parseLong(value)); break;
+                    case "--planets": generator.setPlanets(Integer.parseInt(value)); break;
+                    case "--ships": generator.setShips(Integer.parseInt(value)); break;
+                    case "--people": generator.setPeople(Long.parseLong(value)); break;
+                    case "--start": generator.setStartDate(value); break;
+                    case "--day-length": generator.setDayLength(Sampler.parse(value)); break;
+                    case "--departure-day": generator.setDepartureDay(Sampler.parse(value)); break;
+                    case "--travel": generator.setTravelDuration(Sampler.parse(value)); break;
+                    case "--life": generator.setLifespan(Sampler.parse(value)); break;
+                    case "--age": generator.setAge(Sampler.parse(value)); break;
+                    case "--skew": generator.setOccupancySkew(Double.parseDouble(value)); break;
+                    case "--on-planet": generator.setOnPlanetShare(Double.parseDouble(value)); break;
+                    default: throw new IllegalArgumentException("unknown option '" + option + "'");
+                }
+            }
+            if (generator.planets < 1 || generator.ships < 0 || generator.people < 0) {
+                throw new IllegalArgumentException("there must be at least one planet and no negative counts");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage() + ".");
+            System.err.println("Usage: ScenarioGenerator [--out DIR] [--seed N] [--planets N] [--ships N] [--people N] [--start dd.MM.yyyy]");
+            System.err.println("       [--day-length D] [--departure-day D] [--travel D] [--life D] [--age D] [--skew S] [--on-planet SHARE]");
+            System.err.println("where D is N, MIN:MAX, normal:MEAN:DEVIATION or exponential:MEAN");
+            return;
+        }
+        
+        try {
+            generator.write(out);
+        } catch (IOException e) {
+            System.err.println("Error writing scenario: " + e.getMessage());
+        }
+    }
+}
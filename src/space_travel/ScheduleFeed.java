@@ -0,0 +1,353 @@
+/**
+ * <p>
+ * This class lets any number of threads change the schedule of a running simulation:
+ * add ships and people, or cancel ships that have not left yet. Changes go into an
+ * unbounded multi-producer, single-consumer queue of linked nodes. Submitting never
+ * takes a lock, it moves the queue's tail with a compare-and-set, and the simulation takes the changes off the queue in batches between two ticks. Parsing and
+ * checking the records happens on the submitting thread, so the simulation only has to
+ * put them in place. A whole list of changes can be submitted as a single node.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class ScheduleFeed {
+    static final int ADD_SHIP = 1;
+    static final int ADD_PERSON = 2;
+    static final int CANCEL_SHIP = 3;
+    
+    // How long follow() waits before looking at the end of its file again
+    private static final long POLL_MILLIS = 50;
+    
+    // Takes the place of the tail once the feed is closed, so nothing can be linked after it
+    private static final Node CLOSED = new Node(null);
+    
+    private final AtomicReference<Node> tail;
+    
+    // Only the simulation thread touches these: the last node taken, and how far into
+    // the changes of the node after it the previous drain got
+    private Node head;
+    private int position;
+    // The tail the feed was closed with, or null while it is open
+    private Node last;
+    
+    /**
+     * One change to the schedule. Changes are immutable, so they can be made on any
+     * thread and submitted later.
+     */
+    public static final class Change {
+        final int kind;
+        final String name;
+        final byte[] encodedName;
+        final String departurePlanet;
+        final String destinationPlanet;
+        final String departureDate;
+        final long departureDay;
+        final int travelDuration;
+        final int age;
+        final int lifeRemaining;
+        final String location;
+        
+        private Change(int kind, String name, byte[] encodedName, String departurePlanet, String destinationPlanet,
+                String departureDate, long departureDay, int travelDuration, int age, int lifeRemaining, String location) {
+            this.kind = kind;
+            this.name = name;
+            this.encodedName = encodedName;
+            this.departurePlanet = departurePlanet;
+            this.destinationPlanet = destinationPlanet;
+            this.departureDate = departureDate;
+            this.departureDay = departureDay;
+            this.travelDuration = travelDuration;
+            this.age = age;
+            this.lifeRemaining = lifeRemaining;
+            this.location = location;
+        }
+        
+        /**
+         * A new ship, with the same fields as a line of the ships file.
+         * 
+         * @throws IllegalArgumentException if the date cannot be read
+         */
+        public static Change ship(String name, String departurePlanet, String destinationPlanet,
+                String departureDate, int travelDuration) {
+            return new Change(ADD_SHIP, name, null, departurePlanet, destinationPlanet, departureDate,
+                    Time.parseDay(departureDate), travelDuration, 0, 0, null);
+        }
+        
+        /**
+         * A new person, with the same fields as a line of the people file. The location is
+         * the ship they are booked on or the planet they stay on.
+         */
+        public static Change person(String name, int age, int lifeRemaining, String location) {
+            return new Change(ADD_PERSON, name, name.getBytes(StandardCharsets.UTF_8), null, null, null,
+                    0, 0, age, lifeRemaining, location);
+        }
+        
+        /**
+         * Cancels every ship of the given name that has not left yet.
+         */
+        public static Change cancelShip(String name) {
+            return new Change(CANCEL_SHIP, name, null, null, null, null, 0, 0, 0, 0, null);
+        }
+    }
+    
+    private static final class Node {
+        Change[] changes;
+        volatile Node next;
+        
+        Node(Change[] changes) {
+            this.changes = changes;
+        }
+    }
+    
+    public ScheduleFeed() {
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+    }
+    
+    /**
+     * Queues a change for the simulation to make between two ticks. Safe to call from
+     * any thread.
+     * 
+     * @return false if the simulation has already finished, so the change was dropped
+     */
+    public boolean submit(Change change) {
+        return enqueue(new Node(new Change[] {change}));
+    }
+    
+    /**
+     * Queues several changes at once, to be made in order. They are made between the
+     * same two ticks unless there are more than a tick takes on, and cost less per
+     * change than submitting them one by one.
+     * 
+     * @return false if the simulation has already finished, so the changes were dropped
+     */
+    public boolean submitAll(Collection<Change> changes) {
+        return changes.isEmpty() || enqueue(new Node(changes.toArray(new Change[0])));
+    }
+    
+    public boolean addShip(String name, String departurePlanet, String destinationPlanet, String departureDate, int travelDuration) {
+        return submit(Change.ship(name, departurePlanet, destinationPlanet, departureDate, travelDuration));
+    }
+    
+    public boolean addPerson(String name, int age, int lifeRemaining, String location) {
+        return submit(Change.person(name, age, lifeRemaining, location));
+    }
+    
+    public boolean cancelShip(String name) {
+        return submit(Change.cancelShip(name));
+    }
+    
+    private boolean enqueue(Node node) {
+        while (true) {
+            Node previous = tail.get();
+            if (previous == CLOSED) {
+                return false;
+            }
+            if (tail.compareAndSet(previous, node)) {
+                // The node is reachable from the one before it as soon as that one's next is
+                // set; until then the simulation simply sees the queue end one node earlier
+                previous.next = node;
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Reads changes from a text file until the simulation has finished. The lines that
+     * are already in the file are submitted before this returns; after that a background
+     * thread keeps waiting for more at its end, the way tail -f does. Each line is one
+     * change with its fields separated by '#', and everything read at once is submitted
+     * as one batch:
+     * <pre>
+     * ship#NAME#DEPARTURE PLANET#DESTINATION PLANET#DATE#TRAVEL HOURS
+     * person#NAME#AGE#REMAINING LIFE#SHIP OR PLANET
+     * cancel#SHIP NAME
+     * </pre>
+     * 
+     * @param file The file to follow
+     * @throws IOException if the file cannot be opened or read
+     */
+    public void follow(Path file) throws IOException {
+        Follower follower = new Follower(file);
+        try {
+            while (follower.readMore()) {
+                // Everything that is already there
+            }
+        } catch (IOException e) {
+            follower.close();
+            throw e;
+        }
+        
+        Thread thread = new Thread(() -> {
+            try (follower) {
+                while (!isClosed()) {
+                    if (!follower.readMore()) {
+                        Thread.sleep(POLL_MILLIS);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading schedule changes from '" + file + "': " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "schedule-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private class Follower implements Closeable {
+        private final Path file;
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        // A line the writer has not finished yet is kept until the rest of it is there
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private int lineNumber;
+        
+        Follower(Path file) throws IOException {
+            this.file = file;
+            this.in = Files.newInputStream(file);
+        }
+        
+        /**
+         * Reads and submits whatever can be read at once.
+         * 
+         * @return false at the current end of the file
+         */
+        boolean readMore() throws IOException {
+            int read = in.read(buffer);
+            if (read < 0) {
+                return false;
+            }
+            List<Change> batch = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') continue;
+                
+                line.write(buffer, start, i - start);
+                start = i + 1;
+                lineNumber++;
+                try {
+                    Change change = parse(line.toString(StandardCharsets.UTF_8).strip());
+                    if (change != null) {
+                        batch.add(change);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Warning: Skipping line " + lineNumber + " of '" + file + "': " + e.getMessage());
+                }
+                line.reset();
+            }
+            line.write(buffer, start, read - start);
+            submitAll(batch);
+            return true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    /**
+     * Reads one line of a change file, or returns null for a blank line.
+     * 
+     * @throws IllegalArgumentException if the line is not a valid change
+     */
+    static Change parse(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        String[] fields = line.split("#", -1);
+        switch (fields[0]) {
+            case "ship":
+                requireFields(fields, 6);
+                return Change.ship(fields[1], fields[2], fields[3], fields[4], parseInt(fields[5]));
+            case "person":
+                requireFields(fields, 5);
+                return Change.person(fields[1], parseInt(fields[2]), parseInt(fields[3]), fields[4]);
+            case "cancel":
+                requireFields(fields, 2);
+                return Change.cancelShip(fields[1]);
+            default:
+                throw new IllegalArgumentException("unknown change '" + fields[0] + "'");
+        }
+    }
+    
+    private static void requireFields(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("expected " + count + " fields but found " + fields.length);
+        }
+    }
+    
+    private static int parseInt(String field) {
+        try {
+            return Integer.parseInt(field.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + field + "' is not a number");
+        }
+    }
+    
+    /**
+     * Returns true once the simulation has finished and takes no more changes.
+     */
+    public boolean isClosed() {
+        return tail.get() == CLOSED;
+    }
+    
+    /**
+     * Stops taking changes. Every change submitted before this is still on the queue, and
+     * the next drains take them off even if their threads have not finished linking them
+     * in yet. Only the simulation thread may call this.
+     */
+    void close() {
+        if (last == null) {
+            last = tail.getAndSet(CLOSED);
+        }
+    }
+    
+    /**
+     * Takes up to the given number of changes off the queue, oldest first. Only the
+     * simulation thread may call this.
+     * 
+     * @return How many changes were taken
+     */
+    int drain(int limit, Consumer<Change> action) {
+        int taken = 0;
+        while (taken < limit) {
+            Node node = head.next;
+            if (node == null) {
+                if (last == null || head == last) {
+                    break;
+                }
+                // A change that was submitted before the feed closed is still being linked
+                Thread.onSpinWait();
+                continue;
+            }
+            Change[] changes = node.changes;
+            while (position < changes.length && taken < limit) {
+                action.accept(changes[position++]);
+                taken++;
+            }
+            if (position == changes.length) {
+                // The node becomes the new empty head, which need not keep its changes
+                node.changes = null;
+                head = node;
+                position = 0;
+            }
+        }
+        return taken;
+    }
+}
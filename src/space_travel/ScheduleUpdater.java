@@ -0,0 +1,145 @@
+/**
+ * <p>
+ * This class makes the changes that come in through a ScheduleFeed while a simulation
+ * runs: it adds ships and people and cancels ships that have not left yet. Changes
+ * that do not fit the scenario, such as a ship from a planet that does not exist, are
+ * reported and skipped like bad lines in the input files. The simulation takes the
+ * changes between two ticks, on its own thread.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.List;
+
+public class ScheduleUpdater {
+    // The most changes made between two ticks; the rest wait for the next ones
+    static final int MAX_CHANGES_PER_TICK = 1 << 16;
+    
+    private final ScheduleFeed feed;
+    private final Simulation simulation;
+    private final List<Spaceship> ships;
+    private final PersonStore people;
+    private final LocationIndex locations;
+    
+    ScheduleUpdater(ScheduleFeed feed, Simulation simulation, List<Spaceship> ships, PersonStore people,
+            LocationIndex locations) {
+        this.feed = feed;
+        this.simulation = simulation;
+        this.ships = ships;
+        this.people = people;
+        this.locations = locations;
+    }
+    
+    /**
+     * Makes the changes that have been submitted since the last tick.
+     * 
+     * @return How many changes were taken from the feed
+     */
+    int ingest() {
+        return feed.drain(MAX_CHANGES_PER_TICK, this::apply);
+    }
+    
+    /**
+     * Closes the feed once the run is over and reports the changes that came too late.
+     */
+    void close() {
+        feed.close();
+        int ignored = feed.drain(Integer.MAX_VALUE, change -> { });
+        if (ignored > 0) {
+            System.err.println("Warning: " + ignored + " schedule changes came in after the simulation completed and were ignored.");
+        }
+    }
+    
+    private void apply(ScheduleFeed.Change change) {
+        switch (change.kind) {
+            case ScheduleFeed.ADD_SHIP:
+                addShip(change);
+                break;
+            case ScheduleFeed.ADD_PERSON:
+                addPerson(change);
+                break;
+            case ScheduleFeed.CANCEL_SHIP:
+                cancelShip(change.name);
+                break;
+        }
+    }
+    
+    private void addShip(ScheduleFeed.Change change) {
+        Planet departure = locations.getPlanet(change.departurePlanet);
+        Planet destination = locations.getPlanet(change.destinationPlanet);
+        if (departure == null || destination == null) {
+            String missing = departure == null ? change.departurePlanet : change.destinationPlanet;
+            System.err.println("Warning: Planet '" + missing + "' not found for new ship '" + change.name + "'. Ship ignored.");
+            return;
+        }
+        if (departure.getTime().hoursUntil(change.departureDay) < 0) {
+            System.err.println("Warning: New ship '" + change.name + "' would leave on " + change.departureDate
+                    + ", which has already passed on " + departure.getName() + ". Ship ignored.");
+            return;
+        }
+        
+        Spaceship ship = new Spaceship(change.name, change.departurePlanet, change.destinationPlanet,
+                change.departureDate, change.departureDay, change.travelDuration);
+        ship.resolve(ships.size(), people.getSymbols().intern(ship.getName()), departure, destination);
+        ships.add(ship);
+        locations.addShip(ship);
+        simulation.shipAdded(ship);
+    }
+    
+    /**
+     * Places a new person like FileReader.placePeople() does: on the departure planet
+     * of the ship they are booked on, or on the planet they are named to be on.
+     */
+    private void addPerson(ScheduleFeed.Change change) {
+        int location = people.getSymbols().find(change.location);
+        Planet planet = null;
+        int shipIndex = locations.shipIndex(location);
+        if (shipIndex >= 0) {
+            Spaceship ship = ships.get(shipIndex);
+            if (ship.isInTransit() || ship.isFinished()) {
+                System.err.println("Warning: Ship '" + change.location + "' has already left. New person '" + change.name + "' ignored.");
+                return;
+            }
+            planet = ship.getDeparture();
+        } else if (locations.planetIndex(location) >= 0) {
+            planet = locations.locationPlanet(location);
+        }
+        if (planet == null) {
+            System.err.println("Warning: Initial location '" + change.location + "' not found for new person '" + change.name + "'. Person ignored.");
+            return;
+        }
+        
+        simulation.settle(people.add(change.encodedName, 0, change.encodedName.length, change.age, change.lifeRemaining,
+                change.location), planet);
+    }
+    
+    /**
+     * Takes every ship of the given name that has not left yet out of service, which
+     * shows as destroyed. The people who were waiting for it stay on its planet.
+     */
+    private void cancelShip(String name) {
+        int symbol = people.getSymbols().find(name);
+        boolean cancelled = false;
+        for (int index : locations.shipIndexes(symbol)) {
+            Spaceship ship = ships.get(index);
+            if (ship.isInTransit() || ship.isFinished()) continue;
+            
+            ship.markAsDestroyed();
+            cancelled = true;
+            Planet planet = ship.getDeparture();
+            Roster stranded = planet == null ? null : planet.takeBoarding(symbol);
+            if (stranded != null) {
+                int[] ids = stranded.toIdArray();
+                stranded.clear();
+                for (int id : ids) {
+                    people.setLocationId(id, planet.getSymbol());
+                    planet.addPerson(people, id);
+                }
+            }
+        }
+        if (!cancelled) {
+            System.err.println("Warning: No ship named '" + name + "' is waiting to leave. Cancellation ignored.");
+        }
+    }
+}
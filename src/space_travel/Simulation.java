@@ -9,52 +9,673 @@
 
 package space_travel;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class Simulation {
+    // The state table's name for each of the EventJournal.SHIP_ states
+    static final String[] SHIP_STATUSES = {"Waiting", "In Transit", "Arrived", "Destroyed"};
+    
     private final List<Planet> planets;
     private final List<Spaceship> ships;
-    private final List<Person> allPeople;
+    private final PersonStore people;
     private int hourCounter;
     private boolean simulationComplete;
-    private Map<String, Planet> planetMap;
+    private LocationIndex locations;
+    private String[] projectedArrivalDates;
+    private boolean eventDriven;
+    private boolean parallel;
+    private boolean headless;
+    private int snapshotInterval;
+    private int frameRate = 30;
+    private TerminalRenderer renderer;
+    private CheckpointWriter checkpointWriter;
+    private int checkpointInterval;
+    private final LifeClock lifeClock;
+    private TimingWheel deathWheel;
+    private TickMetrics metrics;
+    private JournalRecorder journal;
+    private TimeSeriesExporter timeSeries;
+    private SnapshotPublisher publisher;
+    private ScheduleUpdater scheduleUpdater;
+    // Set when this simulation is one partition of a run spread over several processes
+    private PartitionWorker partition;
+    
+    // The hour the tick being simulated ends on
+    private int tickHour;
+    
+    // Ships that have neither arrived nor been destroyed, counted down by the ships themselves
+    private final AtomicInteger activeShips = new AtomicInteger();
     
-    public Simulation(List<Planet> planets, List<Spaceship> ships, List<Person> allPeople) {
+    // The ship each person set off on as an original passenger, so a death can be counted
+    // against it. Only someone who boards twice has further ships, in a table by person id
+    // that is made the first time that happens. Ships leaving in parallel never share a
+    // person, so they write to different slots
+    private Spaceship[] originalShip;
+    private volatile Spaceship[][] moreOriginalShips;
+    
+    public Simulation(List<Planet> planets, List<Spaceship> ships, PersonStore people) {
         this.planets = planets;
         this.ships = ships;
-        this.allPeople = new ArrayList<>(allPeople);
+        this.people = people;
         this.hourCounter = 0;
         this.simulationComplete = false;
-        initPlanetMap();
+        this.projectedArrivalDates = new String[ships.size()];
+        this.lifeClock = new LifeClock();
+        this.deathWheel = new TimingWheel(people, 0);
+        this.originalShip = new Spaceship[people.size()];
+        resolveNames();
+        initLifeClock();
+        initShipTracking();
     }
     
-    private void initPlanetMap() {
-        planetMap = new HashMap<>();
+    /**
+     * Looks every name up once: planets and ships get their symbol ids and ships get
+     * their planets, so the simulation itself never has to find anything by name.
+     */
+    private void resolveNames() {
+        SymbolTable symbols = people.getSymbols();
         for (Planet planet : planets) {
-            planetMap.put(planet.getName(), planet);
+            planet.setSymbol(symbols.intern(planet.getName()));
+        }
+        locations = new LocationIndex(planets, ships, symbols);
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            ship.resolve(i, symbols.intern(ship.getName()), locations.getPlanet(ship.getDeparturePlanet()),
+                    locations.getPlanet(ship.getDestinationPlanet()));
+            locations.addShip(ship);
+        }
+    }
+    
+    private void initLifeClock() {
+        people.setClock(lifeClock);
+        for (int id = 0; id < people.size(); id++) {
+            if (people.getRoster(id) != null) {
+                deathWheel.schedule(id);
+            }
+        }
+    }
+    
+    private void initShipTracking() {
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            ship.setOnFinished(() -> shipFinished(ship));
+            if (!ship.isFinished()) {
+                activeShips.incrementAndGet();
+            }
+            projectedArrivalDates[i] = projectArrivalDate(ship, ship.getDeparture());
+        }
+    }
+    
+    private void shipFinished(Spaceship ship) {
+        activeShips.decrementAndGet();
+        if (metrics != null && ship.isDestroyed()) {
+            metrics.destroyed(ship);
+        }
+        if (journal != null && ship.isDestroyed()) {
+            journal.destroyed(ship, tickHour);
+        }
+    }
+    
+    /**
+     * Selects the event-driven engine, which jumps straight from one departure, arrival
+     * or passenger death to the next instead of simulating every idle hour.
+     * 
+     * @param eventDriven true to use the event-driven engine, false for the hourly loop
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+    
+    /**
+     * Spreads the planet and ship updates of each hour over the common fork-join pool.
+     * Departures and arrivals move people between a ship and a planet, so they are
+     * collected per worker and then applied planet by planet in ship order, which gives
+     * exactly the same result as the serial loop.
+     * 
+     * @param parallel true to update planets and ships on several cores
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel && !shipNamedAfterPlanet();
+    }
+    
+    // A ship named after a planet would pick up people arriving there in the same hour,
+    // which only the serial order gets right
+    private boolean shipNamedAfterPlanet() {
+        for (Spaceship ship : ships) {
+            if (locations.getPlanet(ship.getName()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Runs without drawing the state every hour. Only the final table and a summary
+     * are printed, plus a snapshot every few hours if an interval is set.
+     * 
+     * @param headless true to skip the live view
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+    
+    /**
+     * Sets how often a headless run prints the state table.
+     * 
+     * @param hours Print a snapshot every this many hours, or 0 for none
+     */
+    public void setSnapshotInterval(int hours) {
+        this.snapshotInterval = hours;
+    }
+    
+    /**
+     * Saves the state to a file every few hours, so a run that dies can be resumed with
+     * restore(). The file is written on a background thread and always holds the latest
+     * complete checkpoint.
+     * 
+     * @param file The checkpoint file
+     * @param hours Save a checkpoint every this many hours
+     */
+    public void setCheckpoint(Path file, int hours) {
+        this.checkpointWriter = new CheckpointWriter(file);
+        this.checkpointInterval = hours;
+    }
+    
+    /**
+     * Puts the simulation back into the state saved in a checkpoint, so start() carries on
+     * from there and ends exactly like the run that wrote the checkpoint would have. The
+     * simulation must have been created from the same scenario and not have run yet.
+     * 
+     * @param file The checkpoint file
+     * @throws IOException if the file cannot be read or belongs to a different scenario
+     */
+    public void restore(Path file) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(file);
+        checkpoint.applyTo(lifeClock, people, planets, ships);
+        hourCounter = checkpoint.getHour();
+        
+        Arrays.fill(originalShip, null);
+        moreOriginalShips = null;
+        activeShips.set(0);
+        for (Spaceship ship : ships) {
+            trackOriginalPassengers(ship);
+            if (!ship.isFinished()) {
+                activeShips.incrementAndGet();
+            }
         }
+        
+        // Everyone still somewhere is still alive, so the wheel only needs them
+        deathWheel = new TimingWheel(people, lifeClock.now());
+        for (int id = 0; id < people.size(); id++) {
+            if (people.getRoster(id) != null) {
+                deathWheel.schedule(id);
+            }
+        }
+        checkSimulationComplete();
+    }
+    
+    /**
+     * Writes a journal of every boarding, departure, arrival, death and destruction
+     * during start(), starting with where everyone is when the run begins. JournalReader
+     * reads it back. With the parallel tick, the records of one hour may come in another
+     * order than in the serial loop, but they replay to the same state.
+     * 
+     * @param file The journal file
+     */
+    public void setJournal(Path file) {
+        this.journal = new JournalRecorder(file, planets, ships, people, locations);
+    }
+    
+    /**
+     * Exports the state of every planet and ship as a time series during start(), one
+     * row every few hours plus one for the final hour. The event-driven engine still
+     * gets a row for every hour it skips over.
+     * 
+     * @param file The file to write; a name ending in .csv gets CSV, anything else the
+     *        columnar format TimeSeriesReader reads
+     * @param hours Write a row every this many hours
+     * @param compress true to compress the file
+     */
+    public void setTimeSeries(Path file, int hours, boolean compress) {
+        this.timeSeries = new TimeSeriesExporter(file, hours, compress);
+    }
+    
+    /**
+     * Publishes a snapshot of the state every few hours during start(), starting with
+     * the state the run begins in and ending with the final one. Any thread can read
+     * the latest one with getPublishedSnapshot() without holding up the simulation.
+     * 
+     * @param hours Publish every this many hours, or 0 for never
+     */
+    public void setPublishInterval(int hours) {
+        this.publisher = hours > 0 ? new SnapshotPublisher(hours) : null;
+    }
+    
+    /**
+     * Returns the latest snapshot published during start(), or null before the first.
+     */
+    public StateSnapshot getPublishedSnapshot() {
+        return publisher == null ? null : publisher.getLatest();
+    }
+    
+    /**
+     * Lets other threads change the schedule while start() runs, through the given feed.
+     * Its changes are made between two ticks, at most ScheduleUpdater.MAX_CHANGES_PER_TICK
+     * at a time.
+     * The journal, time series and checkpoints describe a fixed scenario, so they are
+     * turned off when there is a feed.
+     * 
+     * @param feed The feed to take changes from, or null for a fixed schedule
+     */
+    public void setScheduleFeed(ScheduleFeed feed) {
+        this.scheduleUpdater = feed == null ? null : new ScheduleUpdater(feed, this, ships, people, locations);
+    }
+    
+    /**
+     * Makes this simulation one partition of a larger run: people arriving on planets
+     * the partition does not own are handed to it, and the run ends when the partition
+     * says every partition is done. Only the hourly loop takes part in this.
+     */
+    void setPartition(PartitionWorker partition) {
+        this.partition = partition;
+    }
+    
+    /**
+     * Times every phase of every tick and counts what happens into the given metrics.
+     * Without metrics, which is the default, none of this is done.
+     * 
+     * @param metrics Where to record, or null to stop recording
+     */
+    public void setMetrics(TickMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    public TickMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Sets how many frames per second the live view draws at most.
+     * 
+     * @param framesPerSecond The frame rate cap
+     */
+    public void setFrameRate(int framesPerSecond) {
+        this.frameRate = framesPerSecond;
     }
     
     public void start() {
+        if (scheduleUpdater != null && (journal != null || timeSeries != null || checkpointWriter != null)) {
+            System.err.println("Warning: The schedule can change while running, so there is no journal, time series or checkpoint.");
+            journal = null;
+            timeSeries = null;
+            checkpointWriter = null;
+        }
+        if (!headless) {
+            renderer = new TerminalRenderer(frameRate);
+            renderer.start();
+        }
+        if (checkpointWriter != null) {
+            checkpointWriter.start();
+        }
+        if (journal != null && !journal.start(hourCounter)) {
+            journal = null;
+        }
+        if (timeSeries != null) {
+            startTimeSeries();
+        }
+        if (publisher != null) {
+            publish();
+        }
+        
+        run();
+        
+        if (scheduleUpdater != null) {
+            scheduleUpdater.close();
+        }
+        if (timeSeries != null) {
+            timeSeries.finish(hourCounter);
+        }
+        if (journal != null) {
+            journal.stop();
+        }
+        if (checkpointWriter != null) {
+            checkpointWriter.stop();
+        }
+        if (!headless) {
+            renderer.stop();
+            renderer = null;
+            clearScreen();
+        }
+        StateSnapshot last = captureSnapshot();
+        displayState(last);
+        System.out.println("\nSimulation complete after " + hourCounter + " hours.");
+        if (headless) {
+            printSummary(last);
+        }
+    }
+    
+    /**
+     * Runs the simulation until every ship has arrived or been destroyed, without the
+     * live view or the final table. A headless run still prints its periodic snapshots.
+     */
+    public void run() {
+        if (scheduleUpdater != null) {
+            ingest();
+        }
+        if (eventDriven) {
+            runEventDriven();
+        } else {
+            runHourly();
+        }
+    }
+    
+    private void runHourly() {
         while (!simulationComplete) {
+            tickHour = hourCounter + 1;
+            long time = beginTick(tickHour);
             updateAllPeopleLife();
+            time = lap(TickMetrics.Phase.PEOPLE, time);
             
             updatePlanetStatus();
+            time = lap(TickMetrics.Phase.PLANETS, time);
             updateShipStatus();  
-            checkSimulationComplete();
+            time = lap(TickMetrics.Phase.SHIPS, time);
+            if (partition != null) {
+                // Waits for the other partitions and takes in the people they sent here
+                simulationComplete = partition.endTick(activeShips.get());
+            } else {
+                checkSimulationComplete();
+            }
+            time = lap(TickMetrics.Phase.COMPLETION, time);
             
-            clearScreen();
-            displayState();
+            renderFrame();
+            time = lap(TickMetrics.Phase.RENDER, time);
             
             hourCounter++;
+            printSnapshotIfDue();
+            exportIfDue();
+            checkpointIfDue();
+            publishIfDue();
+            time = lap(TickMetrics.Phase.OUTPUT, time);
+            
+            if (scheduleUpdater != null) {
+                ingest();
+                lap(TickMetrics.Phase.INGEST, time);
+            }
+            endTick();
+        }
+    }
+    
+    private void runEventDriven() {
+        PriorityQueue<SimulationEvent> events = new PriorityQueue<>();
+        
+        // Start from the current state, which is hour 0 unless resumed from a checkpoint
+        int scheduled = 0;
+        while (scheduled < ships.size()) {
+            scheduleShip(scheduled++, events);
+        }
+        
+        while (!simulationComplete) {
+            if (events.isEmpty() && deathWheel.isEmpty() && hourCounter > 0) {
+                System.err.println("Warning: No events left after hour " + hourCounter + " but some ships can never finish. Stopping.");
+                return;
+            }
+            
+            long hour = Long.MAX_VALUE;
+            if (!events.isEmpty()) {
+                hour = events.peek().getHour();
+            }
+            if (!deathWheel.isEmpty()) {
+                hour = Math.min(hour, deathWheel.nextDeadline());
+            }
+            // Like the hourly loop, always simulate at least one hour
+            if (hourCounter == 0) {
+                hour = 1;
+            }
+            // Stop on every snapshot and checkpoint hour so they show the state at that exact hour
+            if (headless && snapshotInterval > 0) {
+                hour = Math.min(hour, (hourCounter / snapshotInterval + 1) * snapshotInterval);
+            }
+            if (checkpointWriter != null) {
+                hour = Math.min(hour, (hourCounter / checkpointInterval + 1) * checkpointInterval);
+            }
+            if (timeSeries != null) {
+                timeSeries.skip(hourCounter, (int) hour);
+            }
+            int hours = (int) hour - hourCounter;
+            tickHour = (int) hour;
+            long time = beginTick(tickHour);
+            skipLives(hours);
+            time = lap(TickMetrics.Phase.PEOPLE, time);
+            skipPlanets(hours);
+            time = lap(TickMetrics.Phase.PLANETS, time);
+            skipShips(hours);
+            
+            while (!events.isEmpty() && events.peek().getHour() == hour) {
+                handleEvent(events.poll(), events);
+            }
+            time = lap(TickMetrics.Phase.SHIPS, time);
+            checkSimulationComplete();
+            time = lap(TickMetrics.Phase.COMPLETION, time);
+            
+            renderFrame();
+            time = lap(TickMetrics.Phase.RENDER, time);
+            
+            hourCounter = (int) hour;
+            printSnapshotIfDue();
+            exportIfDue();
+            checkpointIfDue();
+            publishIfDue();
+            time = lap(TickMetrics.Phase.OUTPUT, time);
+            
+            if (scheduleUpdater != null) {
+                ingest();
+                while (scheduled < ships.size()) {
+                    scheduleShip(scheduled++, events);
+                }
+                lap(TickMetrics.Phase.INGEST, time);
+            }
+            endTick();
+        }
+    }
+    
+    /**
+     * Adds the next departure or arrival of a ship to the event queue.
+     */
+    private void scheduleShip(int index, PriorityQueue<SimulationEvent> events) {
+        Spaceship ship = ships.get(index);
+        if (ship.isDestroyed() || ship.hasArrived()) return;
+        
+        if (ship.isInTransit()) {
+            if (ship.getDestination() != null) {
+                int arrivalHour = hourCounter + Math.max(ship.getRemainingTravelTime(), 0);
+                events.add(new SimulationEvent(arrivalHour, index, SimulationEvent.ARRIVAL));
+            }
+            return;
+        }
+        
+        Planet departurePlanet = ship.getDeparture();
+        if (departurePlanet == null) return;
+        
+        long hours = departurePlanet.getTime().hoursUntil(ship.getDepartureDay());
+        if (hours > 0) {
+            events.add(new SimulationEvent((int) (hourCounter + hours), index, SimulationEvent.DEPARTURE));
+        }
+    }
+    
+    private void skipLives(int hours) {
+        lifeClock.advance(hours);
+        deathWheel.advanceTo(lifeClock.now(), this::personDied);
+        if (journal != null) {
+            journal.deathsDone(hourCounter);
+        }
+    }
+    
+    private void skipPlanets(int hours) {
+        if (parallel) {
+            planets.parallelStream().forEach(planet -> planet.passHours(hours));
+            return;
+        }
+        for (Planet planet : planets) {
+            planet.passHours(hours);
+        }
+    }
+    
+    private void skipShips(int hours) {
+        if (parallel) {
+            ships.parallelStream().forEach(ship -> ship.passHours(hours));
+            return;
+        }
+        for (Spaceship ship : ships) {
+            ship.passHours(hours);
+        }
+    }
+    
+    // The metrics hooks below do nothing unless metrics are set
+    
+    private long beginTick(int hour) {
+        return metrics == null ? 0 : metrics.beginTick(hour);
+    }
+    
+    private long lap(TickMetrics.Phase phase, long since) {
+        return metrics == null ? 0 : metrics.lap(phase, since);
+    }
+    
+    private void endTick() {
+        if (metrics != null) {
+            metrics.endTick();
+        }
+    }
+    
+    private void handleEvent(SimulationEvent event, PriorityQueue<SimulationEvent> events) {
+        Spaceship ship = ships.get(event.getShipIndex());
+        
+        switch (event.getPhase()) {
+            case SimulationEvent.DEPARTURE:
+                // The ship may have been cancelled since its departure was scheduled
+                if (ship.isDestroyed()) break;
+                departShip(ship, ship.getDeparture());
+                ship.passHour();
+                
+                if (ship.getDestination() != null) {
+                    int arrivalHour = event.getHour() + Math.max(ship.getRemainingTravelTime(), 0);
+                    events.add(new SimulationEvent(arrivalHour, event.getShipIndex(), SimulationEvent.ARRIVAL));
+                }
+                break;
+            case SimulationEvent.ARRIVAL:
+                processShipArrival(ship);
+                break;
+        }
+    }
+    
+    // Only start() makes a renderer; run() on its own draws nothing
+    private void renderFrame() {
+        if (renderer != null && renderer.wantsSnapshot()) {
+            renderer.publish(captureSnapshot());
+        }
+    }
+    
+    private void printSnapshotIfDue() {
+        if (headless && snapshotInterval > 0 && hourCounter % snapshotInterval == 0 && !simulationComplete) {
+            displayState();
+            System.out.println();
+        }
+    }
+    
+    private void exportIfDue() {
+        if (timeSeries != null) {
+            timeSeries.record(hourCounter);
+        }
+    }
+    
+    private void checkpointIfDue() {
+        if (checkpointWriter != null && hourCounter % checkpointInterval == 0 && !simulationComplete) {
+            checkpointWriter.publish(Checkpoint.capture(hourCounter, people, planets, ships));
+        }
+    }
+    
+    private void publishIfDue() {
+        if (publisher != null && publisher.isDue(hourCounter, simulationComplete)) {
+            publish();
+        }
+    }
+    
+    private void publish() {
+        publisher.publish(captureSnapshot(publisher.getLatest()));
+    }
+    
+    /**
+     * Makes the schedule changes that have been submitted since the last tick.
+     */
+    private void ingest() {
+        // A new ship brings a run that has just completed back to life
+        if (scheduleUpdater.ingest() > 0 && simulationComplete) {
+            checkSimulationComplete();
+        }
+    }
+    
+    /**
+     * Starts tracking a ship the schedule feed has just added to the ship list.
+     */
+    void shipAdded(Spaceship ship) {
+        int index = ship.getIndex();
+        if (index == projectedArrivalDates.length) {
+            projectedArrivalDates = Arrays.copyOf(projectedArrivalDates, Math.max(16, 2 * index));
+        }
+        projectedArrivalDates[index] = projectArrivalDate(ship, ship.getDeparture());
+        ship.setOnFinished(() -> shipFinished(ship));
+        activeShips.incrementAndGet();
+        
+        if (parallel && locations.getPlanet(ship.getName()) != null) {
+            parallel = false;
+        }
+    }
+    
+    /**
+     * Puts someone who arrived from another partition on one of this partition's planets.
+     * 
+     * @return Their id here
+     */
+    int admit(byte[] name, int age, int lifeRemaining, int planetIndex) {
+        Planet planet = planets.get(planetIndex);
+        int id = people.add(name, 0, name.length, age, lifeRemaining, planet.getName());
+        settle(id, planet);
+        return id;
+    }
+    
+    /**
+     * Puts a newly added person on a planet and lets them age from now on.
+     */
+    void settle(int id, Planet planet) {
+        if (id >= originalShip.length) {
+            originalShip = Arrays.copyOf(originalShip, Math.max(16, 2 * id));
+            if (moreOriginalShips != null) {
+                moreOriginalShips = Arrays.copyOf(moreOriginalShips, originalShip.length);
+            }
+        }
+        planet.addPerson(people, id);
+        deathWheel.schedule(id);
+    }
+    
+    private void startTimeSeries() {
+        try {
+            timeSeries.start(planets, ships, hourCounter);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not open time series: " + e.getMessage() + ". Running without it.");
+            timeSeries = null;
         }
-
-        clearScreen();
-        displayState();
-        System.out.println("\nSimulation complete after " + hourCounter + " hours.");
     }
     
     private void clearScreen() {
@@ -72,18 +693,120 @@ public class Simulation {
     }
     
     private void updateAllPeopleLife() {
-        for (Person person : allPeople) {
-            person.passHour();
+        lifeClock.advance(1);
+        deathWheel.advanceTo(lifeClock.now(), this::personDied);
+        if (journal != null) {
+            journal.deathsDone(hourCounter);
+        }
+    }
+    
+    private void personDied(int id) {
+        if (metrics != null) {
+            metrics.died();
+        }
+        if (journal != null) {
+            journal.died(id, (int) deathWheel.getNow(), hourCounter);
         }
+        expire(id);
+    }
+    
+    private void expire(int id) {
+        Roster roster = people.getRoster(id);
+        if (roster != null) {
+            roster.removeId(id);
+        }
+        if (partition != null) {
+            partition.died(id);
+        }
+        
+        if (originalShip[id] != null) {
+            originalShip[id].originalPassengerDied();
+            Spaceship[][] table = moreOriginalShips;
+            if (table != null && table[id] != null) {
+                for (Spaceship ship : table[id]) {
+                    ship.originalPassengerDied();
+                }
+                table[id] = null;
+            }
+        }
+    }
+    
+    /**
+     * Returns the ships of this simulation that count the person as an original
+     * passenger while they live.
+     */
+    Spaceship[] originalShips(int id) {
+        if (originalShip[id] == null) {
+            return new Spaceship[0];
+        }
+        Spaceship[][] table = moreOriginalShips;
+        Spaceship[] more = table == null || table[id] == null ? new Spaceship[0] : table[id];
+        Spaceship[] all = new Spaceship[1 + more.length];
+        all[0] = originalShip[id];
+        System.arraycopy(more, 0, all, 1, more.length);
+        return all;
+    }
+    
+    /**
+     * Forgets people who were handed to another partition: they leave the death wheel
+     * and no ship here waits for their death any more, and their ids are free for the
+     * people this partition takes in.
+     */
+    private void release(int[] ids) {
+        deathWheel.cancel(ids);
+        Spaceship[][] table = moreOriginalShips;
+        for (int id : ids) {
+            originalShip[id] = null;
+            if (table != null) {
+                table[id] = null;
+            }
+            people.remove(id);
+        }
+    }
+    
+    /**
+     * Remembers which ship the living original passengers of a ship set off on.
+     */
+    private void trackOriginalPassengers(Spaceship ship) {
+        List<Person> originals = ship.getOriginalPassengers();
+        if (originals == null) return;
+        
+        for (Person person : originals) {
+            if (!person.isAlive()) continue;
+            if (originalShip[person.id] != null) {
+                Spaceship[][] table = moreOriginalShipTable();
+                Spaceship[] more = table[person.id];
+                more = more == null ? new Spaceship[1] : Arrays.copyOf(more, more.length + 1);
+                more[more.length - 1] = ship;
+                table[person.id] = more;
+            } else {
+                originalShip[person.id] = ship;
+            }
+        }
+    }
+    
+    private synchronized Spaceship[][] moreOriginalShipTable() {
+        if (moreOriginalShips == null) {
+            moreOriginalShips = new Spaceship[originalShip.length][];
+        }
+        return moreOriginalShips;
     }
     
     private void updatePlanetStatus() {
+        if (parallel) {
+            planets.parallelStream().forEach(Planet::passHour);
+            return;
+        }
         for (Planet planet : planets) {
             planet.passHour();
         }
     }
     
     private void updateShipStatus() {
+        if (parallel) {
+            updateShipStatusParallel();
+            return;
+        }
         for (Spaceship ship : ships) {
             if (!ship.isDestroyed()) { 
                 processShipDeparture(ship);
@@ -93,30 +816,131 @@ public class Simulation {
         }
     }
     
-    private void processShipDeparture(Spaceship ship) {
-        if (ship.isInTransit() || ship.isDestroyed()) return;
+    /**
+     * Does the same as the serial ship loop in three steps. Each ship only ever touches
+     * its own departure and destination planet, and two ships only affect each other
+     * through a planet they share, so the moves on one planet are applied in ship order
+     * while different planets are handled at the same time.
+     */
+    private void updateShipStatusParallel() {
+        int workers = Math.min(ships.size(), 4 * ForkJoinPool.getCommonPoolParallelism());
         
-        Planet departurePlanet = planetMap.get(ship.getDeparturePlanet());
-        if (departurePlanet == null) return;
+        // Step 1: every worker lists the ships in its range that leave this hour
+        List<List<Spaceship>> departing = IntStream.range(0, workers).parallel()
+                .mapToObj(w -> {
+                    List<Spaceship> found = new ArrayList<>();
+                    for (int i = rangeStart(w, workers); i < rangeStart(w + 1, workers); i++) {
+                        Spaceship ship = ships.get(i);
+                        if (!ship.isDestroyed() && dueDeparturePlanet(ship) != null) {
+                            found.add(ship);
+                        }
+                    }
+                    return found;
+                })
+                .toList();
+        applyByPlanet(departing, Spaceship::getDeparture, this::departShip);
         
-        if (departurePlanet.getTime().dateMatches(ship.getDepartureDate())) {
-            List<Person> passengers = departurePlanet.removePeople(ship.getName());
-            for (Person person : passengers) {
-                ship.addPassenger(person);
+        // Step 2: move the ships along and list the ones that have reached their destination.
+        // Leaving never destroys a ship, so this skips the same ships the serial loop does
+        List<List<Spaceship>> arriving = IntStream.range(0, workers).parallel()
+                .mapToObj(w -> {
+                    List<Spaceship> found = new ArrayList<>();
+                    for (int i = rangeStart(w, workers); i < rangeStart(w + 1, workers); i++) {
+                        Spaceship ship = ships.get(i);
+                        if (!ship.isDestroyed()) {
+                            ship.passHour();
+                            if (ship.isTravelComplete() && ship.getDestination() != null) {
+                                found.add(ship);
+                            }
+                        }
+                    }
+                    return found;
+                })
+                .toList();
+        
+        // Step 3: let the arrived ships unload
+        applyByPlanet(arriving, Spaceship::getDestination, (ship, planet) -> processShipArrival(ship));
+    }
+    
+    private int rangeStart(int worker, int workers) {
+        return (int) ((long) ships.size() * worker / workers);
+    }
+    
+    /**
+     * Merges the per-worker lists in ship order, groups them by planet and applies the
+     * action to each group on its own task.
+     */
+    private void applyByPlanet(List<List<Spaceship>> perWorker, Function<Spaceship, Planet> planetOf,
+            BiConsumer<Spaceship, Planet> action) {
+        Map<Planet, List<Spaceship>> byPlanet = new LinkedHashMap<>();
+        for (List<Spaceship> found : perWorker) {
+            for (Spaceship ship : found) {
+                byPlanet.computeIfAbsent(planetOf.apply(ship), planet -> new ArrayList<>()).add(ship);
             }
-            ship.setOriginalPassengers(passengers);
-            ship.startJourney();
+        }
+        
+        byPlanet.entrySet().parallelStream().forEach(group -> {
+            for (Spaceship ship : group.getValue()) {
+                action.accept(ship, group.getKey());
+            }
+        });
+    }
+    
+    private void processShipDeparture(Spaceship ship) {
+        Planet departurePlanet = dueDeparturePlanet(ship);
+        if (departurePlanet != null) {
+            departShip(ship, departurePlanet);
+        }
+    }
+    
+    /**
+     * Returns the planet the ship leaves from if it is due to leave this hour, or null.
+     */
+    private Planet dueDeparturePlanet(Spaceship ship) {
+        if (ship.isInTransit() || ship.isDestroyed() || ship.hasArrived()) return null;
+        
+        Planet departurePlanet = ship.getDeparture();
+        if (departurePlanet == null) return null;
+        
+        return departurePlanet.getTime().isOnDay(ship.getDepartureDay()) ? departurePlanet : null;
+    }
+    
+    private void departShip(Spaceship ship, Planet departurePlanet) {
+        Roster group = departurePlanet.takeBoarding(ship.getSymbol());
+        if (journal != null) {
+            journal.departed(ship, departurePlanet, group, tickHour);
+        }
+        ship.board(group);
+        trackOriginalPassengers(ship);
+        ship.startJourney();
+        if (metrics != null) {
+            metrics.departed(ship);
         }
     }
     
     private void processShipArrival(Spaceship ship) {
         if (ship.isTravelComplete()) {
-            Planet destinationPlanet = planetMap.get(ship.getDestinationPlanet());
+            Planet destinationPlanet = ship.getDestination();
             
             if (destinationPlanet != null) {
-                for (Person person : ship.getPassengers()) {
-                    person.setCurrentVehicle(destinationPlanet.getName());
-                    destinationPlanet.addPerson(person);
+                if (metrics != null) {
+                    metrics.arrived(ship);
+                }
+                if (journal != null) {
+                    journal.arrived(ship, destinationPlanet, tickHour);
+                }
+                int location = destinationPlanet.getSymbol();
+                int[] arriving = ship.disembarkIds();
+                if (partition != null && !partition.owns(locations.planetIndex(location))) {
+                    // They live on in the partition that owns the planet, which reports their
+                    // deaths back for the ships they set off on
+                    partition.handOver(people, arriving, locations.planetIndex(location));
+                    release(arriving);
+                } else {
+                    for (int id : arriving) {
+                        people.setLocationId(id, location);
+                        destinationPlanet.addPerson(people, id);
+                    }
                 }
                 ship.setActualArrivalDate(destinationPlanet.getTime().getDate()); 
                 ship.endJourney();
@@ -125,76 +949,49 @@ public class Simulation {
     }
     
     private void checkSimulationComplete() {
-        simulationComplete = true;
-
-        for(Spaceship ship : ships) {
-            if (!ship.isDestroyed() && !ship.hasArrived()) {
-                simulationComplete = false;
-                return;
-            }
-        }
+        simulationComplete = activeShips.get() == 0;
     }
     
     private void displayState() {
-        System.out.println("Simulation Hour: " + hourCounter);
-        System.out.println("Planets:");
-        
-        final int planetColumnWidth = 18; 
-        System.out.printf("%-10s", "");
-        for (Planet planet : planets) {
-            String header = String.format("--- %s ---", planet.getName());
-            System.out.printf("%-" + planetColumnWidth + "s", header); 
-        }
-        System.out.println();
-
-        System.out.printf("%-10s", "Date");
-        System.out.print("  ");
-        for (Planet planet : planets) {
-            System.out.printf("%-" + planetColumnWidth + "s", planet.getTime().getDate());
-        }
-        System.out.println();
-
-        System.out.printf("%-10s", "Population");
-        System.out.print("  ");
-        for (Planet planet : planets) {
-            System.out.printf("%-" + planetColumnWidth + "d", planet.getPopulation().size());
+        displayState(captureSnapshot());
+    }
+    
+    static void displayState(StateSnapshot snapshot) {
+        StringBuilder table = new StringBuilder(1024);
+        snapshot.appendTable(table);
+        System.out.print(table);
+    }
+    
+    /**
+     * Captures what the state table shows right now into an immutable snapshot.
+     */
+    public StateSnapshot captureSnapshot() {
+        return captureSnapshot(null);
+    }
+    
+    // Shares every block of the table that has not changed since the previous snapshot
+    private StateSnapshot captureSnapshot(StateSnapshot previous) {
+        String[] planetNames = new String[planets.size()];
+        String[] planetDates = new String[planets.size()];
+        int[] populations = new int[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            planetNames[i] = planet.getName();
+            planetDates[i] = planet.getTime().getDate();
+            populations[i] = planet.getPopulation().size();
         }
-        System.out.println("\n");
-
-        System.out.println("Spaceships:");
-        
-        System.out.printf("%-12s %-12s %-10s %-10s %-20s %-20s%n",
-                "Ship Name", "Status", "Departure", "Destination", "Hours Remaining", "Arrival Date");
         
-        for (Spaceship ship : ships) {
-            String status;
-            if (ship.isDestroyed()) {
-                status = "Destroyed"; 
-            } else if (ship.hasArrived()) {
-                boolean allOriginalsDead = true;
-                if (ship.getOriginalPassengers() != null) {
-                    for (Person p : ship.getOriginalPassengers()) {
-                        if (p.isAlive()) {
-                            allOriginalsDead = false;
-                            break;
-                        }
-                    }
-                } else {
-                    allOriginalsDead = false; 
-                }
-                if (allOriginalsDead && ship.getOriginalPassengers() != null && !ship.getOriginalPassengers().isEmpty()) {
-                    status = "Destroyed"; 
-                } else {
-                    status = "Arrived";   
-                }
-            } else if (ship.isInTransit()) {
-                status = "In Transit";
-            } else {
-                status = "Waiting";   
-            }
-
-            String arrivalDate = calculateArrivalDate(ship);
-
+        String[] shipNames = new String[ships.size()];
+        String[] statuses = new String[ships.size()];
+        String[] departures = new String[ships.size()];
+        String[] destinations = new String[ships.size()];
+        String[] remaining = new String[ships.size()];
+        String[] arrivalDates = new String[ships.size()];
+        int[] passengers = new int[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            String status = getShipStatus(ship);
+            
             String displayRemainingTimeStr;
             if (status.equals("Destroyed")) { 
                 displayRemainingTimeStr = "--"; 
@@ -203,52 +1000,56 @@ public class Simulation {
             } else {
                 displayRemainingTimeStr = String.valueOf(ship.getRemainingTravelTime()); 
             }
-
-            System.out.printf(
-                "%-12s %-12s %-10s %-10s %-20s %-20s%n",
-                ship.getName(),
-                status,
-                ship.getDeparturePlanet(),
-                ship.getDestinationPlanet(),
-                displayRemainingTimeStr, 
-                arrivalDate
-            );
+            
+            shipNames[i] = ship.getName();
+            statuses[i] = status;
+            departures[i] = ship.getDeparturePlanet();
+            destinations[i] = ship.getDestinationPlanet();
+            remaining[i] = displayRemainingTimeStr;
+            arrivalDates[i] = calculateArrivalDate(i);
+            passengers[i] = ship.getPassengers().size();
         }
+        
+        return new StateSnapshot(hourCounter, planetNames, planetDates, populations,
+                shipNames, statuses, departures, destinations, remaining, arrivalDates, passengers, previous);
     }
-
-    private String calculateArrivalDate(Spaceship ship) {
-        String arrivalDate = "--";
-        
-        boolean isEffectivelyDestroyed = ship.isDestroyed();
-        if (!isEffectivelyDestroyed && ship.hasArrived() && ship.getOriginalPassengers() != null && !ship.getOriginalPassengers().isEmpty()) { 
-            boolean allOriginalsDead = true;
-            for (Person p : ship.getOriginalPassengers()) {
-                if (p.isAlive()) {
-                    allOriginalsDead = false;
-                    break;
-                }
-            }
-            if (allOriginalsDead) {
-                isEffectivelyDestroyed = true;
-            }
-        }
+    
+    private String getShipStatus(Spaceship ship) {
+        return SHIP_STATUSES[ship.getState()];
+    }
+    
+    /**
+     * Prints the counts that end a headless run, taken from its last state table.
+     */
+    static void printSummary(StateSnapshot snapshot) {
+        System.out.println("\nSummary:");
+        System.out.printf("%-14s %d%n", "Total hours", snapshot.getHour());
+        System.out.printf("%-14s %d%n", "Arrivals", snapshot.countShips("Arrived"));
+        System.out.printf("%-14s %d%n", "Destructions", snapshot.countShips("Destroyed"));
+        System.out.printf("%-14s %d%n", "Survivors", snapshot.getPlanetPopulation() + snapshot.getShipPopulation());
+    }
+    
+    private String calculateArrivalDate(int shipIndex) {
+        Spaceship ship = ships.get(shipIndex);
         
-        if (isEffectivelyDestroyed) {
-             arrivalDate = "--";
+        if (ship.isDestroyed() || (ship.hasArrived() && ship.hasLostAllOriginalPassengers())) {
+            return "--";
+        } else if (ship.hasArrived()) {
+            String arrivalDate = ship.getActualArrivalDate();
+            return arrivalDate == null ? "Error" : arrivalDate;
         }
-        else if (ship.hasArrived()) { 
-            arrivalDate = ship.getActualArrivalDate();
-            if (arrivalDate == null) arrivalDate = "Error";
-        } 
-        else { 
-            Planet departurePlanet = planetMap.get(ship.getDeparturePlanet());
-            if (departurePlanet != null) {
-                Time arrivalTime = new Time(ship.getDepartureDate(), departurePlanet.getDayLength());
-                arrivalTime.addHours(ship.getTravelDuration());
-                arrivalDate = arrivalTime.getDate();
-            }
+        return projectedArrivalDates[shipIndex];
+    }
+    
+    /**
+     * Works out when a ship would arrive if it left on time, in the departure planet's calendar.
+     */
+    static String projectArrivalDate(Spaceship ship, Planet departurePlanet) {
+        if (departurePlanet == null) {
+            return "--";
         }
-        
-        return arrivalDate;
+        int dayLength = departurePlanet.getDayLength();
+        long arrivalHour = ship.getDepartureDay() * dayLength + ship.getTravelDuration();
+        return Time.formatDate(Math.floorDiv(arrivalHour, dayLength));
     }
 }
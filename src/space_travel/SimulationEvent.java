@@ -0,0 +1,44 @@
+/**
+ * <p>
+ * This class represents a scheduled event for the event-driven simulation engine.
+ * Events are ordered the same way the hourly loop would reach them: by hour, then by
+ * ship, then by phase (departure before arrival) within that ship. Deaths are not
+ * queued here; they come from the simulation's timing wheel.
+ * </p>
+ */
+
+package space_travel;
+
+public class SimulationEvent implements Comparable<SimulationEvent> {
+    public static final int DEPARTURE = 0;
+    public static final int ARRIVAL = 1;
+    
+    private final int hour;
+    private final int shipIndex;
+    private final int phase;
+    
+    public SimulationEvent(int hour, int shipIndex, int phase) {
+        this.hour = hour;
+        this.shipIndex = shipIndex;
+        this.phase = phase;
+    }
+    
+    public int getHour() {
+        return hour;
+    }
+    
+    public int getShipIndex() {
+        return shipIndex;
+    }
+    
+    public int getPhase() {
+        return phase;
+    }
+    
+    @Override
+    public int compareTo(SimulationEvent other) {
+        if (hour != other.hour) return Integer.compare(hour, other.hour);
+        if (shipIndex != other.shipIndex) return Integer.compare(shipIndex, other.shipIndex);
+        return Integer.compare(phase, other.phase);
+    }
+}
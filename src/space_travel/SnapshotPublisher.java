@@ -0,0 +1,46 @@
+/**
+ * <p>
+ * This class holds the latest snapshot a simulation has published and knows when the
+ * next one is due. The simulation thread replaces the snapshot every few hours; any
+ * other thread, such as the status server's, reads the latest one without locking and
+ * without holding up the simulation.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SnapshotPublisher {
+    private final int interval;
+    private int nextHour;
+    private final AtomicReference<StateSnapshot> latest = new AtomicReference<>();
+    
+    /**
+     * @param hours Publish every this many hours
+     */
+    SnapshotPublisher(int hours) {
+        this.interval = hours;
+    }
+    
+    /**
+     * Returns true if a snapshot should be published at the given hour. The event-driven
+     * engine may jump past a publishing hour, in which case the state is published at
+     * the first hour it stops on after it. The final state is always published.
+     */
+    boolean isDue(int hour, boolean complete) {
+        return hour >= nextHour || complete;
+    }
+    
+    void publish(StateSnapshot snapshot) {
+        latest.set(snapshot);
+        nextHour = (snapshot.getHour() / interval + 1) * interval;
+    }
+    
+    /**
+     * Returns the latest snapshot published, or null before the first.
+     */
+    StateSnapshot getLatest() {
+        return latest.get();
+    }
+}
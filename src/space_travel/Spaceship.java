@@ -17,52 +17,128 @@ public class Spaceship {
     private String departurePlanet;
     private String destinationPlanet;
     private String departureDate;
+    private long departureDay;
     private int travelDuration;
     private int remainingTravelTime;
-    private List<Person> passengers;
+    private Roster passengers;
     private boolean inTransit;
     private boolean destroyed;
     private boolean arrived;
     private List<Person> originalPassengers = null;
+    private int livingOriginalPassengers;
+    private Runnable onFinished;
+    
+    // Resolved once by the simulation so the hourly loop never looks planets up by name
+    private int index = -1;
+    private int symbol = SymbolTable.NONE;
+    private Planet departure;
+    private Planet destination;
     private String actualArrivalDate = null;
     
     public Spaceship(String name, String departurePlanet, String destinationPlanet, String departureDate, int travelDuration) {
+        this(name, departurePlanet, destinationPlanet, departureDate, Time.parseDay(departureDate), travelDuration);
+    }
+    
+    Spaceship(String name, String departurePlanet, String destinationPlanet, String departureDate, long departureDay, int travelDuration) {
         this.name = name;
         this.departurePlanet = departurePlanet;
         this.destinationPlanet = destinationPlanet;
         this.departureDate = departureDate;
+        this.departureDay = departureDay;
         this.travelDuration = travelDuration;
         this.remainingTravelTime = travelDuration;
-        this.passengers = new ArrayList<>();
+        this.passengers = new Roster();
         this.inTransit = false;
         this.destroyed = false;
         this.arrived = false;
     }
     
+    /**
+     * Creates a copy of a ship that has not left yet, with a different travel duration.
+     * The name and planet strings are shared with the original.
+     * 
+     * @param template The ship to copy
+     * @param travelDuration The copy's travel duration in hours
+     */
+    Spaceship(Spaceship template, int travelDuration) {
+        this.name = template.name;
+        this.departurePlanet = template.departurePlanet;
+        this.destinationPlanet = template.destinationPlanet;
+        this.departureDate = template.departureDate;
+        this.departureDay = template.departureDay;
+        this.travelDuration = travelDuration;
+        this.remainingTravelTime = travelDuration;
+        this.passengers = new Roster();
+    }
+    
     public void addPassenger(Person person) {
         passengers.add(person);
     }
     
+    /**
+     * Takes a planet's whole boarding group on board as the original passengers. The
+     * group's roster becomes the passenger list, so nobody has to be moved.
+     * 
+     * @param group The people waiting for this ship, or null if there are none
+     */
+    void board(Roster group) {
+        if (group == null || group.isEmpty()) {
+            setOriginalPassengers(new ArrayList<>());
+            return;
+        }
+        PersonStore people = group.getStore();
+        int[] ids = group.toIdArray();
+        if (passengers.isEmpty()) {
+            passengers = group;
+        } else {
+            for (int id : ids) {
+                passengers.add(people, id);
+            }
+        }
+        setOriginalPassengers(people, ids);
+    }
+    
     public void passHour() {
+        passHours(1);
+    }
+    
+    /**
+     * Advances the journey clock. Passengers who die are taken off the ship by the
+     * simulation's timing wheel; once the last of them is gone the ship is destroyed.
+     * 
+     * @param hours The number of hours to advance
+     */
+    public void passHours(int hours) {
         if (inTransit && !destroyed) {
-            remainingTravelTime--;
-            
-            List<Person> alive = new ArrayList<>();
-            for (Person person : passengers) {
-                if (person.isAlive()) {
-                    alive.add(person);
-                }
-            }
+            remainingTravelTime -= hours;
             
-            boolean hadPassengers = !passengers.isEmpty();
-            passengers = alive;
-            
-            if (passengers.isEmpty() && hadPassengers) {
+            if (passengers.isEmpty() && originalPassengers != null && !originalPassengers.isEmpty()) {
                 destroyed = true;
+                finished();
             }
         }
     }
     
+    /**
+     * Takes all passengers off the ship when it reaches its destination.
+     * 
+     * @return The passengers who were on board
+     */
+    public List<Person> disembark() {
+        List<Person> arriving = new ArrayList<>(passengers);
+        passengers.clear();
+        return arriving;
+    }
+    
+    /**
+     * Takes all passengers off the ship, like disembark(), and returns their store ids.
+     */
+    int[] disembarkIds() {
+        int[] arriving = passengers.toIdArray();
+        passengers.clear();
+        return arriving;
+    }
+    
     public boolean isTravelComplete() {
         return inTransit && remainingTravelTime <= 0;
     }
@@ -72,8 +148,69 @@ public class Spaceship {
     }
     
     public void endJourney() { 
+        boolean wasFinished = isFinished();
         inTransit = false;
         arrived = true;
+        if (!wasFinished) {
+            finished();
+        }
+    }
+    
+    /**
+     * Links the ship to its planets and gives it its place in the simulation's list of
+     * ships and the symbol id of its name, which is the key its passengers wait under.
+     * 
+     * @param index The ship's index in the simulation
+     * @param symbol The symbol id of the ship's name
+     * @param departure The departure planet, or null if there is no such planet
+     * @param destination The destination planet, or null if there is no such planet
+     */
+    void resolve(int index, int symbol, Planet departure, Planet destination) {
+        this.index = index;
+        this.symbol = symbol;
+        this.departure = departure;
+        this.destination = destination;
+    }
+    
+    /**
+     * Returns the ship's index in the simulation it was resolved by. Ship names need not
+     * be unique, so events and journal records use this instead.
+     */
+    int getIndex() {
+        return index;
+    }
+    
+    int getSymbol() {
+        return symbol;
+    }
+    
+    Planet getDeparture() {
+        return departure;
+    }
+    
+    Planet getDestination() {
+        return destination;
+    }
+    
+    /**
+     * Returns true once the ship has arrived or been destroyed.
+     */
+    public boolean isFinished() {
+        return destroyed || arrived;
+    }
+    
+    /**
+     * Sets what to do when the ship arrives or is destroyed. It is called once, from
+     * whichever thread moves the ship, but not when a checkpoint is restored.
+     */
+    void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+    
+    private void finished() {
+        if (onFinished != null) {
+            onFinished.run();
+        }
     }
     
     public String getName() {
@@ -92,6 +229,13 @@ public class Spaceship {
         return departureDate;
     }
     
+    /**
+     * Returns the departure date as a day number (see Time.parseDay), compiled once when the ship is created.
+     */
+    public long getDepartureDay() {
+        return departureDay;
+    }
+    
     public List<Person> getPassengers() {
         return passengers;
     }
@@ -103,7 +247,7 @@ public class Spaceship {
     public boolean isDestroyed() {
         return destroyed;
     }
-
+    
     public boolean hasArrived() {
         return arrived;
     }
@@ -118,20 +262,84 @@ public class Spaceship {
     
     public void setOriginalPassengers(List<Person> passengers) {
         this.originalPassengers = new ArrayList<>(passengers);
+        this.livingOriginalPassengers = countLiving(originalPassengers);
     }
-
+    
+    void setOriginalPassengers(PersonStore people, int[] ids) {
+        this.originalPassengers = people.view(ids);
+        this.livingOriginalPassengers = countLiving(originalPassengers);
+    }
+    
+    private static int countLiving(List<Person> people) {
+        int living = 0;
+        for (Person person : people) {
+            if (person.isAlive()) living++;
+        }
+        return living;
+    }
+    
     public List<Person> getOriginalPassengers() {
         return originalPassengers;
     }
     
+    /**
+     * Returns how many of the original passengers are still alive. The count is taken
+     * when they board and lowered by the simulation each time one of them dies.
+     */
+    public int getLivingOriginalPassengers() {
+        return livingOriginalPassengers;
+    }
+    
+    void originalPassengerDied() {
+        livingOriginalPassengers--;
+    }
+    
+    /**
+     * Returns true if the ship left with passengers and all of them have died since,
+     * which counts as destroyed even after the ship has arrived.
+     */
+    public boolean hasLostAllOriginalPassengers() {
+        return originalPassengers != null && !originalPassengers.isEmpty() && livingOriginalPassengers == 0;
+    }
+    
+    /**
+     * Returns the status the state table shows for the ship, as one of the
+     * EventJournal.SHIP_ constants. An arrived ship that lost all its original
+     * passengers shows as destroyed.
+     */
+    int getState() {
+        if (destroyed) {
+            return EventJournal.SHIP_DESTROYED;
+        } else if (arrived) {
+            return hasLostAllOriginalPassengers() ? EventJournal.SHIP_DESTROYED : EventJournal.SHIP_ARRIVED;
+        } else if (inTransit) {
+            return EventJournal.SHIP_IN_TRANSIT;
+        }
+        return EventJournal.SHIP_WAITING;
+    }
+    
+    /**
+     * Puts the journey back into a saved state when resuming from a checkpoint.
+     */
+    void restoreJourney(int remainingTravelTime, boolean inTransit, boolean destroyed, boolean arrived) {
+        this.remainingTravelTime = remainingTravelTime;
+        this.inTransit = inTransit;
+        this.destroyed = destroyed;
+        this.arrived = arrived;
+    }
+    
     public void markAsDestroyed() {
+        boolean wasFinished = isFinished();
         this.destroyed = true;
+        if (!wasFinished) {
+            finished();
+        }
     }
     
     public String getActualArrivalDate() {
         return actualArrivalDate;
     }
-
+    
     public void setActualArrivalDate(String actualArrivalDate) {
         this.actualArrivalDate = actualArrivalDate;
     }
@@ -0,0 +1,266 @@
+/**
+ * <p>
+ * This class is an immutable picture of the simulation taken at the end of an hour.
+ * It holds exactly what the state table shows, so it can be handed to another thread
+ * (such as the terminal renderer) while the simulation keeps running.
+ * Every column is kept in fixed-size blocks, and a snapshot taken after another one
+ * reuses each block whose values did not change, so a long run that publishes one
+ * snapshot per hour only copies the parts of the table that moved.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.Arrays;
+
+public class StateSnapshot {
+    private static final int PLANET_COLUMN_WIDTH = 18;
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    
+    private final int hour;
+    private final int planetCount;
+    private final int shipCount;
+    private final String[][] planetNames;
+    private final String[][] planetDates;
+    private final int[][] populations;
+    private final String[][] shipNames;
+    private final String[][] shipStatuses;
+    private final String[][] departures;
+    private final String[][] destinations;
+    private final String[][] hoursRemaining;
+    private final String[][] arrivalDates;
+    private final int[][] passengers;
+    
+    StateSnapshot(int hour, String[] planetNames, String[] planetDates, int[] populations,
+            String[] shipNames, String[] shipStatuses, String[] departures, String[] destinations,
+            String[] hoursRemaining, String[] arrivalDates, int[] passengers) {
+        this(hour, planetNames, planetDates, populations, shipNames, shipStatuses, departures,
+                destinations, hoursRemaining, arrivalDates, passengers, null);
+    }
+    
+    /**
+     * Takes a snapshot from the given columns, which are copied and can be reused by
+     * the caller afterwards. Blocks that are equal to the previous snapshot's are
+     * shared with it instead of being copied; ships added since then only make the
+     * last block of each ship column differ.
+     * 
+     * @param previous The snapshot taken before this one, or null
+     */
+    StateSnapshot(int hour, String[] planetNames, String[] planetDates, int[] populations,
+            String[] shipNames, String[] shipStatuses, String[] departures, String[] destinations,
+            String[] hoursRemaining, String[] arrivalDates, int[] passengers, StateSnapshot previous) {
+        this.hour = hour;
+        this.planetCount = planetNames.length;
+        this.shipCount = shipNames.length;
+        this.planetNames = blocks(planetNames, previous == null ? null : previous.planetNames);
+        this.planetDates = blocks(planetDates, previous == null ? null : previous.planetDates);
+        this.populations = blocks(populations, previous == null ? null : previous.populations);
+        this.shipNames = blocks(shipNames, previous == null ? null : previous.shipNames);
+        this.shipStatuses = blocks(shipStatuses, previous == null ? null : previous.shipStatuses);
+        this.departures = blocks(departures, previous == null ? null : previous.departures);
+        this.destinations = blocks(destinations, previous == null ? null : previous.destinations);
+        this.hoursRemaining = blocks(hoursRemaining, previous == null ? null : previous.hoursRemaining);
+        this.arrivalDates = blocks(arrivalDates, previous == null ? null : previous.arrivalDates);
+        this.passengers = blocks(passengers, previous == null ? null : previous.passengers);
+    }
+    
+    private static String[][] blocks(String[] values, String[][] shared) {
+        String[][] blocks = new String[blockCount(values.length)][];
+        for (int b = 0; b < blocks.length; b++) {
+            int from = b << BLOCK_SHIFT;
+            int to = Math.min(from + BLOCK_SIZE, values.length);
+            if (shared != null && b < shared.length && Arrays.equals(shared[b], 0, shared[b].length, values, from, to)) {
+                blocks[b] = shared[b];
+            } else {
+                blocks[b] = Arrays.copyOfRange(values, from, to);
+            }
+        }
+        return blocks;
+    }
+    
+    private static int[][] blocks(int[] values, int[][] shared) {
+        int[][] blocks = new int[blockCount(values.length)][];
+        for (int b = 0; b < blocks.length; b++) {
+            int from = b << BLOCK_SHIFT;
+            int to = Math.min(from + BLOCK_SIZE, values.length);
+            if (shared != null && b < shared.length && Arrays.equals(shared[b], 0, shared[b].length, values, from, to)) {
+                blocks[b] = shared[b];
+            } else {
+                blocks[b] = Arrays.copyOfRange(values, from, to);
+            }
+        }
+        return blocks;
+    }
+    
+    private static int blockCount(int length) {
+        return (length + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    }
+    
+    private static <T> T get(T[][] blocks, int index) {
+        return blocks[index >> BLOCK_SHIFT][index & (BLOCK_SIZE - 1)];
+    }
+    
+    private static int get(int[][] blocks, int index) {
+        return blocks[index >> BLOCK_SHIFT][index & (BLOCK_SIZE - 1)];
+    }
+    
+    public int getHour() {
+        return hour;
+    }
+    
+    public int getPlanetCount() {
+        return planetCount;
+    }
+    
+    public String getPlanetName(int index) {
+        return get(planetNames, index);
+    }
+    
+    public String getPlanetDate(int index) {
+        return get(planetDates, index);
+    }
+    
+    public int getPopulation(int index) {
+        return get(populations, index);
+    }
+    
+    public int getShipCount() {
+        return shipCount;
+    }
+    
+    public String getShipName(int index) {
+        return get(shipNames, index);
+    }
+    
+    public String getShipStatus(int index) {
+        return get(shipStatuses, index);
+    }
+    
+    public String getDeparture(int index) {
+        return get(departures, index);
+    }
+    
+    public String getDestination(int index) {
+        return get(destinations, index);
+    }
+    
+    public String getHoursRemaining(int index) {
+        return get(hoursRemaining, index);
+    }
+    
+    public String getArrivalDate(int index) {
+        return get(arrivalDates, index);
+    }
+    
+    /**
+     * Returns how many living passengers a ship has.
+     */
+    public int getPassengers(int index) {
+        return get(passengers, index);
+    }
+    
+    /**
+     * Returns how many people are living on planets.
+     */
+    public long getPlanetPopulation() {
+        long total = 0;
+        for (int[] block : populations) {
+            for (int population : block) {
+                total += population;
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Returns how many living people are on board ships.
+     */
+    public long getShipPopulation() {
+        long total = 0;
+        for (int[] block : passengers) {
+            for (int count : block) {
+                total += count;
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Returns how many ships have the given status, such as "Arrived".
+     */
+    public int countShips(String status) {
+        int count = 0;
+        for (String[] block : shipStatuses) {
+            for (String shipStatus : block) {
+                if (shipStatus.equals(status)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Writes the state table into the given buffer, one '\n'-terminated line per row,
+     * laid out the same way the simulation has always printed it.
+     * 
+     * @param out The buffer to append to
+     */
+    public void appendTable(StringBuilder out) {
+        out.append("Simulation Hour: ").append(hour).append('\n');
+        out.append("Planets:\n");
+        
+        pad(out, "", 10);
+        for (int i = 0; i < planetCount; i++) {
+            int start = out.length();
+            out.append("--- ").append(getPlanetName(i)).append(" ---");
+            padFrom(out, start, PLANET_COLUMN_WIDTH);
+        }
+        out.append('\n');
+        
+        pad(out, "Date", 10).append("  ");
+        for (int i = 0; i < planetCount; i++) {
+            pad(out, getPlanetDate(i), PLANET_COLUMN_WIDTH);
+        }
+        out.append('\n');
+        
+        pad(out, "Population", 10).append("  ");
+        for (int i = 0; i < planetCount; i++) {
+            int start = out.length();
+            out.append(getPopulation(i));
+            padFrom(out, start, PLANET_COLUMN_WIDTH);
+        }
+        out.append("\n\n");
+        
+        out.append("Spaceships:\n");
+        appendShipRow(out, "Ship Name", "Status", "Departure", "Destination", "Hours Remaining", "Arrival Date");
+        for (int i = 0; i < shipCount; i++) {
+            appendShipRow(out, getShipName(i), getShipStatus(i), getDeparture(i), getDestination(i),
+                    getHoursRemaining(i), getArrivalDate(i));
+        }
+    }
+    
+    private static void appendShipRow(StringBuilder out, String name, String status, String departure,
+            String destination, String remaining, String arrival) {
+        pad(out, name, 12).append(' ');
+        pad(out, status, 12).append(' ');
+        pad(out, departure, 10).append(' ');
+        pad(out, destination, 10).append(' ');
+        pad(out, remaining, 20).append(' ');
+        pad(out, arrival, 20).append('\n');
+    }
+    
+    private static StringBuilder pad(StringBuilder out, String value, int width) {
+        int start = out.length();
+        out.append(value);
+        return padFrom(out, start, width);
+    }
+    
+    private static StringBuilder padFrom(StringBuilder out, int start, int width) {
+        for (int i = out.length() - start; i < width; i++) {
+            out.append(' ');
+        }
+        return out;
+    }
+}
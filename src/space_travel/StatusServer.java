@@ -0,0 +1,208 @@
+/**
+ * <p>
+ * This class serves the latest published snapshot of a running simulation as JSON
+ * over HTTP, so a dashboard can watch a long run. It only ever reads the snapshot the
+ * simulation last published, which is immutable, so any number of requests can be
+ * answered at once without locking and without holding up the simulation. Each page
+ * is written once per snapshot and the same bytes are sent to every request for it.
+ * </p>
+ * <pre>
+ * GET /summary   the hour and how many ships and people are where
+ * GET /planets   every planet's date and population
+ * GET /ships     every ship's status, route, remaining hours and passengers
+ * </pre>
+ */
+
+package space_travel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class StatusServer {
+    private static final int THREADS = 4;
+    private static final byte[] NO_SNAPSHOT = "{\"error\":\"no snapshot published yet\"}\n".getBytes(StandardCharsets.UTF_8);
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Supplier<StateSnapshot> snapshots;
+    
+    /**
+     * Creates a server on the loopback address, for example for
+     * simulation::getPublishedSnapshot.
+     * 
+     * @param port The port to listen on, or 0 for any free port
+     * @param snapshots Gives the latest snapshot, or null if there is none yet
+     * @throws IOException if the port cannot be bound
+     */
+    public StatusServer(int port, Supplier<StateSnapshot> snapshots) throws IOException {
+        this.snapshots = snapshots;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, task -> {
+            Thread thread = new Thread(task, "status-http-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        
+        addPage("/summary", StatusServer::writeSummary);
+        addPage("/planets", StatusServer::writePlanets);
+        addPage("/ships", StatusServer::writeShips);
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Stops the server at once; a request still being answered is cut off.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+    
+    private void addPage(String path, BiConsumer<StateSnapshot, StringBuilder> writer) {
+        Page page = new Page(writer);
+        server.createContext(path, exchange -> handle(exchange, path, page));
+    }
+    
+    private void handle(HttpExchange exchange, String path, Page page) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            // The context also matches longer paths, which are not pages
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            
+            StateSnapshot snapshot = snapshots.get();
+            int status = snapshot == null ? 503 : 200;
+            byte[] body = snapshot == null ? NO_SNAPSHOT : page.render(snapshot);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+    
+    /**
+     * One JSON page, kept for the last snapshot it was written for. Requests that race
+     * on a new snapshot may both write it, which is harmless.
+     */
+    private static class Page {
+        private final BiConsumer<StateSnapshot, StringBuilder> writer;
+        private volatile Rendered rendered;
+        
+        Page(BiConsumer<StateSnapshot, StringBuilder> writer) {
+            this.writer = writer;
+        }
+        
+        byte[] render(StateSnapshot snapshot) {
+            Rendered last = rendered;
+            if (last != null && last.snapshot == snapshot) {
+                return last.body;
+            }
+            StringBuilder json = new StringBuilder(4096);
+            writer.accept(snapshot, json);
+            byte[] body = json.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+            rendered = new Rendered(snapshot, body);
+            return body;
+        }
+    }
+    
+    private static class Rendered {
+        final StateSnapshot snapshot;
+        final byte[] body;
+        
+        Rendered(StateSnapshot snapshot, byte[] body) {
+            this.snapshot = snapshot;
+            this.body = body;
+        }
+    }
+    
+    private static void writeSummary(StateSnapshot snapshot, StringBuilder json) {
+        json.append("{\"hour\":").append(snapshot.getHour());
+        json.append(",\"planets\":").append(snapshot.getPlanetCount());
+        json.append(",\"ships\":").append(snapshot.getShipCount());
+        for (int state = 0; state < Simulation.SHIP_STATUSES.length; state++) {
+            String status = Simulation.SHIP_STATUSES[state];
+            json.append(",\"").append(statusKey(status)).append("\":").append(snapshot.countShips(status));
+        }
+        json.append(",\"onPlanets\":").append(snapshot.getPlanetPopulation());
+        json.append(",\"onShips\":").append(snapshot.getShipPopulation());
+        json.append('}');
+    }
+    
+    // "In Transit" becomes inTransit
+    private static String statusKey(String status) {
+        StringBuilder key = new StringBuilder(status.length());
+        for (String word : status.split(" ")) {
+            key.append(key.length() == 0 ? Character.toLowerCase(word.charAt(0)) : word.charAt(0));
+            key.append(word, 1, word.length());
+        }
+        return key.toString();
+    }
+    
+    private static void writePlanets(StateSnapshot snapshot, StringBuilder json) {
+        json.append("{\"hour\":").append(snapshot.getHour()).append(",\"planets\":[");
+        for (int i = 0; i < snapshot.getPlanetCount(); i++) {
+            json.append(i == 0 ? "{\"name\":" : ",{\"name\":");
+            JournalReader.appendName(json, snapshot.getPlanetName(i)).append(",\"date\":");
+            JournalReader.appendName(json, snapshot.getPlanetDate(i));
+            json.append(",\"population\":").append(snapshot.getPopulation(i)).append('}');
+        }
+        json.append("]}");
+    }
+    
+    private static void writeShips(StateSnapshot snapshot, StringBuilder json) {
+        json.append("{\"hour\":").append(snapshot.getHour()).append(",\"ships\":[");
+        for (int i = 0; i < snapshot.getShipCount(); i++) {
+            json.append(i == 0 ? "{\"name\":" : ",{\"name\":");
+            JournalReader.appendName(json, snapshot.getShipName(i)).append(",\"status\":");
+            JournalReader.appendName(json, snapshot.getShipStatus(i)).append(",\"departure\":");
+            JournalReader.appendName(json, snapshot.getDeparture(i)).append(",\"destination\":");
+            JournalReader.appendName(json, snapshot.getDestination(i));
+            
+            // The table shows "--" where there is no value
+            String remaining = snapshot.getHoursRemaining(i);
+            json.append(",\"hoursRemaining\":").append(remaining.equals("--") ? "null" : remaining);
+            json.append(",\"arrivalDate\":");
+            String arrival = snapshot.getArrivalDate(i);
+            if (arrival.equals("--")) {
+                json.append("null");
+            } else {
+                JournalReader.appendName(json, arrival);
+            }
+            json.append(",\"passengers\":").append(snapshot.getPassengers(i)).append('}');
+        }
+        json.append("]}");
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * <p>
+ * This class gives every planet and ship name a small, dense int id, so the simulation
+ * can find groups, planets and locations by indexing arrays instead of hashing strings.
+ * A name keeps its id for as long as the table exists, and each name is stored once
+ * however many people are booked on it. Names can be added from several threads at once.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SymbolTable {
+    public static final int NONE = -1;
+    
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    
+    // Only grows; the volatile write after each addition publishes it to other threads
+    private volatile String[] names = new String[16];
+    private int size;
+    
+    /**
+     * Returns the id of a name, giving it the next free id if it is new.
+     * 
+     * @param name The name, or null for NONE
+     */
+    public int intern(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Integer known = ids.get(name);
+        return known != null ? known : add(name);
+    }
+    
+    private synchronized int add(String name) {
+        Integer known = ids.get(name);
+        if (known != null) {
+            return known;
+        }
+        String[] table = names;
+        if (size == table.length) {
+            table = Arrays.copyOf(table, 2 * size);
+        }
+        table[size] = name;
+        names = table;
+        ids.put(name, size);
+        return size++;
+    }
+    
+    /**
+     * Returns the id of a name without adding it, or NONE if the name is not in the table.
+     */
+    public int find(String name) {
+        Integer known = name == null ? null : ids.get(name);
+        return known == null ? NONE : known;
+    }
+    
+    /**
+     * Returns the name with the given id, or null for NONE.
+     */
+    public String name(int id) {
+        return id == NONE ? null : names[id];
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * <p>
+ * This class draws the live view of the simulation on its own thread.
+ * The simulation hands over a snapshot whenever the renderer asks for one and never
+ * waits for the terminal. At most a fixed number of frames per second are drawn;
+ * each frame is laid out into a reusable buffer and only the characters that changed
+ * since the previous frame are written, using cursor-addressing escape sequences.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+public class TerminalRenderer implements Runnable {
+    private static final String ESC = "\033[";
+    
+    private final long frameNanos;
+    private final PrintStream out;
+    private final StringBuilder table = new StringBuilder(4096);
+    private final StringBuilder frame = new StringBuilder(4096);
+    private volatile StateSnapshot latest;
+    private volatile boolean wantsSnapshot = true;
+    private volatile boolean running;
+    private StateSnapshot drawn;
+    private char[][] screen = new char[0][];
+    private int[] screenLengths = new int[0];
+    private int screenRows;
+    private Thread thread;
+    
+    public TerminalRenderer(int framesPerSecond) {
+        this(framesPerSecond, System.out);
+    }
+    
+    public TerminalRenderer(int framesPerSecond, PrintStream out) {
+        this.frameNanos = 1_000_000_000L / Math.max(1, framesPerSecond);
+        this.out = out;
+    }
+    
+    public void start() {
+        running = true;
+        thread = new Thread(this, "terminal-renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops the render thread after it has drawn whatever snapshot it was working on.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.print(ESC + "?25h");
+        out.flush();
+    }
+    
+    /**
+     * Returns true once the last published snapshot has been picked up, so the
+     * simulation only builds snapshots as fast as they can be drawn.
+     */
+    public boolean wantsSnapshot() {
+        return wantsSnapshot;
+    }
+    
+    public void publish(StateSnapshot snapshot) {
+        wantsSnapshot = false;
+        latest = snapshot;
+    }
+    
+    @Override
+    public void run() {
+        out.print(ESC + "?25l" + ESC + "H" + ESC + "2J");
+        long nextFrame = System.nanoTime();
+        
+        while (running) {
+            StateSnapshot snapshot = latest;
+            wantsSnapshot = true;
+            if (snapshot != null && snapshot != drawn) {
+                draw(snapshot);
+                drawn = snapshot;
+            }
+            
+            nextFrame += frameNanos;
+            long sleep = nextFrame - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+    
+    private void draw(StateSnapshot snapshot) {
+        table.setLength(0);
+        snapshot.appendTable(table);
+        frame.setLength(0);
+        
+        int row = 0;
+        int lineStart = 0;
+        for (int i = 0; i < table.length(); i++) {
+            if (table.charAt(i) == '\n') {
+                diffRow(row++, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        
+        // Wipe rows left over from a taller previous frame
+        for (int r = row; r < screenRows; r++) {
+            if (screenLengths[r] > 0) {
+                moveTo(r, 0);
+                frame.append(ESC).append('K');
+                screenLengths[r] = 0;
+            }
+        }
+        screenRows = row;
+        
+        if (frame.length() > 0) {
+            out.append(frame);
+            out.flush();
+        }
+    }
+    
+    private void diffRow(int row, int start, int end) {
+        ensureRow(row, end - start);
+        char[] previous = screen[row];
+        int previousLength = screenLengths[row];
+        int length = end - start;
+        
+        int col = 0;
+        while (col < length) {
+            if (col < previousLength && previous[col] == table.charAt(start + col)) {
+                col++;
+                continue;
+            }
+            int runStart = col;
+            while (col < length && (col >= previousLength || previous[col] != table.charAt(start + col))) {
+                previous[col] = table.charAt(start + col);
+                col++;
+            }
+            moveTo(row, runStart);
+            frame.append(table, start + runStart, start + col);
+        }
+        
+        if (length < previousLength) {
+            moveTo(row, length);
+            frame.append(ESC).append('K');
+        }
+        screenLengths[row] = length;
+    }
+    
+    private void ensureRow(int row, int length) {
+        if (row >= screen.length) {
+            int rows = Math.max(row + 1, screen.length * 2);
+            screen = Arrays.copyOf(screen, rows);
+            screenLengths = Arrays.copyOf(screenLengths, rows);
+        }
+        if (screen[row] == null || screen[row].length < length) {
+            char[] grown = new char[Math.max(length, 64)];
+            if (screen[row] != null) {
+                System.arraycopy(screen[row], 0, grown, 0, screenLengths[row]);
+            }
+            screen[row] = grown;
+        }
+    }
+    
+    private void moveTo(int row, int col) {
+        frame.append(ESC).append(row + 1).append(';').append(col + 1).append('H');
+    }
+}
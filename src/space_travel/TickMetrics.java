@@ -0,0 +1,272 @@
+/**
+ * <p>
+ * This class measures where the time of each simulated tick goes. Every phase of the
+ * loop is timed with System.nanoTime() into its own histogram, departures, arrivals,
+ * destructions and deaths are counted, and the bytes the simulation thread allocates
+ * per tick are recorded too. Each phase and each ship departure, arrival or destruction
+ * is also sent to Java Flight Recorder as an event, which costs nothing unless a
+ * recording is running. A simulation without a TickMetrics does none of this work.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+public class TickMetrics {
+    /**
+     * The parts of a tick that are timed separately.
+     */
+    public enum Phase {
+        PEOPLE("People"),
+        PLANETS("Planets"),
+        SHIPS("Ships"),
+        COMPLETION("Completion"),
+        RENDER("Render"),
+        OUTPUT("Output"),
+        INGEST("Ingest");
+        
+        private final String label;
+        
+        Phase(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private static final Phase[] PHASES = Phase.values();
+    
+    private final Histogram[] phases = new Histogram[PHASES.length];
+    private final Histogram ticks = new Histogram();
+    private final Histogram allocations = new Histogram();
+    private final LongAdder departures = new LongAdder();
+    private final LongAdder arrivals = new LongAdder();
+    private final LongAdder destructions = new LongAdder();
+    private long deaths;
+    private final com.sun.management.ThreadMXBean threads;
+    private int hour;
+    private long tickStart;
+    private long allocatedAtStart;
+    
+    public TickMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+        threads = allocationCounter();
+    }
+    
+    // Null when the JVM cannot count the bytes a thread allocates
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+    
+    /**
+     * Starts a tick.
+     * 
+     * @param hour The simulation hour the tick ends on
+     * @return The current System.nanoTime(), to pass to the first lap()
+     */
+    public long beginTick(int hour) {
+        this.hour = hour;
+        if (threads != null) {
+            allocatedAtStart = threads.getCurrentThreadAllocatedBytes();
+        }
+        tickStart = System.nanoTime();
+        return tickStart;
+    }
+    
+    /**
+     * Ends a phase that started at the given time.
+     * 
+     * @param phase The phase that just finished
+     * @param since When it started, as returned by beginTick() or the previous lap()
+     * @return The current System.nanoTime(), which is when the next phase starts
+     */
+    public long lap(Phase phase, long since) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].record(now - since);
+        
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.getLabel();
+            event.hour = hour;
+            event.elapsed = now - since;
+            event.commit();
+        }
+        return now;
+    }
+    
+    public void endTick() {
+        ticks.record(System.nanoTime() - tickStart);
+        if (threads != null) {
+            allocations.record(threads.getCurrentThreadAllocatedBytes() - allocatedAtStart);
+        }
+    }
+    
+    /**
+     * Counts a departure. Like arrivals and destructions, this can be called from
+     * several threads at once in a parallel run.
+     */
+    public void departed(Spaceship ship) {
+        departures.increment();
+        shipEvent(ship, "Departed");
+    }
+    
+    public void arrived(Spaceship ship) {
+        arrivals.increment();
+        shipEvent(ship, "Arrived");
+    }
+    
+    public void destroyed(Spaceship ship) {
+        destructions.increment();
+        shipEvent(ship, "Destroyed");
+    }
+    
+    private void shipEvent(Spaceship ship, String transition) {
+        ShipEvent event = new ShipEvent();
+        if (event.shouldCommit()) {
+            event.ship = ship.getName();
+            event.transition = transition;
+            event.hour = hour;
+            event.passengers = ship.getPassengers().size();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Counts a death. Deaths are only ever handled on the simulation thread.
+     */
+    public void died() {
+        deaths++;
+    }
+    
+    public Histogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+    
+    public Histogram getTicks() {
+        return ticks;
+    }
+    
+    public Histogram getAllocations() {
+        return allocations;
+    }
+    
+    public long getDepartures() {
+        return departures.sum();
+    }
+    
+    public long getArrivals() {
+        return arrivals.sum();
+    }
+    
+    public long getDestructions() {
+        return destructions.sum();
+    }
+    
+    public long getDeaths() {
+        return deaths;
+    }
+    
+    public void print() {
+        printTo(System.out);
+    }
+    
+    /**
+     * Writes the summary to a file instead of the console.
+     * 
+     * @param file The file to write; it is replaced if it exists
+     */
+    public void write(Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            printTo(out);
+        }
+    }
+    
+    public void printTo(PrintStream out) {
+        out.println("Tick timings over " + ticks.getCount() + " ticks (microseconds):");
+        out.printf("%-12s %10s %10s %10s %10s %10s %10s %12s%n", "Phase", "Mean", "p50", "p90", "p99", "p99.9", "Max", "Total ms");
+        for (Phase phase : PHASES) {
+            printTimes(out, phase.getLabel(), phases[phase.ordinal()]);
+        }
+        printTimes(out, "Tick", ticks);
+        
+        out.println("\nEvents:");
+        printCount(out, "Departures", getDepartures());
+        printCount(out, "Arrivals", getArrivals());
+        printCount(out, "Destroyed", getDestructions());
+        printCount(out, "Deaths", deaths);
+        
+        if (threads == null) {
+            out.println("\nAllocated bytes per tick: not supported by this JVM");
+            return;
+        }
+        out.println("\nAllocated bytes per tick (simulation thread):");
+        out.printf("%12s %12s %12s %12s %16s%n", "Mean", "p50", "p99", "Max", "Total");
+        out.printf("%12.0f %12d %12d %12d %16d%n", allocations.getMean(), allocations.getPercentile(50),
+                allocations.getPercentile(99), allocations.getMax(), allocations.getSum());
+    }
+    
+    private void printCount(PrintStream out, String label, long total) {
+        out.printf("%-12s %10d  (%.3f per tick)%n", label, total, ticks.getCount() == 0 ? 0 : (double) total / ticks.getCount());
+    }
+    
+    private static void printTimes(PrintStream out, String label, Histogram times) {
+        out.printf("%-12s %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %12.1f%n", label,
+                times.getMean() / 1e3, times.getPercentile(50) / 1e3, times.getPercentile(90) / 1e3,
+                times.getPercentile(99) / 1e3, times.getPercentile(99.9) / 1e3, times.getMax() / 1e3,
+                times.getSum() / 1e6);
+    }
+    
+    @Name("space_travel.Phase")
+    @Label("Simulation Phase")
+    @Category("Space Travel")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        
+        @Label("Hour")
+        int hour;
+        
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+    
+    @Name("space_travel.ShipTransition")
+    @Label("Ship Transition")
+    @Category("Space Travel")
+    static class ShipEvent extends Event {
+        @Label("Ship")
+        String ship;
+        
+        @Label("Transition")
+        String transition;
+        
+        @Label("Hour")
+        int hour;
+        
+        @Label("Passengers")
+        int passengers;
+    }
+}
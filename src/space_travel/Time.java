@@ -4,44 +4,32 @@
  * <p>
  * This class manages time and date progression based on a planet's day length.
  * It handles different day lengths for different planets and advances time accordingly.
+ * Time is kept as a single count of hours since day zero of the calendar (01.01.0000);
+ * the day, month and year are only worked out when a date is actually displayed.
  * </p>
  */
 
 package space_travel;
 
 public class Time {
-    private int day;
-    private int month;
-    private int year;
-    private int hour;
-    private int dayLength;
+    private long epochHour;
+    private final int dayLength;
+    private long formattedDay = Long.MIN_VALUE;
+    private String formattedDate;
     private static final int DAYS_PER_MONTH = 30;
+    private static final int MONTHS_PER_YEAR = 12;
     
     public Time(String date, int dayLength) {
-        String[] parts = date.split("\\.");
-        this.day = Integer.parseInt(parts[0]);
-        this.month = Integer.parseInt(parts[1]);
-        this.year = Integer.parseInt(parts[2]);
-        this.hour = 0;
+        this(parseDay(date) * dayLength, dayLength);
+    }
+    
+    public Time(long epochHour, int dayLength) {
+        this.epochHour = epochHour;
         this.dayLength = dayLength;
     }
     
     public void increaseHour() {
-        hour++;
-        if (hour >= dayLength) {
-            hour = 0;
-            day++;
-            
-            if (day > DAYS_PER_MONTH) {
-                day = 1;
-                month++;
-                
-                if (month > 12) {
-                    month = 1;
-                    year++;
-                }
-            }
-        }
+        epochHour++;
     }
     
     /**
@@ -50,32 +38,31 @@ public class Time {
      * 
      * @param hours The number of hours to add
      */
-    public void addHours(int hours) {
-        int totalHours = hour + hours;
-        
-        int daysToAdd = totalHours / dayLength;
-        
-        hour = totalHours % dayLength;
-        
-        day += daysToAdd;
-        
-        while (day > DAYS_PER_MONTH) {
-            day -= DAYS_PER_MONTH;
-            month++;
-            
-            if (month > 12) {
-                month = 1;
-                year++;
-            }
-        }
+    public void addHours(long hours) {
+        epochHour += hours;
+    }
+    
+    public long getEpochHour() {
+        return epochHour;
+    }
+    
+    public long getEpochDay() {
+        return Math.floorDiv(epochHour, dayLength);
     }
     
     public String getDate() {
-        return String.format("%02d.%02d.%d", day, month, year);
+        long day = getEpochDay();
+        if (day != formattedDay) {
+            formattedDate = formatDate(day);
+            formattedDay = day;
+        }
+        return formattedDate;
     }
     
     public String getHour() {
-        return String.format("%02d:00", hour);
+        StringBuilder sb = new StringBuilder(5);
+        appendTwoDigits(sb, Math.floorMod(epochHour, dayLength));
+        return sb.append(":00").toString();
     }
     
     public String getFullTime() {
@@ -83,10 +70,88 @@ public class Time {
     }
     
     public boolean dateMatches(String date) {
-        return getDate().equals(date);
+        return getEpochDay() == parseDay(date);
+    }
+    
+    public boolean isOnDay(long epochDay) {
+        return getEpochDay() == epochDay;
+    }
+    
+    /**
+     * Returns how many hours have to pass before this clock first shows the given day,
+     * or -1 if that never happens because the day is already behind us.
+     * 
+     * @param epochDay The day as returned by parseDay
+     * @return The number of hours until the day is reached, or -1
+     */
+    public long hoursUntil(long epochDay) {
+        long hours = Math.max(1, epochDay * dayLength - epochHour);
+        return epochHour + hours < (epochDay + 1) * dayLength ? hours : -1;
     }
     
     public int getDayLength() {
         return dayLength;
     }
+    
+    /**
+     * Converts a date in dd.MM.yyyy format to a day count since 01.01.0000,
+     * with 30-day months and 12-month years.
+     * 
+     * @param date The date to convert
+     * @return The day number of the date
+     * @throws NumberFormatException if the date is not in dd.MM.yyyy format
+     */
+    public static long parseDay(CharSequence date) {
+        long day = 0;
+        long month = 0;
+        long value = 0;
+        int field = 0;
+        boolean digits = false;
+        
+        for (int i = 0; i < date.length(); i++) {
+            char c = date.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (c == '.' && digits && field < 2) {
+                if (field == 0) day = value;
+                else month = value;
+                field++;
+                value = 0;
+                digits = false;
+            } else {
+                throw new NumberFormatException("Invalid date: \"" + date + "\"");
+            }
+        }
+        if (field != 2 || !digits) {
+            throw new NumberFormatException("Invalid date: \"" + date + "\"");
+        }
+        
+        return toDay(day, month, value);
+    }
+    
+    public static long toDay(long day, long month, long year) {
+        return (year * MONTHS_PER_YEAR + (month - 1)) * DAYS_PER_MONTH + (day - 1);
+    }
+    
+    /**
+     * Formats a day number as returned by parseDay back to dd.MM.yyyy.
+     * 
+     * @param epochDay The day number
+     * @return The formatted date
+     */
+    public static String formatDate(long epochDay) {
+        long months = Math.floorDiv(epochDay, DAYS_PER_MONTH);
+        StringBuilder sb = new StringBuilder(10);
+        appendTwoDigits(sb, Math.floorMod(epochDay, DAYS_PER_MONTH) + 1);
+        sb.append('.');
+        appendTwoDigits(sb, Math.floorMod(months, MONTHS_PER_YEAR) + 1);
+        sb.append('.');
+        return sb.append(Math.floorDiv(months, MONTHS_PER_YEAR)).toString();
+    }
+    
+    private static void appendTwoDigits(StringBuilder sb, long value) {
+        if (value < 10) sb.append('0');
+        sb.append(value);
+    }
 }
@@ -0,0 +1,526 @@
+/**
+ * <p>
+ * This class exports the state of a run as a time series: one row every few hours with
+ * the hour, each planet's population and date and each ship's status and hours
+ * remaining. The simulation copies the numbers of a row into a chunk of columns, one
+ * int array per chunk, and a background thread turns full chunks into bytes and writes
+ * them, so the simulation never formats or writes anything. There are only a few
+ * chunks and they are reused, which keeps memory use the same however long the run is.
+ * </p>
+ * <p>
+ * A file whose name ends in .csv gets one CSV line per row. Any other file is written in
+ * a columnar format that TimeSeriesReader reads back: after a header naming the planets
+ * and ships, each chunk stores its columns one after the other, every value as the
+ * difference from the one above it. Both can be compressed, the CSV as one gzip stream
+ * and the columnar format chunk by chunk.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public class TimeSeriesExporter implements Runnable {
+    static final int MAGIC = 0x53545453; // "STTS"
+    static final int VERSION = 1;
+    
+    // A chunk holds at most this many values, and rows, so a run with many ships does
+    // not need huge chunks
+    private static final int CHUNK_VALUES = 1 << 20;
+    private static final int MAX_CHUNK_ROWS = 4096;
+    // One chunk is filled while the others wait to be written or are being written
+    private static final int CHUNKS = 3;
+    
+    private final Path file;
+    private final int interval;
+    private final boolean compress;
+    private final boolean csv;
+    
+    private List<Planet> planets;
+    private List<Spaceship> ships;
+    private int columns;
+    private int chunkRows;
+    
+    // The state at the hour it was last read, which rows for later hours are worked out from
+    private int stateHour;
+    private int[] populations;
+    private long[] epochHours;
+    private int[] dayLengths;
+    private int[] shipStates;
+    private int[] remaining;
+    
+    private int nextHour;
+    private int lastRowHour = -1;
+    private Chunk chunk;
+    private BlockingQueue<Chunk> free;
+    private BlockingQueue<Chunk> full;
+    private Thread thread;
+    private OutputStream out;
+    
+    // Handed to the writer thread after the last chunk to make it stop
+    private static final Chunk END = new Chunk(0);
+    
+    /**
+     * A block of rows stored column by column: the value in row r of column c is at
+     * c * capacity + r.
+     */
+    static final class Chunk {
+        final int[] values;
+        int rows;
+        
+        Chunk(int size) {
+            this.values = new int[size];
+        }
+    }
+    
+    /**
+     * @param file The file to write; it is replaced if it exists
+     * @param interval Write a row every this many hours
+     * @param compress true to compress the file
+     */
+    public TimeSeriesExporter(Path file, int interval, boolean compress) {
+        this.file = file;
+        this.interval = interval;
+        this.compress = compress;
+        this.csv = file.getFileName().toString().endsWith(".csv");
+    }
+    
+    /**
+     * Creates the file, writes the header, starts the writer thread and records the
+     * first row.
+     * 
+     * @param planets The planets, in column order
+     * @param ships The ships, in column order
+     * @param hour The current simulation hour
+     */
+    public void start(List<Planet> planets, List<Spaceship> ships, int hour) throws IOException {
+        this.planets = planets;
+        this.ships = ships;
+        columns = 1 + 2 * planets.size() + 2 * ships.size();
+        chunkRows = Math.max(1, Math.min(MAX_CHUNK_ROWS, CHUNK_VALUES / columns));
+        
+        populations = new int[planets.size()];
+        epochHours = new long[planets.size()];
+        dayLengths = new int[planets.size()];
+        shipStates = new int[ships.size()];
+        remaining = new int[ships.size()];
+        
+        String[] planetNames = new String[planets.size()];
+        String[] shipNames = new String[ships.size()];
+        for (int i = 0; i < planetNames.length; i++) {
+            planetNames[i] = planets.get(i).getName();
+        }
+        for (int i = 0; i < shipNames.length; i++) {
+            shipNames[i] = ships.get(i).getName();
+        }
+        
+        OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        try {
+            if (csv) {
+                out = compress ? new GZIPOutputStream(stream, 1 << 16) : stream;
+                out.write(CsvWriter.header(planetNames, shipNames));
+            } else {
+                out = stream;
+                writeHeader(new DataOutputStream(out), planetNames, shipNames);
+            }
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        
+        free = new ArrayBlockingQueue<>(CHUNKS);
+        full = new ArrayBlockingQueue<>(CHUNKS);
+        for (int i = 1; i < CHUNKS; i++) {
+            free.add(new Chunk(columns * chunkRows));
+        }
+        chunk = new Chunk(columns * chunkRows);
+        
+        thread = new Thread(this, "timeseries-writer");
+        thread.setDaemon(true);
+        thread.start();
+        
+        readState(hour);
+        addRow(hour);
+        nextHour = (hour / interval + 1) * interval;
+    }
+    
+    private void writeHeader(DataOutputStream header, String[] planetNames, String[] shipNames) throws IOException {
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeBoolean(compress);
+        header.writeInt(planetNames.length);
+        for (String name : planetNames) {
+            header.writeUTF(name);
+        }
+        header.writeInt(shipNames.length);
+        for (String name : shipNames) {
+            header.writeUTF(name);
+        }
+        header.flush();
+    }
+    
+    /**
+     * Writes the rows that fall on the hours the event-driven engine is about to skip.
+     * Nothing but the clocks changes in between, so they are worked out from the state
+     * right now.
+     * 
+     * @param hour The current simulation hour
+     * @param until The hour the simulation jumps to; its row is left to record()
+     */
+    public void skip(int hour, int until) {
+        if (nextHour >= until) {
+            return;
+        }
+        readState(hour);
+        for (; nextHour < until; nextHour += interval) {
+            addRow(nextHour);
+        }
+    }
+    
+    /**
+     * Writes a row for the current hour if one is due.
+     * 
+     * @param hour The current simulation hour
+     */
+    public void record(int hour) {
+        if (hour < nextHour) {
+            return;
+        }
+        readState(hour);
+        addRow(hour);
+        nextHour = (hour / interval + 1) * interval;
+    }
+    
+    /**
+     * Writes the final row unless there already is one for this hour, then writes
+     * everything still waiting, closes the file and stops the writer thread.
+     * 
+     * @param hour The hour the run ended on
+     */
+    public void finish(int hour) {
+        if (lastRowHour != hour) {
+            readState(hour);
+            addRow(hour);
+        }
+        if (chunk.rows > 0) {
+            handOver(chunk);
+        }
+        handOver(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void readState(int hour) {
+        stateHour = hour;
+        for (int i = 0; i < populations.length; i++) {
+            Planet planet = planets.get(i);
+            populations[i] = planet.getPopulation().size();
+            epochHours[i] = planet.getTime().getEpochHour();
+            dayLengths[i] = planet.getTime().getDayLength();
+        }
+        for (int i = 0; i < shipStates.length; i++) {
+            Spaceship ship = ships.get(i);
+            shipStates[i] = ship.getState();
+            remaining[i] = ship.getRemainingTravelTime();
+        }
+    }
+    
+    // Adds the row for an hour at or after the state's hour; only the clocks move on
+    private void addRow(int hour) {
+        int ahead = hour - stateHour;
+        int[] values = chunk.values;
+        int row = chunk.rows;
+        int column = 0;
+        values[column++ * chunkRows + row] = hour;
+        for (int i = 0; i < populations.length; i++) {
+            values[column++ * chunkRows + row] = populations[i];
+            values[column++ * chunkRows + row] = (int) Math.floorDiv(epochHours[i] + ahead, dayLengths[i]);
+        }
+        for (int i = 0; i < shipStates.length; i++) {
+            int state = shipStates[i];
+            values[column++ * chunkRows + row] = state;
+            values[column++ * chunkRows + row] = state == EventJournal.SHIP_IN_TRANSIT ? remaining[i] - ahead
+                    : state == EventJournal.SHIP_WAITING ? remaining[i] : 0;
+        }
+        lastRowHour = hour;
+        
+        if (++chunk.rows == chunkRows) {
+            handOver(chunk);
+            try {
+                chunk = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                chunk = new Chunk(columns * chunkRows);
+            }
+            chunk.rows = 0;
+        }
+    }
+    
+    // Only waits if the writer is a whole queue of chunks behind
+    private void handOver(Chunk chunk) {
+        try {
+            full.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public void run() {
+        CsvWriter csvWriter = csv ? new CsvWriter(planets.size(), ships.size()) : null;
+        ColumnEncoder encoder = csv ? null : new ColumnEncoder(compress);
+        boolean failed = false;
+        
+        while (true) {
+            Chunk next;
+            try {
+                next = full.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (next == END) {
+                break;
+            }
+            
+            // After a write error the rest is dropped, so the simulation never blocks
+            if (!failed) {
+                try {
+                    if (csv) {
+                        csvWriter.write(out, next.values, chunkRows, next.rows);
+                    } else {
+                        encoder.write(out, next.values, chunkRows, next.rows, columns);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not write time series '" + file + "': " + e.getMessage());
+                    failed = true;
+                }
+            }
+            free.offer(next);
+        }
+        
+        if (encoder != null) {
+            encoder.end();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (!failed) {
+                System.err.println("Warning: Could not close time series '" + file + "': " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Turns chunks into CSV lines through one reusable byte buffer. Numbers and dates
+     * are written digit by digit and statuses are encoded once, so nothing is formatted
+     * per value.
+     */
+    static final class CsvWriter {
+        private static final byte[][] STATUSES = new byte[Simulation.SHIP_STATUSES.length][];
+        static {
+            for (int i = 0; i < STATUSES.length; i++) {
+                STATUSES[i] = Simulation.SHIP_STATUSES[i].getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+        
+        // No value takes more than this many bytes, separator included
+        private static final int MAX_VALUE_BYTES = 24;
+        
+        private final int planets;
+        private final int ships;
+        private final int maxLine;
+        private final byte[] buffer;
+        private final byte[] digits = new byte[20];
+        private int length;
+        
+        CsvWriter(int planets, int ships) {
+            this.planets = planets;
+            this.ships = ships;
+            this.maxLine = MAX_VALUE_BYTES * (1 + 2 * planets + 2 * ships) + 1;
+            this.buffer = new byte[Math.max(1 << 16, maxLine)];
+        }
+        
+        /**
+         * Returns the header line: the hour, then a population and a date column per
+         * planet, then a status and a remaining hours column per ship.
+         */
+        static byte[] header(String[] planetNames, String[] shipNames) {
+            StringBuilder line = new StringBuilder("hour");
+            for (String name : planetNames) {
+                appendName(line.append(','), name + " population");
+                appendName(line.append(','), name + " date");
+            }
+            for (String name : shipNames) {
+                appendName(line.append(','), name + " status");
+                appendName(line.append(','), name + " remaining");
+            }
+            return line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+        }
+        
+        private static void appendName(StringBuilder line, String column) {
+            if (column.indexOf(',') < 0 && column.indexOf('"') < 0 && column.indexOf('\n') < 0) {
+                line.append(column);
+                return;
+            }
+            line.append('"').append(column.replace("\"", "\"\"")).append('"');
+        }
+        
+        /**
+         * Writes the rows of a chunk. A destroyed ship has no hours remaining, so that
+         * cell is left empty.
+         * 
+         * @param values The chunk, column by column
+         * @param capacity How many rows each column has room for
+         * @param rows How many rows are filled in
+         */
+        void write(OutputStream out, int[] values, int capacity, int rows) throws IOException {
+            for (int row = 0; row < rows; row++) {
+                if (buffer.length - length < maxLine) {
+                    out.write(buffer, 0, length);
+                    length = 0;
+                }
+                int column = 0;
+                putInt(values[column++ * capacity + row]);
+                for (int i = 0; i < planets; i++) {
+                    buffer[length++] = ',';
+                    putInt(values[column++ * capacity + row]);
+                    buffer[length++] = ',';
+                    putDate(values[column++ * capacity + row]);
+                }
+                for (int i = 0; i < ships; i++) {
+                    int state = values[column++ * capacity + row];
+                    int hours = values[column++ * capacity + row];
+                    buffer[length++] = ',';
+                    byte[] status = STATUSES[state];
+                    System.arraycopy(status, 0, buffer, length, status.length);
+                    length += status.length;
+                    buffer[length++] = ',';
+                    if (state != EventJournal.SHIP_DESTROYED) {
+                        putInt(hours);
+                    }
+                }
+                buffer[length++] = '\n';
+            }
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+        
+        private void putInt(long value) {
+            if (value < 0) {
+                buffer[length++] = '-';
+                value = -value;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            while (count > 0) {
+                buffer[length++] = digits[--count];
+            }
+        }
+        
+        private void putTwoDigits(long value) {
+            buffer[length++] = (byte) ('0' + value / 10);
+            buffer[length++] = (byte) ('0' + value % 10);
+        }
+        
+        // The same dd.MM.yyyy as Time.formatDate()
+        private void putDate(int epochDay) {
+            long months = Math.floorDiv(epochDay, 30);
+            putTwoDigits(Math.floorMod(epochDay, 30) + 1);
+            buffer[length++] = '.';
+            putTwoDigits(Math.floorMod(months, 12) + 1);
+            buffer[length++] = '.';
+            putInt(Math.floorDiv(months, 12));
+        }
+    }
+    
+    /**
+     * Writes chunks in the columnar format. Each chunk is its row count, the number of
+     * bytes its columns take before and after compression, and then the columns, every
+     * value stored as a zigzag varint of its difference from the value above it. Most
+     * columns barely change from hour to hour, so most values take a single byte.
+     */
+    static final class ColumnEncoder {
+        private final Deflater deflater;
+        private byte[] raw = new byte[1 << 16];
+        private byte[] packed = new byte[1 << 16];
+        private final byte[] sizes = new byte[12];
+        
+        ColumnEncoder(boolean compress) {
+            this.deflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+        }
+        
+        void write(OutputStream out, int[] values, int capacity, int rows, int columns) throws IOException {
+            int needed = 5 * rows * columns;
+            if (raw.length < needed) {
+                raw = new byte[needed];
+            }
+            int length = 0;
+            for (int column = 0; column < columns; column++) {
+                int previous = 0;
+                for (int row = 0, at = column * capacity; row < rows; row++, at++) {
+                    int delta = values[at] - previous;
+                    previous = values[at];
+                    int zigzag = (delta << 1) ^ (delta >> 31);
+                    while ((zigzag & ~0x7F) != 0) {
+                        raw[length++] = (byte) (zigzag & 0x7F | 0x80);
+                        zigzag >>>= 7;
+                    }
+                    raw[length++] = (byte) zigzag;
+                }
+            }
+            
+            byte[] stored = raw;
+            int storedLength = length;
+            if (deflater != null) {
+                deflater.reset();
+                deflater.setInput(raw, 0, length);
+                deflater.finish();
+                storedLength = 0;
+                while (!deflater.finished()) {
+                    if (storedLength == packed.length) {
+                        packed = Arrays.copyOf(packed, 2 * packed.length);
+                    }
+                    storedLength += deflater.deflate(packed, storedLength, packed.length - storedLength);
+                }
+                stored = packed;
+            }
+            
+            putInt(sizes, 0, rows);
+            putInt(sizes, 4, length);
+            putInt(sizes, 8, storedLength);
+            out.write(sizes);
+            out.write(stored, 0, storedLength);
+        }
+        
+        private static void putInt(byte[] bytes, int at, int value) {
+            bytes[at] = (byte) (value >>> 24);
+            bytes[at + 1] = (byte) (value >>> 16);
+            bytes[at + 2] = (byte) (value >>> 8);
+            bytes[at + 3] = (byte) value;
+        }
+        
+        void end() {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+}
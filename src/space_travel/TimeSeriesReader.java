@@ -0,0 +1,216 @@
+/**
+ * <p>
+ * This class reads a time series written by TimeSeriesExporter in its columnar format.
+ * Chunks are decoded one at a time into the same column layout the exporter filled in,
+ * so a series of any length is read in constant memory. From the command line it
+ * converts the file to CSV, with the same lines the exporter writes to a .csv file.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class TimeSeriesReader implements Closeable {
+    private final DataInputStream in;
+    private final boolean compressed;
+    private final String[] planetNames;
+    private final String[] shipNames;
+    private final int columns;
+    private final Inflater inflater = new Inflater();
+    private byte[] stored = new byte[1 << 16];
+    private byte[] raw = new byte[1 << 16];
+    private int[] values = new int[0];
+    private int rows;
+    
+    /**
+     * Opens a time series and reads its header.
+     * 
+     * @throws IOException if the file cannot be read or is not a columnar time series
+     */
+    public TimeSeriesReader(Path file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != TimeSeriesExporter.MAGIC) {
+                throw new IOException("not a columnar time series");
+            }
+            int version = in.readInt();
+            if (version != TimeSeriesExporter.VERSION) {
+                throw new IOException("unsupported time series version " + version);
+            }
+            compressed = in.readBoolean();
+            planetNames = new String[in.readInt()];
+            for (int i = 0; i < planetNames.length; i++) {
+                planetNames[i] = in.readUTF();
+            }
+            shipNames = new String[in.readInt()];
+            for (int i = 0; i < shipNames.length; i++) {
+                shipNames[i] = in.readUTF();
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        columns = 1 + 2 * planetNames.length + 2 * shipNames.length;
+    }
+    
+    public int getPlanetCount() {
+        return planetNames.length;
+    }
+    
+    public String getPlanetName(int planet) {
+        return planetNames[planet];
+    }
+    
+    public int getShipCount() {
+        return shipNames.length;
+    }
+    
+    public String getShipName(int ship) {
+        return shipNames[ship];
+    }
+    
+    /**
+     * Reads the next chunk. Its values are then available from getValue() until the
+     * next call.
+     * 
+     * @return false at the end of the file
+     * @throws IOException if the chunk cannot be read or is damaged
+     */
+    public boolean nextChunk() throws IOException {
+        int count;
+        try {
+            count = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        int rawLength = in.readInt();
+        int storedLength = in.readInt();
+        if (count <= 0 || rawLength < 0 || storedLength < 0 || (long) count * columns > Integer.MAX_VALUE) {
+            throw new IOException("damaged chunk");
+        }
+        
+        if (stored.length < storedLength) {
+            stored = new byte[storedLength];
+        }
+        in.readFully(stored, 0, storedLength);
+        byte[] bytes = stored;
+        if (compressed) {
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+            }
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLength);
+            try {
+                if (inflater.inflate(raw, 0, rawLength) != rawLength) {
+                    throw new IOException("damaged chunk");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("damaged chunk: " + e.getMessage());
+            }
+            bytes = raw;
+        } else if (storedLength != rawLength) {
+            throw new IOException("damaged chunk");
+        }
+        
+        rows = count;
+        if (values.length < rows * columns) {
+            values = new int[rows * columns];
+        }
+        decode(bytes, rawLength);
+        return true;
+    }
+    
+    private void decode(byte[] bytes, int length) throws IOException {
+        int at = 0;
+        for (int column = 0; column < columns; column++) {
+            int previous = 0;
+            for (int row = 0; row < rows; row++) {
+                int zigzag = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (at == length || shift > 28) {
+                        throw new IOException("damaged chunk");
+                    }
+                    b = bytes[at++];
+                    zigzag |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                values[column * rows + row] = previous;
+            }
+        }
+        for (int ship = 0; ship < shipNames.length; ship++) {
+            int column = 1 + 2 * planetNames.length + 2 * ship;
+            for (int row = 0; row < rows; row++) {
+                int state = values[column * rows + row];
+                if (state < 0 || state >= Simulation.SHIP_STATUSES.length) {
+                    throw new IOException("damaged chunk");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns how many rows the current chunk has.
+     */
+    public int getRows() {
+        return rows;
+    }
+    
+    /**
+     * Returns a value of the current chunk. Column 0 is the hour, then each planet has
+     * a population and a date column, as an epoch day, and each ship a status column,
+     * as an EventJournal.SHIP_ constant, and a remaining hours column.
+     */
+    public int getValue(int row, int column) {
+        return values[column * rows + row];
+    }
+    
+    /**
+     * Writes the rest of the series as CSV, header line first.
+     */
+    public void writeCsv(OutputStream out) throws IOException {
+        out.write(TimeSeriesExporter.CsvWriter.header(planetNames, shipNames));
+        TimeSeriesExporter.CsvWriter csv = new TimeSeriesExporter.CsvWriter(planetNames.length, shipNames.length);
+        while (nextChunk()) {
+            csv.write(out, values, rows, rows);
+        }
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+    
+    /**
+     * Converts a columnar time series to CSV on the standard output, for example:
+     * <pre>
+     * TimeSeriesReader run.series > run.csv
+     * </pre>
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: TimeSeriesReader FILE");
+            return;
+        }
+        try (TimeSeriesReader reader = new TimeSeriesReader(Path.of(args[0]))) {
+            reader.writeCsv(new BufferedOutputStream(System.out, 1 << 16));
+        } catch (IOException e) {
+            System.err.println("Error reading time series '" + args[0] + "': " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,536 @@
+/**
+ * <p>
+ * This class answers questions about any hour of a run without simulating it. When it
+ * is built, it works out from the loaded scenario when every ship leaves, arrives or
+ * loses its passengers and who is on board, following the same rules and the same
+ * ship order as the hourly loop. Departures come from the departure dates, arrivals
+ * from the travel durations and deaths from the remaining lives. Only ship events are
+ * processed, never hours, so building it costs about as much as loading the scenario.
+ * </p>
+ * <p>
+ * Each planet keeps the hours people arrive on it and the hours they leave or die there
+ * as two sorted arrays, so its population at an hour is the number of arrivals up to
+ * that hour minus the number of departures, found by binary search. A person only keeps
+ * the ships they boarded, and a ship only the hours of its events and the sorted death
+ * hours of its passengers. Every query takes logarithmic time, whatever the hour.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class TimelineIndex {
+    /** What getPlanetAt() and getShipAt() return when the person is not there. */
+    public static final int NONE = -1;
+    
+    private final List<Planet> planets;
+    private final List<Spaceship> ships;
+    private final PersonStore people;
+    
+    private final long[] planetEpochHours;
+    private final int[] planetDayLengths;
+    // The hours people arrived on each planet and the hours they left it or died there
+    private final int[][] planetArrivals;
+    private final int[][] planetLeaves;
+    
+    // Planet indexes of each ship's planets, or NONE
+    private final int[] shipDepartures;
+    private final int[] shipDestinations;
+    // The hour each ship leaves, reaches its destination and has lost its last original
+    // passenger, or -1 if that never happens
+    private final int[] departureHours;
+    private final int[] arrivalHours;
+    private final int[] lossHours;
+    // The death hours of each ship's passengers when it leaves, sorted
+    private final int[][] passengerDeaths;
+    
+    private final int[] startPlanets;
+    // The ships each person boards, in order: those of person id are at
+    // boardingStarts[id] up to boardingStarts[id + 1]
+    private final int[] boardingStarts;
+    private final int[] boardings;
+    
+    /**
+     * Builds the index for a scenario that has not been simulated yet.
+     * 
+     * @param scenario The scenario, as loaded
+     */
+    public TimelineIndex(Scenario scenario) {
+        this.planets = scenario.getPlanets();
+        this.ships = scenario.getShips();
+        this.people = scenario.getPeople();
+        
+        planetEpochHours = new long[planets.size()];
+        planetDayLengths = new int[planets.size()];
+        int[] planetSymbols = new int[planets.size()];
+        // Like the simulation, a ship goes to the last planet of a name
+        Map<String, Integer> planetIndexes = new HashMap<>();
+        SymbolTable symbols = people.getSymbols();
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            planetEpochHours[i] = planet.getTime().getEpochHour();
+            planetDayLengths[i] = planet.getTime().getDayLength();
+            planetSymbols[i] = symbols.intern(planet.getName());
+            planetIndexes.put(planet.getName(), i);
+        }
+        
+        shipDepartures = new int[ships.size()];
+        shipDestinations = new int[ships.size()];
+        departureHours = new int[ships.size()];
+        arrivalHours = new int[ships.size()];
+        lossHours = new int[ships.size()];
+        passengerDeaths = new int[ships.size()][];
+        Arrays.fill(departureHours, -1);
+        Arrays.fill(arrivalHours, -1);
+        Arrays.fill(lossHours, -1);
+        
+        Builder builder = new Builder(planetSymbols);
+        
+        // A departure or arrival is keyed by hour, then ship, then departure before
+        // arrival, which is the order the hourly loop handles them in
+        PriorityQueue<Long> events = new PriorityQueue<>();
+        long perHour = 2L * ships.size();
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            shipDepartures[i] = planetIndexes.getOrDefault(ship.getDeparturePlanet(), NONE);
+            shipDestinations[i] = planetIndexes.getOrDefault(ship.getDestinationPlanet(), NONE);
+            if (shipDepartures[i] == NONE) continue;
+            
+            long hours = planets.get(shipDepartures[i]).getTime().hoursUntil(ship.getDepartureDay());
+            if (hours > 0 && hours <= Integer.MAX_VALUE) {
+                events.add(hours * perHour + 2 * i);
+            }
+        }
+        
+        int[][] boarded = new int[ships.size()][];
+        while (!events.isEmpty()) {
+            long event = events.poll();
+            int hour = (int) (event / perHour);
+            int i = (int) (event % perHour) / 2;
+            
+            if (event % 2 == 0) {
+                boarded[i] = builder.board(i, symbols.intern(ships.get(i).getName()), shipDepartures[i], hour);
+                departureHours[i] = hour;
+                
+                int[] deaths = new int[boarded[i].length];
+                for (int j = 0; j < deaths.length; j++) {
+                    deaths[j] = deathHour(boarded[i][j]);
+                }
+                Arrays.sort(deaths);
+                passengerDeaths[i] = deaths;
+                if (deaths.length > 0) {
+                    lossHours[i] = deaths[deaths.length - 1];
+                }
+                
+                if (shipDestinations[i] != NONE) {
+                    long arrival = (long) hour + Math.max(ships.get(i).getTravelDuration(), 1) - 1;
+                    // A ship whose passengers all die on the way never lets anyone off
+                    if (arrival <= Integer.MAX_VALUE && (deaths.length == 0 || lossHours[i] > arrival)) {
+                        events.add(arrival * perHour + 2 * i + 1);
+                    }
+                }
+            } else {
+                arrivalHours[i] = hour;
+                builder.arrive(boarded[i], shipDestinations[i], hour);
+                boarded[i] = null;
+            }
+        }
+        
+        startPlanets = builder.startPlanets;
+        planetArrivals = builder.sortedArrivals();
+        planetLeaves = builder.sortedLeaves();
+        boardingStarts = builder.boardingStarts();
+        boardings = builder.boardings(boardingStarts);
+    }
+    
+    /**
+     * Collects where everyone goes while the ship events are processed.
+     */
+    private class Builder {
+        final int[] planetSymbols;
+        final int[] startPlanets = new int[people.size()];
+        final int[] currentPlanets = new int[people.size()];
+        final IntList[] arrivals = new IntList[planets.size()];
+        final IntList[] leaves = new IntList[planets.size()];
+        // The people waiting on each planet, by the symbol id they are booked on
+        final Map<Long, IntList> waiting = new HashMap<>();
+        final IntList boardedIds = new IntList();
+        final IntList boardedShips = new IntList();
+        
+        Builder(int[] planetSymbols) {
+            this.planetSymbols = planetSymbols;
+            Arrays.fill(startPlanets, NONE);
+            Arrays.fill(currentPlanets, NONE);
+            for (int i = 0; i < arrivals.length; i++) {
+                arrivals[i] = new IntList();
+                leaves[i] = new IntList();
+                
+                // The population comes group by group, so the group only changes now and then
+                int symbol = SymbolTable.NONE;
+                IntList group = null;
+                for (int id : planets.get(i).getPopulationIds()) {
+                    if (group == null || people.getLocationId(id) != symbol) {
+                        symbol = people.getLocationId(id);
+                        group = group(i, symbol);
+                    }
+                    startPlanets[id] = i;
+                    currentPlanets[id] = i;
+                    arrivals[i].add(0);
+                    group.add(id);
+                }
+            }
+        }
+        
+        private IntList group(int planet, int symbol) {
+            return waiting.computeIfAbsent((long) planet << 32 | (symbol & 0xFFFFFFFFL), key -> new IntList());
+        }
+        
+        // Takes everyone still alive who waits for the ship on its planet on board
+        int[] board(int ship, int symbol, int planet, int hour) {
+            IntList group = waiting.remove((long) planet << 32 | (symbol & 0xFFFFFFFFL));
+            if (group == null) {
+                return new int[0];
+            }
+            IntList aboard = new IntList(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                int id = group.get(i);
+                // Those who died waiting stay counted on the planet until their death
+                if (deathHour(id) > hour) {
+                    aboard.add(id);
+                    leaves[planet].add(hour);
+                    currentPlanets[id] = NONE;
+                    boardedIds.add(id);
+                    boardedShips.add(ship);
+                }
+            }
+            return aboard.toArray();
+        }
+        
+        void arrive(int[] passengers, int planet, int hour) {
+            IntList group = group(planet, planetSymbols[planet]);
+            for (int id : passengers) {
+                if (deathHour(id) > hour) {
+                    currentPlanets[id] = planet;
+                    arrivals[planet].add(hour);
+                    group.add(id);
+                }
+            }
+        }
+        
+        // Events are processed in time order, so the arrivals already are sorted
+        int[][] sortedArrivals() {
+            int[][] sorted = new int[arrivals.length][];
+            for (int i = 0; i < arrivals.length; i++) {
+                sorted[i] = arrivals[i].toArray();
+                arrivals[i] = null;
+            }
+            return sorted;
+        }
+        
+        // Everyone who never leaves their last planet leaves it when they die. Only these
+        // death hours need sorting; the boardings before them are in time order
+        int[][] sortedLeaves() {
+            int[] boarded = new int[leaves.length];
+            for (int i = 0; i < leaves.length; i++) {
+                boarded[i] = leaves[i].size();
+            }
+            for (int id = 0; id < currentPlanets.length; id++) {
+                if (currentPlanets[id] != NONE) {
+                    leaves[currentPlanets[id]].add(deathHour(id));
+                }
+            }
+            
+            int[][] sorted = new int[leaves.length][];
+            for (int i = 0; i < leaves.length; i++) {
+                int[] hours = leaves[i].toArray();
+                leaves[i] = null;
+                Arrays.sort(hours, boarded[i], hours.length);
+                sorted[i] = merge(hours, boarded[i]);
+            }
+            return sorted;
+        }
+        
+        // Merges the two sorted runs before and after the split
+        private int[] merge(int[] hours, int split) {
+            if (split == 0 || split == hours.length || hours[split - 1] <= hours[split]) {
+                return hours;
+            }
+            int[] merged = new int[hours.length];
+            int left = 0;
+            int right = split;
+            for (int i = 0; i < merged.length; i++) {
+                if (right == hours.length || left < split && hours[left] <= hours[right]) {
+                    merged[i] = hours[left++];
+                } else {
+                    merged[i] = hours[right++];
+                }
+            }
+            return merged;
+        }
+        
+        int[] boardingStarts() {
+            int[] starts = new int[people.size() + 1];
+            for (int i = 0; i < boardedIds.size(); i++) {
+                starts[boardedIds.get(i) + 1]++;
+            }
+            for (int id = 0; id < people.size(); id++) {
+                starts[id + 1] += starts[id];
+            }
+            return starts;
+        }
+        
+        // Boardings are recorded in time order, which this keeps for each person
+        int[] boardings(int[] starts) {
+            int[] next = Arrays.copyOf(starts, people.size());
+            int[] ships = new int[boardedIds.size()];
+            for (int i = 0; i < boardedIds.size(); i++) {
+                ships[next[boardedIds.get(i)]++] = boardedShips.get(i);
+            }
+            return ships;
+        }
+    }
+    
+    /**
+     * Returns the hour a person dies, which is the first hour they are no longer
+     * anywhere. Nobody dies before hour 1.
+     */
+    public int getDeathHour(int id) {
+        return deathHour(id);
+    }
+    
+    private int deathHour(int id) {
+        return Math.max(people.getDeathHour(id), 1);
+    }
+    
+    /**
+     * Returns the last hour the run would get to: the hour the last ship arrives or is
+     * destroyed. Returns -1 if some ship never finishes, so the run never ends.
+     */
+    public int getEndHour() {
+        int end = 1;
+        for (int i = 0; i < ships.size(); i++) {
+            int finished = finishHour(i);
+            if (finished < 0) {
+                return -1;
+            }
+            end = Math.max(end, finished);
+        }
+        return end;
+    }
+    
+    private int finishHour(int ship) {
+        if (lossHours[ship] >= 0 && (arrivalHours[ship] < 0 || lossHours[ship] <= arrivalHours[ship])) {
+            return lossHours[ship];
+        }
+        return arrivalHours[ship];
+    }
+    
+    /**
+     * Returns how many people are on a planet at the end of an hour.
+     */
+    public int getPopulation(int planet, int hour) {
+        return countUpTo(planetArrivals[planet], hour) - countUpTo(planetLeaves[planet], hour);
+    }
+    
+    /**
+     * Returns a planet's local date at the end of an hour, in dd.MM.yyyy format.
+     */
+    public String getPlanetDate(int planet, int hour) {
+        return Time.formatDate(Math.floorDiv(planetEpochHours[planet] + hour, planetDayLengths[planet]));
+    }
+    
+    /**
+     * Returns the status a ship shows at the end of an hour, as one of the
+     * EventJournal.SHIP_ constants.
+     */
+    public int getShipState(int ship, int hour) {
+        if (departureHours[ship] < 0 || hour < departureHours[ship]) {
+            return EventJournal.SHIP_WAITING;
+        }
+        if (lossHours[ship] >= 0 && hour >= lossHours[ship]) {
+            return EventJournal.SHIP_DESTROYED;
+        }
+        if (arrivalHours[ship] >= 0 && hour >= arrivalHours[ship]) {
+            return EventJournal.SHIP_ARRIVED;
+        }
+        return EventJournal.SHIP_IN_TRANSIT;
+    }
+    
+    /**
+     * Returns how many people are on board a ship at the end of an hour.
+     */
+    public int getPassengers(int ship, int hour) {
+        if (getShipState(ship, hour) != EventJournal.SHIP_IN_TRANSIT) {
+            return 0;
+        }
+        int[] deaths = passengerDeaths[ship];
+        return deaths.length - countUpTo(deaths, hour);
+    }
+    
+    /**
+     * Returns the planet a person is on at the end of an hour, or NONE if they are on a
+     * ship, dead, or were never placed anywhere.
+     */
+    public int getPlanetAt(int id, int hour) {
+        if (hour >= deathHour(id)) {
+            return NONE;
+        }
+        int ship = lastBoarding(id, hour);
+        if (ship == NONE) {
+            return startPlanets[id];
+        }
+        return arrivalHours[ship] >= 0 && hour >= arrivalHours[ship] ? shipDestinations[ship] : NONE;
+    }
+    
+    /**
+     * Returns the ship a person is on board at the end of an hour, or NONE.
+     */
+    public int getShipAt(int id, int hour) {
+        if (hour >= deathHour(id)) {
+            return NONE;
+        }
+        int ship = lastBoarding(id, hour);
+        if (ship == NONE || arrivalHours[ship] >= 0 && hour >= arrivalHours[ship]) {
+            return NONE;
+        }
+        return ship;
+    }
+    
+    // The ship the person boarded last by the given hour, or NONE
+    private int lastBoarding(int id, int hour) {
+        int low = boardingStarts[id];
+        int high = boardingStarts[id + 1];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departureHours[boardings[middle]] <= hour) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == boardingStarts[id] ? NONE : boardings[low - 1];
+    }
+    
+    // How many of the sorted values are at most the given value
+    private static int countUpTo(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Describes where a person is at the end of an hour, such as "on planet A" or
+     * "aboard ship B".
+     */
+    public String describeLocation(int id, int hour) {
+        if (hour >= deathHour(id)) {
+            return "dead";
+        }
+        int ship = getShipAt(id, hour);
+        if (ship != NONE) {
+            return "aboard ship " + ships.get(ship).getName();
+        }
+        int planet = getPlanetAt(id, hour);
+        return planet == NONE ? "nowhere" : "on planet " + planets.get(planet).getName();
+    }
+    
+    /**
+     * Returns the store ids of everyone with the given name. This looks at every
+     * person, unlike the queries by hour.
+     */
+    public int[] findPeople(String name) {
+        IntList found = new IntList();
+        for (int id = 0; id < people.size(); id++) {
+            if (people.getName(id).equals(name)) {
+                found.add(id);
+            }
+        }
+        return found.toArray();
+    }
+    
+    /**
+     * Builds the state table the simulation would show at the end of an hour.
+     */
+    public StateSnapshot snapshotAt(int hour) {
+        String[] planetNames = new String[planets.size()];
+        String[] planetDates = new String[planets.size()];
+        int[] populations = new int[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            planetNames[i] = planets.get(i).getName();
+            planetDates[i] = getPlanetDate(i, hour);
+            populations[i] = getPopulation(i, hour);
+        }
+        
+        String[] shipNames = new String[ships.size()];
+        String[] statuses = new String[ships.size()];
+        String[] departures = new String[ships.size()];
+        String[] destinations = new String[ships.size()];
+        String[] remaining = new String[ships.size()];
+        String[] arrivalDates = new String[ships.size()];
+        int[] passengers = new int[ships.size()];
+        for (int i = 0; i < ships.size(); i++) {
+            Spaceship ship = ships.get(i);
+            int state = getShipState(i, hour);
+            passengers[i] = getPassengers(i, hour);
+            shipNames[i] = ship.getName();
+            statuses[i] = Simulation.SHIP_STATUSES[state];
+            departures[i] = ship.getDeparturePlanet();
+            destinations[i] = ship.getDestinationPlanet();
+            
+            if (state == EventJournal.SHIP_DESTROYED) {
+                remaining[i] = "--";
+                arrivalDates[i] = "--";
+            } else if (state == EventJournal.SHIP_ARRIVED) {
+                remaining[i] = "0";
+                arrivalDates[i] = getPlanetDate(shipDestinations[i], arrivalHours[i]);
+            } else {
+                int travelled = state == EventJournal.SHIP_WAITING ? 0 : hour - departureHours[i] + 1;
+                remaining[i] = String.valueOf(ship.getTravelDuration() - travelled);
+                Planet departure = shipDepartures[i] == NONE ? null : planets.get(shipDepartures[i]);
+                arrivalDates[i] = Simulation.projectArrivalDate(ship, departure);
+            }
+        }
+        
+        return new StateSnapshot(hour, planetNames, planetDates, populations,
+                shipNames, statuses, departures, destinations, remaining, arrivalDates, passengers);
+    }
+    
+    /**
+     * Prints the state table at the end of an hour.
+     */
+    public void printStateAt(int hour, PrintStream out) {
+        StringBuilder table = new StringBuilder(1024);
+        snapshotAt(hour).appendTable(table);
+        out.print(table);
+    }
+    
+    /**
+     * Prints when everyone with the given name dies and where they are at the end of
+     * their last hour alive.
+     */
+    public void printPerson(String name, PrintStream out) {
+        int[] found = findPeople(name);
+        if (found.length == 0) {
+            out.println("Nobody is called '" + name + "'.");
+            return;
+        }
+        for (int id : found) {
+            int death = deathHour(id);
+            out.println(name + " (#" + id + ") dies at hour " + death + ", " + describeLocation(id, death - 1) + ".");
+        }
+    }
+}
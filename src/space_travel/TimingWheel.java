@@ -0,0 +1,209 @@
+/**
+ * <p>
+ * This class is a hierarchical timing wheel that expires people at the hour they die.
+ * People are kept as their ids in the PersonStore, so a bucket is a plain int list.
+ * Each level has 256 slots; level 0 holds deaths within the current 256-hour block,
+ * level 1 the rest of the current 65536-hour block, and so on. Far-away deaths wait in
+ * an overflow list. Moving to a new block cascades one slot down a level, so advancing
+ * the clock costs time proportional to the number of deaths, not the population.
+ * </p>
+ */
+
+package space_travel;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+public class TimingWheel {
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    
+    private final PersonStore people;
+    private final IntList[][] wheels;
+    private final IntList overflow = new IntList();
+    private long now;
+    private int size;
+    
+    // The people cancel() is taking out, marked while it filters their buckets
+    private final BitSet cancelling = new BitSet();
+    
+    /**
+     * @param people The store whose people are scheduled
+     * @param now The hour on the store's clock to start at
+     */
+    public TimingWheel(PersonStore people, long now) {
+        this.people = people;
+        this.now = now;
+        this.wheels = new IntList[LEVELS][SLOTS];
+    }
+    
+    public long getNow() {
+        return now;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Schedules a person to expire at their death hour. People who are already dead
+     * expire on the next hour, just like the hourly loop would drop them.
+     * 
+     * @param id The store id of the person to schedule
+     */
+    public void schedule(int id) {
+        size++;
+        place(id, Math.max(people.getDeathHour(id), now + 1));
+    }
+    
+    /**
+     * Takes people who have not died yet out of the wheel again, as if they had never
+     * been scheduled. Each bucket they are in is filtered once, keeping the order of
+     * the people left in it.
+     * 
+     * @param ids The store ids of the people, each with the death hour they were scheduled with
+     * @throws IllegalStateException if one of them is not waiting in the wheel
+     */
+    public void cancel(int[] ids) {
+        Set<IntList> buckets = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int id : ids) {
+            cancelling.set(id);
+            // Every cascade puts an entry where place() would put it at the new hour, so
+            // the entry is still in the bucket place() picks now
+            long deadline = Math.max(people.getDeathHour(id), now + 1);
+            int level = levelOf(deadline);
+            IntList bucket = level < LEVELS ? wheels[level][slotOf(deadline, level)] : overflow;
+            if (bucket != null) {
+                buckets.add(bucket);
+            }
+        }
+        int removed = 0;
+        for (IntList bucket : buckets) {
+            removed += bucket.removeIf(cancelling::get);
+        }
+        for (int id : ids) {
+            cancelling.clear(id);
+        }
+        size -= removed;
+        if (removed != ids.length) {
+            throw new IllegalStateException((ids.length - removed) + " of the people to cancel were not in the wheel");
+        }
+    }
+    
+    private void place(int id, long deadline) {
+        int level = levelOf(deadline);
+        if (level == LEVELS) {
+            overflow.add(id);
+            return;
+        }
+        int slot = slotOf(deadline, level);
+        IntList bucket = wheels[level][slot];
+        if (bucket == null) {
+            bucket = new IntList();
+            wheels[level][slot] = bucket;
+        }
+        bucket.add(id);
+    }
+    
+    // The lowest level whose current block holds the deadline, or LEVELS for the overflow list
+    private int levelOf(long deadline) {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((deadline >>> shift) == (now >>> shift)) {
+                return level;
+            }
+        }
+        return LEVELS;
+    }
+    
+    private static int slotOf(long deadline, int level) {
+        return (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+    }
+    
+    /**
+     * Returns the earliest hour at which somebody is scheduled to die,
+     * or Long.MAX_VALUE if nobody is left in the wheel.
+     */
+    public long nextDeadline() {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            for (int slot = ((int) (now >>> shift) & SLOT_MASK) + 1; slot < SLOTS; slot++) {
+                IntList bucket = wheels[level][slot];
+                if (bucket != null && !bucket.isEmpty()) {
+                    // Everything in a level 0 slot is due at exactly that hour
+                    return level == 0 ? (now & ~SLOT_MASK) | slot : earliest(bucket);
+                }
+            }
+        }
+        return overflow.isEmpty() ? Long.MAX_VALUE : earliest(overflow);
+    }
+    
+    private long earliest(IntList bucket) {
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < bucket.size(); i++) {
+            earliest = Math.min(earliest, Math.max(people.getDeathHour(bucket.get(i)), now + 1));
+        }
+        return earliest;
+    }
+    
+    /**
+     * Moves the wheel forward to the given hour, handing everyone who dies on
+     * the way to the callback in order of their death hour.
+     * 
+     * @param hour The hour to advance to
+     * @param onExpire Called with the id of every person whose death hour has come
+     */
+    public void advanceTo(long hour, IntConsumer onExpire) {
+        while (now < hour && size > 0) {
+            long next = nextDeadline();
+            if (next > hour) break;
+            
+            moveTo(next);
+            int slot = (int) next & SLOT_MASK;
+            IntList due = wheels[0][slot];
+            if (due != null) {
+                wheels[0][slot] = null;
+                size -= due.size();
+                for (int i = 0; i < due.size(); i++) {
+                    onExpire.accept(due.get(i));
+                }
+            }
+        }
+        if (now < hour) {
+            moveTo(hour);
+        }
+    }
+    
+    private void moveTo(long hour) {
+        long previous = now;
+        now = hour;
+        
+        if ((hour >>> (SLOT_BITS * LEVELS)) != (previous >>> (SLOT_BITS * LEVELS)) && !overflow.isEmpty()) {
+            int[] pending = overflow.toArray();
+            overflow.clear();
+            for (int id : pending) {
+                place(id, Math.max(people.getDeathHour(id), now));
+            }
+        }
+        
+        // Entries sitting in the slot we just entered belong on a lower level now
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = SLOT_BITS * level;
+            if ((hour >>> shift) == (previous >>> shift)) continue;
+            
+            int slot = (int) (hour >>> shift) & SLOT_MASK;
+            IntList bucket = wheels[level][slot];
+            if (bucket != null) {
+                wheels[level][slot] = null;
+                for (int i = 0; i < bucket.size(); i++) {
+                    place(bucket.get(i), Math.max(people.getDeathHour(bucket.get(i)), now));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * <p>
+ * These tests check the checkpoint format: a checkpoint reads back into the same bytes
+ * it was written from, and a run resumed from one goes on exactly like the run that
+ * wrote it, hour by hour, in both engines.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointTest {
+    private static final int INTERVAL = 7;
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void resumedRunsEndLikeUninterruptedOnes() throws IOException {
+        int resumed = 0;
+        for (long seed = 0; seed < 40; seed++) {
+            Path scenario = TestScenarios.random(seed, directory.resolve("random" + seed));
+            for (boolean eventDriven : new boolean[] {false, true}) {
+                if (checkResume(scenario, eventDriven, "seed " + seed)) {
+                    resumed++;
+                }
+            }
+        }
+        Path generated = TestScenarios.generated(1, directory.resolve("generated"));
+        assertTrue(checkResume(generated, false, "generated"));
+        assertTrue(checkResume(generated, true, "generated"));
+        // Most random runs outlast the first checkpoint
+        assertTrue(resumed > 40, "only " + resumed + " runs wrote a checkpoint");
+    }
+    
+    /**
+     * Runs a scenario with checkpoints, resumes a second run from the last one and
+     * compares the hours after it.
+     * 
+     * @return false if the run ended before the first checkpoint
+     */
+    private static boolean checkResume(Path scenario, boolean eventDriven, String name) throws IOException {
+        String full = TestScenarios.trace(scenario, PersonStore.Backend.HEAP, simulation -> simulation.setEventDriven(eventDriven));
+        
+        Path file = scenario.resolve("checkpoint.bin");
+        Files.deleteIfExists(file);
+        Simulation writer = TestScenarios.simulation(TestScenarios.load(scenario));
+        writer.setEventDriven(eventDriven);
+        writer.setCheckpoint(file, INTERVAL);
+        TestScenarios.capture(writer::start);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        
+        int hour = read(file).getHour();
+        assertEquals(0, hour % INTERVAL, name);
+        Simulation reader = TestScenarios.simulation(TestScenarios.load(scenario));
+        reader.setEventDriven(eventDriven);
+        reader.restore(file);
+        reader.setSnapshotInterval(1);
+        String rest = TestScenarios.capture(reader::run) + TestScenarios.describe(reader.captureSnapshot());
+        
+        // The final table of the full run counts as well if the run ended right after it
+        int from = full.indexOf("Simulation Hour: " + (hour + 1) + "\n");
+        assertTrue(from >= 0, name);
+        assertEquals(full.substring(from), rest, name + (eventDriven ? ", event-driven" : ", hourly"));
+        return true;
+    }
+    
+    @Test
+    void checkpointsWriteBackTheBytesTheyWereReadFrom() throws IOException {
+        Path scenario = TestScenarios.generated(2, directory);
+        Path file = directory.resolve("checkpoint.bin");
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(scenario));
+        simulation.setCheckpoint(file, INTERVAL);
+        TestScenarios.capture(simulation::start);
+        
+        byte[] written = Files.readAllBytes(file);
+        ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(rewritten)) {
+            read(file).write(out);
+        }
+        assertArrayEquals(written, rewritten.toByteArray());
+    }
+    
+    @Test
+    void restoringIntoAnotherScenarioFails() throws IOException {
+        Path file = directory.resolve("checkpoint.bin");
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(TestScenarios.generated(3, directory.resolve("a"))));
+        simulation.setCheckpoint(file, INTERVAL);
+        TestScenarios.capture(simulation::start);
+        
+        Simulation other = TestScenarios.simulation(TestScenarios.load(TestScenarios.random(5, directory.resolve("b"))));
+        assertThrows(IOException.class, () -> other.restore(file));
+    }
+    
+    @Test
+    void damagedCheckpointsAreRejected() throws IOException {
+        Path file = directory.resolve("checkpoint.bin");
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(TestScenarios.generated(4, directory)));
+        simulation.setCheckpoint(file, INTERVAL);
+        TestScenarios.capture(simulation::start);
+        
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> read(file));
+        bytes[0] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> read(file));
+    }
+    
+    private static Checkpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            return Checkpoint.read(in);
+        }
+    }
+}
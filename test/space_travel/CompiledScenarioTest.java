@@ -0,0 +1,125 @@
+/**
+ * <p>
+ * These tests check the compiled scenario format: a scenario read back from its
+ * compiled file has the same planets, ships and people in the same places as the text
+ * files it came from, in either kind of person store, and runs the same way. Files that
+ * are damaged, from another version or older than the text are not used.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class CompiledScenarioTest {
+    @TempDir
+    Path directory;
+    
+    static LongStream seeds() {
+        return LongStream.range(0, 30);
+    }
+    
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void compiledScenariosMatchTheirTextFiles(long seed) throws IOException {
+        checkRoundTrip(TestScenarios.random(seed, directory));
+    }
+    
+    @Test
+    void compiledGeneratedScenarioMatchesItsTextFiles() throws IOException {
+        checkRoundTrip(TestScenarios.generated(7, directory));
+    }
+    
+    private void checkRoundTrip(Path scenario) throws IOException {
+        Path compiled = directory.resolve("scenario.bin");
+        CompiledScenario.write(compiled, TestScenarios.load(scenario));
+        
+        String expected = describe(TestScenarios.load(scenario));
+        String trace = TestScenarios.trace(TestScenarios.load(scenario), simulation -> { });
+        for (PersonStore.Backend backend : PersonStore.Backend.values()) {
+            assertEquals(expected, describe(CompiledScenario.read(compiled, backend)), backend.name());
+            assertEquals(trace, TestScenarios.trace(CompiledScenario.read(compiled, backend), simulation -> { }), backend.name());
+        }
+    }
+    
+    // Everything the loader sets up, before anything is simulated
+    private static String describe(Scenario scenario) {
+        StringBuilder text = new StringBuilder();
+        for (Planet planet : scenario.getPlanets()) {
+            text.append(planet.getName()).append(' ').append(planet.getDayLength()).append(' ')
+                    .append(planet.getTime().getEpochHour()).append(' ')
+                    .append(Arrays.toString(planet.getPopulationIds())).append('\n');
+        }
+        for (Spaceship ship : scenario.getShips()) {
+            text.append(ship.getName()).append(' ').append(ship.getDeparturePlanet()).append(' ')
+                    .append(ship.getDestinationPlanet()).append(' ').append(ship.getDepartureDate()).append(' ')
+                    .append(ship.getDepartureDay()).append(' ').append(ship.getTravelDuration()).append('\n');
+        }
+        PersonStore people = scenario.getPeople();
+        for (int id = 0; id < people.size(); id++) {
+            text.append(people.getName(id)).append(' ').append(people.getAge(id)).append(' ')
+                    .append(people.getLifeRemaining(id)).append(' ').append(people.getLocation(id)).append('\n');
+        }
+        return text.toString();
+    }
+    
+    @Test
+    void damagedFilesAreRejected() throws IOException {
+        Path scenario = TestScenarios.generated(8, directory);
+        Path compiled = directory.resolve("scenario.bin");
+        CompiledScenario.write(compiled, TestScenarios.load(scenario));
+        byte[] bytes = Files.readAllBytes(compiled);
+        
+        Files.write(compiled, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> CompiledScenario.read(compiled, PersonStore.Backend.HEAP));
+        
+        byte[] otherVersion = bytes.clone();
+        ByteBuffer.wrap(otherVersion).putInt(4, 0);
+        Files.write(compiled, otherVersion);
+        assertThrows(IOException.class, () -> CompiledScenario.read(compiled, PersonStore.Backend.HEAP));
+        
+        byte[] notCompiled = bytes.clone();
+        notCompiled[0] ^= 1;
+        Files.write(compiled, notCompiled);
+        assertThrows(IOException.class, () -> CompiledScenario.read(compiled, PersonStore.Backend.HEAP));
+    }
+    
+    @Test
+    void staleOrDamagedFilesFallBackToTheText() throws IOException {
+        Path scenario = TestScenarios.random(3, directory);
+        Path compiled = directory.resolve("scenario.bin");
+        CompiledScenario.write(compiled, TestScenarios.load(scenario));
+        
+        // The people file changes after compiling, so the compiled file is out of date
+        Path people = TestScenarios.peopleFile(scenario);
+        Files.writeString(people, Files.readString(people) + "Late#30#100#P\n");
+        Files.setLastModifiedTime(people, FileTime.fromMillis(Files.getLastModifiedTime(compiled).toMillis() + 10_000));
+        assertEquals(describe(TestScenarios.load(scenario)), describe(load(compiled, scenario)));
+        
+        Files.write(compiled, new byte[] {1, 2, 3});
+        Files.setLastModifiedTime(compiled, FileTime.fromMillis(Files.getLastModifiedTime(people).toMillis() + 10_000));
+        assertEquals(describe(TestScenarios.load(scenario)), describe(load(compiled, scenario)));
+    }
+    
+    private static Scenario load(Path compiled, Path scenario) {
+        Scenario[] loaded = new Scenario[1];
+        TestScenarios.capture(() -> loaded[0] = CompiledScenario.load(compiled.toString(),
+                TestScenarios.planetsFile(scenario).toString(), TestScenarios.shipsFile(scenario).toString(),
+                TestScenarios.peopleFile(scenario).toString()));
+        return loaded[0];
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * <p>
+ * These tests hold every engine to the hourly loop. The event-driven engine, the
+ * parallel tick, the off-heap person store and the timeline index must show the same
+ * state table as the hourly loop at every hour of a run, on small random scenarios full
+ * of odd cases and on larger generated ones.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class EngineEquivalenceTest {
+    @TempDir
+    Path directory;
+    
+    static LongStream randomSeeds() {
+        return LongStream.range(0, 60);
+    }
+    
+    static LongStream generatedSeeds() {
+        return LongStream.range(0, 4);
+    }
+    
+    @ParameterizedTest
+    @MethodSource("randomSeeds")
+    void eventDrivenMatchesHourlyOnRandomScenarios(long seed) {
+        TestScenarios.random(seed, directory);
+        String hourly = TestScenarios.trace(directory, PersonStore.Backend.HEAP, simulation -> { });
+        assertEquals(hourly, TestScenarios.trace(directory, PersonStore.Backend.HEAP,
+                simulation -> simulation.setEventDriven(true)));
+    }
+    
+    @ParameterizedTest
+    @MethodSource("randomSeeds")
+    void offHeapMatchesHeapOnRandomScenarios(long seed) {
+        TestScenarios.random(seed, directory);
+        String heap = TestScenarios.trace(directory, PersonStore.Backend.HEAP, simulation -> { });
+        assertEquals(heap, TestScenarios.trace(directory, PersonStore.Backend.OFF_HEAP, simulation -> { }));
+    }
+    
+    @ParameterizedTest
+    @MethodSource("randomSeeds")
+    void timelineMatchesHourlyOnRandomScenarios(long seed) {
+        TestScenarios.random(seed, directory);
+        assertEquals(TestScenarios.trace(directory, PersonStore.Backend.HEAP, simulation -> { }), timeline(directory));
+    }
+    
+    @ParameterizedTest
+    @MethodSource("generatedSeeds")
+    void everyEngineMatchesHourlyOnGeneratedScenarios(long seed) {
+        TestScenarios.generated(seed, directory);
+        String hourly = TestScenarios.trace(directory, PersonStore.Backend.HEAP, simulation -> { });
+        assertEquals(hourly, TestScenarios.trace(directory, PersonStore.Backend.HEAP,
+                simulation -> simulation.setEventDriven(true)), "event-driven");
+        assertEquals(hourly, TestScenarios.trace(directory, PersonStore.Backend.HEAP,
+                simulation -> simulation.setParallel(true)), "parallel");
+        assertEquals(hourly, TestScenarios.trace(directory, PersonStore.Backend.HEAP, simulation -> {
+            simulation.setEventDriven(true);
+            simulation.setParallel(true);
+        }), "event-driven and parallel");
+        assertEquals(hourly, TestScenarios.trace(directory, PersonStore.Backend.OFF_HEAP, simulation -> { }), "off-heap");
+        assertEquals(hourly, timeline(directory), "timeline");
+    }
+    
+    // The tables the hourly loop prints, worked out by the timeline index instead
+    private static String timeline(Path directory) {
+        TimelineIndex timeline = new TimelineIndex(TestScenarios.load(directory));
+        int end = timeline.getEndHour();
+        StringBuilder tables = new StringBuilder();
+        for (int hour = 1; hour < end; hour++) {
+            timeline.snapshotAt(hour).appendTable(tables);
+            tables.append('\n');
+        }
+        return tables + TestScenarios.describe(timeline.snapshotAt(end));
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * <p>
+ * These tests check the journal format: every engine writes the same journal for a
+ * run, up to the order of records within an hour in the parallel tick, and replaying
+ * it gives the state the timeline index works out for each hour. They also check the
+ * ring in front of the writer: records appended faster than the writer keeps up with,
+ * or from several threads at once, all arrive, each thread's in order.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class EventJournalTest {
+    @TempDir
+    Path directory;
+    
+    static LongStream seeds() {
+        return LongStream.range(0, 30);
+    }
+    
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void enginesWriteTheSameJournal(long seed) throws IOException {
+        Path scenario = TestScenarios.random(seed, directory);
+        String hourly = json(journal(scenario, simulation -> { }));
+        assertEquals(hourly, json(journal(scenario, simulation -> simulation.setEventDriven(true))));
+    }
+    
+    @Test
+    void enginesWriteTheSameJournalForGeneratedScenarios() throws IOException {
+        Path scenario = TestScenarios.generated(11, directory);
+        String hourly = json(journal(scenario, simulation -> { }));
+        assertEquals(hourly, json(journal(scenario, simulation -> simulation.setEventDriven(true))), "event-driven");
+        
+        // The parallel tick moves the ships of different planets at the same time, so
+        // within an hour it may write the same records in another order
+        Path parallel = journal(scenario, simulation -> simulation.setParallel(true));
+        assertEquals(sorted(hourly), sorted(json(parallel)), "parallel");
+        TimelineIndex timeline = new TimelineIndex(TestScenarios.load(scenario));
+        try (JournalReader reader = new JournalReader(parallel)) {
+            int end = timeline.getEndHour();
+            assertEquals(expectedState(timeline, reader, end), stateAt(reader, end), "parallel");
+        }
+    }
+    
+    private static List<String> sorted(String lines) {
+        List<String> sorted = new ArrayList<>(List.of(lines.split("\n")));
+        Collections.sort(sorted);
+        return sorted;
+    }
+    
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void replayingGivesTheStateOfEveryHour(long seed) throws IOException {
+        Path scenario = TestScenarios.random(seed, directory);
+        Path journal = journal(scenario, simulation -> simulation.setEventDriven(true));
+        TimelineIndex timeline = new TimelineIndex(TestScenarios.load(scenario));
+        for (int hour = 0; hour <= timeline.getEndHour(); hour++) {
+            try (JournalReader reader = new JournalReader(journal)) {
+                assertEquals(expectedState(timeline, reader, hour), stateAt(reader, hour), "hour " + hour);
+            }
+        }
+    }
+    
+    // What JournalReader.printStateAt() should print, from the timeline index
+    private static String expectedState(TimelineIndex timeline, JournalReader reader, int hour) {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(text, true, StandardCharsets.UTF_8);
+        out.println("State at hour " + hour + " (journal starts at hour 0):");
+        int alive = 0;
+        out.printf("%-12s %-12s %10s%n", "Planet", "Date", "Population");
+        for (int i = 0; i < reader.getPlanetCount(); i++) {
+            int population = timeline.getPopulation(i, hour);
+            alive += population;
+            out.printf("%-12s %-12s %10d%n", reader.getPlanetName(i), timeline.getPlanetDate(i, hour), population);
+        }
+        out.printf("%n%-12s %-12s %10s%n", "Ship Name", "Status", "Passengers");
+        for (int i = 0; i < reader.getShipCount(); i++) {
+            int passengers = timeline.getPassengers(i, hour);
+            alive += passengers;
+            out.printf("%-12s %-12s %10d%n", reader.getShipName(i), Simulation.SHIP_STATUSES[timeline.getShipState(i, hour)],
+                    passengers);
+        }
+        out.println("\nAlive and placed: " + alive + " of " + reader.getPeople());
+        return text.toString(StandardCharsets.UTF_8);
+    }
+    
+    private static String stateAt(JournalReader reader, int hour) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        reader.printStateAt(hour, new PrintStream(text, true, StandardCharsets.UTF_8));
+        return text.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    void appendsOutpacingTheWriterAllArrive() throws IOException {
+        Scenario scenario = TestScenarios.load(TestScenarios.random(4, directory));
+        Path file = directory.resolve("small.journal");
+        // A tiny buffer makes the simulation side wait for the writer over and over
+        EventJournal journal = new EventJournal(file, 4);
+        journal.start(scenario.getPlanets(), scenario.getShips(), 5, 0);
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 3 == 0) {
+                journal.append(EventJournal.DIED, i, i / 24, new int[] {i % 5, (i + 1) % 5}, -1);
+            } else {
+                journal.append(EventJournal.DESTROYED, i, i / 24, i % 7, 0);
+            }
+        }
+        journal.stop();
+        
+        List<String> records = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(file)) {
+            reader.forEach((type, hour, day, subject, object) -> records.add(type + " " + hour + " " + day + " " + subject));
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 3 == 0) {
+                expected.add(EventJournal.DIED + " " + i + " " + i / 24 + " " + i % 5);
+                expected.add(EventJournal.DIED + " " + i + " " + i / 24 + " " + (i + 1) % 5);
+            } else {
+                expected.add(EventJournal.DESTROYED + " " + i + " " + i / 24 + " " + i % 7);
+            }
+        }
+        assertEquals(expected, records);
+    }
+    
+    @Test
+    void appendsFromSeveralThreadsAllArriveInOrder() throws Exception {
+        Scenario scenario = TestScenarios.load(TestScenarios.random(4, directory));
+        Path file = directory.resolve("shared.journal");
+        EventJournal journal = new EventJournal(file, 64);
+        journal.start(scenario.getPlanets(), scenario.getShips(), 0, 0);
+        int threads = 4;
+        int records = 20_000;
+        Thread[] appenders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            appenders[t] = new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    journal.append(EventJournal.DESTROYED, i, 0, thread, i);
+                }
+            });
+            appenders[t].start();
+        }
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+        journal.stop();
+        
+        int[] next = new int[threads];
+        try (JournalReader reader = new JournalReader(file)) {
+            reader.forEach((type, hour, day, subject, object) -> {
+                assertEquals(next[subject], object, "thread " + subject);
+                next[subject]++;
+            });
+        }
+        for (int t = 0; t < threads; t++) {
+            assertEquals(records, next[t], "thread " + t);
+        }
+    }
+    
+    @Test
+    void otherFilesAreNotJournals() throws IOException {
+        Path file = directory.resolve("other.journal");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new JournalReader(file));
+    }
+    
+    private Path journal(Path scenario, Consumer<Simulation> setup) {
+        Path file = directory.resolve("run.journal");
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(scenario));
+        setup.accept(simulation);
+        simulation.setJournal(file);
+        TestScenarios.capture(simulation::start);
+        return file;
+    }
+    
+    private static String json(Path journal) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (JournalReader reader = new JournalReader(journal)) {
+            reader.exportJson(new PrintStream(text, true, StandardCharsets.UTF_8));
+        }
+        return text.toString(StandardCharsets.UTF_8);
+    }
+}
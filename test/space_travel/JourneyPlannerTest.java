@@ -0,0 +1,212 @@
+/**
+ * <p>
+ * These tests check the connection scan against a plain search that keeps relaxing
+ * every ship until no arrival gets any earlier, under the same rules: a ship can be
+ * caught by someone who got to its planet before it leaves, in the hourly loop's order.
+ * The answers must be the same with or without the cache and from several threads at
+ * once, and every journey must be a chain of ships that can really be taken.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class JourneyPlannerTest {
+    private static final long FIRST_DAY = Time.parseDay("01.01.2025");
+    
+    @TempDir
+    Path directory;
+    
+    static LongStream seeds() {
+        return LongStream.range(0, 20);
+    }
+    
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void randomSchedulesGiveTheEarliestArrival(long seed) {
+        checkEveryQuery(TestScenarios.load(TestScenarios.random(seed, directory)));
+    }
+    
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void busySchedulesGiveTheEarliestArrival(long seed) {
+        checkEveryQuery(TestScenarios.load(schedule(seed, directory)));
+    }
+    
+    /**
+     * Asks for every pair of planets on every day of the schedule, twice with the cache
+     * (so the second round comes from it) and once without.
+     */
+    private static void checkEveryQuery(Scenario scenario) {
+        List<Planet> planets = scenario.getPlanets();
+        List<Spaceship> ships = scenario.getShips();
+        JourneyPlanner cached = new JourneyPlanner(planets, ships);
+        JourneyPlanner uncached = new JourneyPlanner(planets, ships);
+        uncached.setCacheSize(0);
+        
+        for (int round = 0; round < 2; round++) {
+            for (long day = FIRST_DAY - 1; day < FIRST_DAY + 35; day++) {
+                for (int origin = 0; origin < cached.getPlanetCount(); origin++) {
+                    long[] expected = earliestArrivals(planets, ships, origin, cached.getStartHour(origin, day));
+                    for (int destination = 0; destination < cached.getPlanetCount(); destination++) {
+                        String query = origin + " -> " + destination + " on " + Time.formatDate(day);
+                        int arrival = expected == null ? JourneyPlanner.NONE
+                                : destination == origin ? cached.getStartHour(origin, day)
+                                : hourOf(expected[destination], ships.size());
+                        assertEquals(arrival, cached.earliestArrival(origin, destination, day), query);
+                        assertEquals(arrival, uncached.earliestArrival(origin, destination, day), query);
+                        checkJourney(cached.plan(origin, destination, day), origin, destination, day, arrival, cached);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The earliest arrival key on every planet, by relaxing every ship over and over, or
+     * null if the date has already passed on the origin. Keys are hour * ships + ship,
+     * like in the planner, so that ships of one hour go in list order.
+     */
+    private static long[] earliestArrivals(List<Planet> planets, List<Spaceship> ships, int origin, int startHour) {
+        if (startHour == JourneyPlanner.NONE) {
+            return null;
+        }
+        long keysPerHour = Math.max(ships.size(), 1);
+        long[] reached = new long[planets.size()];
+        Arrays.fill(reached, Long.MAX_VALUE);
+        reached[origin] = startHour * keysPerHour - 1;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < ships.size(); i++) {
+                Spaceship ship = ships.get(i);
+                int from = lastPlanet(planets, ship.getDeparturePlanet());
+                int to = lastPlanet(planets, ship.getDestinationPlanet());
+                if (from < 0 || to < 0) continue;
+                long hour = planets.get(from).getTime().hoursUntil(ship.getDepartureDay());
+                if (hour <= 0) continue;
+                
+                long departure = hour * keysPerHour + i;
+                long arrival = departure + (Math.max(ship.getTravelDuration(), 1) - 1) * keysPerHour;
+                if (reached[from] < departure && arrival < reached[to]) {
+                    reached[to] = arrival;
+                    changed = true;
+                }
+            }
+        }
+        return reached;
+    }
+    
+    private static int lastPlanet(List<Planet> planets, String name) {
+        for (int i = planets.size() - 1; i >= 0; i--) {
+            if (planets.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int hourOf(long key, int ships) {
+        return key == Long.MAX_VALUE ? JourneyPlanner.NONE : (int) (key / Math.max(ships, 1));
+    }
+    
+    private static void checkJourney(JourneyPlanner.Journey journey, int origin, int destination, long day, int arrival,
+            JourneyPlanner planner) {
+        if (arrival == JourneyPlanner.NONE) {
+            assertNull(journey);
+            return;
+        }
+        assertEquals(planner.getStartHour(origin, day), journey.getStartHour());
+        assertEquals(arrival, journey.getArrivalHour());
+        int planet = origin;
+        int hour = journey.getStartHour();
+        for (int leg = 0; leg < journey.getLegCount(); leg++) {
+            assertEquals(planet, journey.getFromPlanet(leg), "leg " + leg);
+            assertTrue(journey.getDepartureHour(leg) >= hour, "leg " + leg + " leaves before the traveller is there");
+            assertTrue(journey.getArrivalHour(leg) >= journey.getDepartureHour(leg), "leg " + leg);
+            planet = journey.getToPlanet(leg);
+            hour = journey.getArrivalHour(leg);
+        }
+        assertEquals(destination, planet);
+    }
+    
+    @Test
+    void queriesFromSeveralThreadsMatchOneThread() throws Exception {
+        Scenario scenario = TestScenarios.load(schedule(99, directory));
+        JourneyPlanner alone = new JourneyPlanner(scenario.getPlanets(), scenario.getShips());
+        alone.setCacheSize(0);
+        // A small cache makes the threads keep dropping and redoing each other's scans
+        JourneyPlanner shared = new JourneyPlanner(scenario.getPlanets(), scenario.getShips());
+        shared.setCacheSize(5);
+        
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long seed = t;
+                results.add(threads.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (int q = 0; q < 20_000; q++) {
+                        int origin = random.nextInt(shared.getPlanetCount());
+                        int destination = random.nextInt(shared.getPlanetCount());
+                        long day = FIRST_DAY + random.nextInt(-1, 35);
+                        assertEquals(alone.earliestArrival(origin, destination, day),
+                                shared.earliestArrival(origin, destination, day));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+    
+    @Test
+    void unknownPlanetsAreRejected() {
+        JourneyPlanner planner = new JourneyPlanner(TestScenarios.load(schedule(1, directory)).getPlanets(), List.of());
+        assertEquals(JourneyPlanner.NONE, planner.findPlanet("Nowhere"));
+        assertThrows(IllegalArgumentException.class, () -> planner.plan("Nowhere", ScenarioGenerator.planetName(0), "05.01.2025"));
+        assertEquals(0, planner.getConnectionCount());
+        assertNull(planner.plan(0, 1, FIRST_DAY + 3));
+        assertEquals(0, planner.plan(0, 0, FIRST_DAY + 3).getLegCount());
+    }
+    
+    // Many ships between a few planets, so journeys change ships several times
+    private static Path schedule(long seed, Path directory) {
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.setSeed(seed);
+        generator.setPlanets(8);
+        generator.setShips(300);
+        generator.setPeople(0);
+        generator.setTravelDuration(ScenarioGenerator.Sampler.uniform(0, 200));
+        try {
+            generator.write(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * <p>
+ * These tests check the partitioned run: the planets are spread evenly over the
+ * partitions, and a run in worker processes, which hand people over between them and
+ * wait for each other at the end of every tick, ends with the same state table as a
+ * run in one process. The workers read the scenario from the working directory, so
+ * the full run uses the sample files there.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PartitionCoordinatorTest {
+    @TempDir
+    Path directory;
+    
+    @Test
+    void planetsAreSpreadEvenly() {
+        for (long seed = 0; seed < 10; seed++) {
+            Scenario scenario = TestScenarios.load(TestScenarios.generated(seed, directory));
+            List<Planet> planets = scenario.getPlanets();
+            List<Spaceship> ships = scenario.getShips();
+            for (int partitions = 1; partitions <= planets.size(); partitions++) {
+                int[] owners = PartitionCoordinator.assignPlanets(planets, ships, partitions);
+                int[] loads = new int[planets.size()];
+                for (Spaceship ship : ships) {
+                    for (int i = 0; i < planets.size(); i++) {
+                        if (planets.get(i).getName().equals(ship.getDeparturePlanet())) {
+                            loads[i]++;
+                        }
+                    }
+                }
+                long[] totals = new long[partitions];
+                int heaviest = 0;
+                for (int i = 0; i < planets.size(); i++) {
+                    assertTrue(owners[i] >= 0 && owners[i] < partitions, "planet " + i);
+                    totals[owners[i]] += loads[i] + 1;
+                    heaviest = Math.max(heaviest, loads[i] + 1);
+                }
+                long most = 0;
+                long least = Long.MAX_VALUE;
+                for (long total : totals) {
+                    most = Math.max(most, total);
+                    least = Math.min(least, total);
+                }
+                // Every partition gets a planet, and none is ahead by more than the busiest planet
+                assertTrue(least > 0, partitions + " partitions");
+                assertTrue(most - least <= heaviest, partitions + " partitions");
+            }
+        }
+    }
+    
+    @Test
+    void partitionedRunsEndLikeOneProcess() {
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(Path.of("")));
+        TestScenarios.capture(simulation::run);
+        StateSnapshot last = simulation.captureSnapshot();
+        String expected = TestScenarios.capture(() -> Simulation.displayState(last))
+                + "\nSimulation complete after " + last.getHour() + " hours.\n";
+        
+        for (int partitions = 2; partitions <= 3; partitions++) {
+            PartitionCoordinator coordinator = new PartitionCoordinator(partitions, PersonStore.Backend.HEAP, false);
+            assertEquals(expected, TestScenarios.capture(coordinator::run), partitions + " partitions");
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * <p>
+ * These tests check the person store in both backends: people read back as they were
+ * added however far the columns had to grow, bulk additions give the same store as
+ * adding people one by one, a copy shares the columns that never change without
+ * either store seeing the people the other adds afterwards, and the ids and name
+ * bytes of removed people go to the people added after them.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class PersonStoreTest {
+    private static final String[] LOCATIONS = {"P", "Q", "S1", "Gezegen", ""};
+    
+    @ParameterizedTest
+    @EnumSource(PersonStore.Backend.class)
+    void peopleReadBackAsAdded(PersonStore.Backend backend) {
+        PersonStore people = new PersonStore(backend, 1);
+        fill(people, 0, 5000);
+        assertEquals(5000, people.size());
+        check(people, 0, 0, 5000);
+    }
+    
+    @ParameterizedTest
+    @EnumSource(PersonStore.Backend.class)
+    void bulkAdditionsMatchAddingOneByOne(PersonStore.Backend backend) {
+        for (boolean clocked : new boolean[] {false, true}) {
+            PersonStore bulk = new PersonStore(backend, 1);
+            PersonStore single = new PersonStore(backend, 1);
+            if (clocked) {
+                LifeClock clock = new LifeClock();
+                clock.advance(17);
+                bulk.setClock(clock);
+                single.setClock(clock);
+            }
+            // Once into an empty store and once after people are already there
+            addColumns(bulk, 0, 300);
+            fill(single, 0, 300);
+            addColumns(bulk, 300, 700);
+            fill(single, 300, 700);
+            fill(bulk, 1000, 10);
+            fill(single, 1000, 10);
+            assertEquals(single.size(), bulk.size());
+            check(bulk, 0, 0, 1010);
+            
+            PersonStore appended = new PersonStore(backend);
+            appended.add("First", 1, 2, "Q");
+            appended.addAll(single);
+            check(appended, 1, 0, 1010);
+            
+            // In parts that share the store's symbols, the way the loader joins its chunks
+            PersonStore joined = new PersonStore(backend);
+            if (clocked) {
+                joined.setClock(new LifeClock());
+            }
+            joined.add("First", 1, 2, "Q");
+            int[] bounds = {0, 1, 400, 400, 1010};
+            List<PersonStore> parts = new ArrayList<>();
+            for (int i = 1; i < bounds.length; i++) {
+                PersonStore part = new PersonStore(PersonStore.Backend.HEAP, 1, joined.getSymbols());
+                fill(part, bounds[i - 1], bounds[i] - bounds[i - 1]);
+                parts.add(part);
+            }
+            joined.addAll(parts);
+            assertEquals(1011, joined.size());
+            check(joined, 1, 0, 1010);
+        }
+    }
+    
+    @ParameterizedTest
+    @EnumSource(PersonStore.Backend.class)
+    void copiesDoNotSeeEachOthersAdditions(PersonStore.Backend backend) {
+        PersonStore source = new PersonStore(backend, 1);
+        fill(source, 0, 200);
+        PersonStore copy = source.copy(person -> person.getLifeRemaining() * 2);
+        assertEquals(200, copy.size());
+        for (int id = 0; id < 200; id++) {
+            assertEquals(source.getName(id), copy.getName(id));
+            assertEquals(source.getAge(id), copy.getAge(id));
+            assertEquals(2 * source.getLifeRemaining(id), copy.getLifeRemaining(id));
+            assertEquals(source.getLocation(id), copy.getLocation(id));
+        }
+        
+        fill(copy, 200, 100);
+        fill(source, 500, 50);
+        assertEquals(300, copy.size());
+        assertEquals(250, source.size());
+        check(copy, 200, 200, 100);
+        check(source, 200, 500, 50);
+        for (int id = 0; id < 200; id++) {
+            assertEquals(source.getName(id), copy.getName(id));
+        }
+    }
+    
+    @ParameterizedTest
+    @EnumSource(PersonStore.Backend.class)
+    void removedPeopleMakeRoomForNewcomers(PersonStore.Backend backend) {
+        PersonStore people = new PersonStore(backend, 1);
+        fill(people, 0, 500);
+        // The person number behind each id
+        int[] numbers = new int[500];
+        for (int id = 0; id < 500; id++) {
+            numbers[id] = id;
+        }
+        SplittableRandom random = new SplittableRandom(3);
+        int next = 500;
+        // Many times the population passes through, enough to pack the names several times
+        for (int round = 0; round < 40; round++) {
+            int[] removed = random.ints(100, 0, 500).distinct().toArray();
+            for (int id : removed) {
+                people.remove(id);
+            }
+            for (int i = 0; i < removed.length; i++) {
+                int id = people.add(name(next), age(next), life(next), LOCATIONS[next % LOCATIONS.length]);
+                numbers[id] = next++;
+            }
+            assertEquals(500, people.size());
+        }
+        for (int id = 0; id < 500; id++) {
+            check(people, id, numbers[id], 1);
+        }
+        
+        // A copy made after removals still reads back and reuses ids on its own
+        PersonStore copy = people.copy(person -> person.getLifeRemaining());
+        people.remove(7);
+        copy.remove(9);
+        assertEquals(7, people.add(name(next), age(next), life(next), LOCATIONS[next % LOCATIONS.length]));
+        assertEquals(9, copy.add(name(next + 1), age(next + 1), life(next + 1), LOCATIONS[(next + 1) % LOCATIONS.length]));
+        check(people, 7, next, 1);
+        check(people, 9, numbers[9], 1);
+        check(copy, 9, next + 1, 1);
+        check(copy, 7, numbers[7], 1);
+        
+        // Bulk additions need ids that follow on from each other
+        assertThrows(IllegalStateException.class, () -> people.addAll(List.of(new PersonStore(backend, 1, people.getSymbols()))));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(PersonStore.Backend.class)
+    void storesTooLargeAreRejected(PersonStore.Backend backend) {
+        assertThrows(IllegalArgumentException.class, () -> new PersonStore(backend, Integer.MAX_VALUE));
+    }
+    
+    // Adds count people numbered from first, with names of every length and some non-ASCII
+    private static void fill(PersonStore people, int first, int count) {
+        for (int n = first; n < first + count; n++) {
+            people.add(name(n), age(n), life(n), LOCATIONS[n % LOCATIONS.length]);
+        }
+    }
+    
+    private static void addColumns(PersonStore people, int first, int count) {
+        byte[][] encoded = new byte[count][];
+        int nameBytes = 0;
+        for (int i = 0; i < count; i++) {
+            encoded[i] = name(first + i).getBytes(StandardCharsets.UTF_8);
+            nameBytes += encoded[i].length;
+        }
+        ByteBuffer names = ByteBuffer.allocate(nameBytes);
+        // The int columns may come in either byte order
+        ByteBuffer nameEnds = ByteBuffer.allocate(4 * count).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer ages = ByteBuffer.allocate(4 * count);
+        ByteBuffer lives = ByteBuffer.allocate(4 * count).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer locations = ByteBuffer.allocate(4 * count);
+        for (int i = 0; i < count; i++) {
+            names.put(encoded[i]);
+            nameEnds.putInt(names.position());
+            ages.putInt(age(first + i));
+            lives.putInt(life(first + i));
+            locations.putInt((first + i) % LOCATIONS.length);
+        }
+        int[] symbols = new int[LOCATIONS.length];
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            symbols[i] = people.getSymbols().intern(LOCATIONS[i]);
+        }
+        people.addColumns(count, names.flip(), nameEnds.flip(), ages.flip(), lives.flip(), locations.flip(), symbols);
+    }
+    
+    // Checks the count people from id on, who were added as the people numbered from first
+    private static void check(PersonStore people, int id, int first, int count) {
+        for (int i = 0; i < count; i++) {
+            int n = first + i;
+            assertEquals(name(n), people.getName(id + i), "person " + (id + i));
+            assertEquals(age(n), people.getAge(id + i), "person " + (id + i));
+            assertEquals(life(n), people.getLifeRemaining(id + i), "person " + (id + i));
+            assertEquals(LOCATIONS[n % LOCATIONS.length], people.getLocation(id + i), "person " + (id + i));
+        }
+    }
+    
+    private static String name(int n) {
+        return "Ayşe".repeat(n % 7) + n;
+    }
+    
+    private static int age(int n) {
+        return n % 90;
+    }
+    
+    private static int life(int n) {
+        return new SplittableRandom(n).nextInt(-5, 2000);
+    }
+}
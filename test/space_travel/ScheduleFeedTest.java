@@ -0,0 +1,231 @@
+/**
+ * <p>
+ * These tests check the schedule feed: changes submitted from several threads while
+ * the queue is being drained all come out once, each thread's in the order it sent
+ * them, every change the feed accepts is taken off it even when it closes meanwhile,
+ * and a run fed ships and people before it starts ends like a run that read the
+ * same ships and people from its input files.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScheduleFeedTest {
+    @TempDir
+    Path directory;
+    
+    @Test
+    void changesFromSeveralThreadsAllArriveInOrder() throws InterruptedException {
+        ScheduleFeed feed = new ScheduleFeed();
+        int threads = 4;
+        int changes = 50_000;
+        CountDownLatch ready = new CountDownLatch(threads);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            producers[t] = new Thread(() -> {
+                ready.countDown();
+                for (int i = 0; i < changes; ) {
+                    // Mix single changes with batches
+                    if (i % 10 == 0 && i + 5 <= changes) {
+                        List<ScheduleFeed.Change> batch = new ArrayList<>();
+                        for (int j = 0; j < 5; j++) {
+                            batch.add(ScheduleFeed.Change.cancelShip(thread + ":" + (i + j)));
+                        }
+                        feed.submitAll(batch);
+                        i += 5;
+                    } else {
+                        feed.cancelShip(thread + ":" + i++);
+                    }
+                }
+            });
+            producers[t].start();
+        }
+        
+        int[] next = new int[threads];
+        int taken = 0;
+        ready.await();
+        while (taken < threads * changes) {
+            taken += feed.drain(97, change -> {
+                String[] parts = change.name.split(":");
+                int thread = Integer.parseInt(parts[0]);
+                assertEquals(next[thread], Integer.parseInt(parts[1]), "thread " + thread);
+                next[thread]++;
+            });
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(0, feed.drain(Integer.MAX_VALUE, change -> { }));
+        for (int t = 0; t < threads; t++) {
+            assertEquals(changes, next[t], "thread " + t);
+        }
+    }
+    
+    @Test
+    void closedFeedsTakeNoMoreChanges() {
+        ScheduleFeed feed = new ScheduleFeed();
+        assertTrue(feed.cancelShip("A"));
+        feed.close();
+        assertTrue(feed.isClosed());
+        assertFalse(feed.cancelShip("B"));
+        assertFalse(feed.submitAll(List.of(ScheduleFeed.Change.cancelShip("C"))));
+        assertEquals(1, feed.drain(Integer.MAX_VALUE, change -> assertEquals("A", change.name)));
+    }
+    
+    @Test
+    void everyAcceptedChangeIsTakenAfterClosing() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            ScheduleFeed feed = new ScheduleFeed();
+            int threads = 4;
+            int[] accepted = new int[threads];
+            CountDownLatch ready = new CountDownLatch(threads);
+            Thread[] producers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                producers[t] = new Thread(() -> {
+                    ready.countDown();
+                    while (feed.cancelShip("S")) {
+                        accepted[thread]++;
+                    }
+                });
+                producers[t].start();
+            }
+            
+            ready.await();
+            int taken = feed.drain(1000, change -> { });
+            feed.close();
+            taken += feed.drain(Integer.MAX_VALUE, change -> { });
+            int total = 0;
+            for (int t = 0; t < threads; t++) {
+                producers[t].join();
+                total += accepted[t];
+            }
+            assertEquals(total, taken, "round " + round);
+        }
+    }
+    
+    @Test
+    void linesParseIntoChanges() {
+        ScheduleFeed.Change ship = ScheduleFeed.parse("ship#S9#P#Q#05.01.2025#40");
+        assertEquals(ScheduleFeed.ADD_SHIP, ship.kind);
+        assertEquals("S9", ship.name);
+        assertEquals(Time.parseDay("05.01.2025"), ship.departureDay);
+        assertEquals(40, ship.travelDuration);
+        
+        ScheduleFeed.Change person = ScheduleFeed.parse("person#Ayşe#30# 120#S9");
+        assertEquals(ScheduleFeed.ADD_PERSON, person.kind);
+        assertEquals(120, person.lifeRemaining);
+        assertEquals("S9", person.location);
+        
+        assertEquals(ScheduleFeed.CANCEL_SHIP, ScheduleFeed.parse("cancel#S9").kind);
+        assertNull(ScheduleFeed.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> ScheduleFeed.parse("ship#S9#P#Q#05.01.2025"));
+        assertThrows(IllegalArgumentException.class, () -> ScheduleFeed.parse("person#A#x#1#P"));
+        assertThrows(IllegalArgumentException.class, () -> ScheduleFeed.parse("launch#S9"));
+    }
+    
+    @Test
+    void fedScheduleMatchesTheSameScheduleReadFromFiles() throws IOException {
+        for (long seed = 0; seed < 20; seed++) {
+            for (boolean eventDriven : new boolean[] {false, true}) {
+                Path base = TestScenarios.random(seed, directory.resolve("base" + seed));
+                Path planets = TestScenarios.planetsFile(base);
+                if (Files.readString(planets).isBlank()) continue;
+                String planet = Files.readAllLines(planets).get(0).split("#")[0];
+                
+                // The same ships and people, once in the files and once through the feed
+                Path full = directory.resolve("full" + seed);
+                Files.createDirectories(full);
+                Files.copy(planets, TestScenarios.planetsFile(full), StandardCopyOption.REPLACE_EXISTING);
+                Files.writeString(TestScenarios.shipsFile(full), Files.readString(TestScenarios.shipsFile(base))
+                        + "Fed#" + planet + "#" + planet + "#07.01.2025#30\n");
+                Files.writeString(TestScenarios.peopleFile(full), Files.readString(TestScenarios.peopleFile(base))
+                        + "Late1#20#400#Fed\nLate2#21#5#Fed\nLate3#22#90#" + planet + "\n");
+                
+                ScheduleFeed feed = new ScheduleFeed();
+                feed.addShip("Fed", planet, planet, "07.01.2025", 30);
+                feed.addPerson("Late1", 20, 400, "Fed");
+                feed.addPerson("Late2", 21, 5, "Fed");
+                feed.addPerson("Late3", 22, 90, planet);
+                String fed = TestScenarios.trace(base, PersonStore.Backend.HEAP, simulation -> {
+                    simulation.setEventDriven(eventDriven);
+                    simulation.setScheduleFeed(feed);
+                });
+                String read = TestScenarios.trace(full, PersonStore.Backend.HEAP, simulation -> simulation.setEventDriven(eventDriven));
+                assertEquals(read, fed, "seed " + seed + (eventDriven ? ", event-driven" : ", hourly"));
+            }
+        }
+    }
+    
+    @Test
+    void cancelledShipsLeaveTheirPeopleBehind() throws IOException {
+        Files.writeString(TestScenarios.planetsFile(directory), "P#24#01.01.2025\nQ#24#01.01.2025\n");
+        Files.writeString(TestScenarios.shipsFile(directory), "S1#P#Q#05.01.2025#10\nS2#Q#P#06.01.2025#10\n");
+        Files.writeString(TestScenarios.peopleFile(directory), "A#30#1000#S1\nB#31#1000#S1\nC#32#1000#P\n");
+        
+        StateSnapshot flown = finalState(null);
+        assertEquals(1, flown.getPopulation(0));
+        assertEquals(2, flown.getPopulation(1));
+        
+        // Cancelled before it leaves, S1 never flies and A and B stay on P
+        StateSnapshot cancelled = finalState("S1");
+        assertEquals("Destroyed", cancelled.getShipStatus(0));
+        assertEquals("--", cancelled.getArrivalDate(0));
+        assertEquals(0, cancelled.getPassengers(0));
+        assertEquals(3, cancelled.getPopulation(0));
+        assertEquals(0, cancelled.getPopulation(1));
+        assertEquals(flown.getShipStatus(1), cancelled.getShipStatus(1));
+    }
+    
+    @Test
+    void cancellingANameStopsEveryShipOfIt() throws IOException {
+        Files.writeString(TestScenarios.planetsFile(directory), "P#24#01.01.2025\nQ#24#01.01.2025\n");
+        Files.writeString(TestScenarios.shipsFile(directory),
+                "S1#P#Q#05.01.2025#10\nS2#P#Q#05.01.2025#10\nS1#Q#P#06.01.2025#10\n");
+        Files.writeString(TestScenarios.peopleFile(directory), "A#30#1000#P\n");
+        
+        // The ship added through the feed shares its name with one from the file
+        ScheduleFeed feed = new ScheduleFeed();
+        feed.addShip("S2", "Q", "P", "07.01.2025", 10);
+        feed.cancelShip("S1");
+        feed.cancelShip("S2");
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(directory));
+        simulation.setScheduleFeed(feed);
+        TestScenarios.capture(simulation::run);
+        StateSnapshot state = simulation.captureSnapshot();
+        assertEquals(4, state.getShipCount());
+        for (int i = 0; i < state.getShipCount(); i++) {
+            assertEquals("Destroyed", state.getShipStatus(i), "ship " + i);
+        }
+    }
+    
+    private StateSnapshot finalState(String cancel) {
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(directory));
+        if (cancel != null) {
+            ScheduleFeed feed = new ScheduleFeed();
+            feed.cancelShip(cancel);
+            feed.cancelShip("NoSuchShip");
+            simulation.setScheduleFeed(feed);
+        }
+        TestScenarios.capture(simulation::run);
+        return simulation.captureSnapshot();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * <p>
+ * This class makes the scenarios the tests run, written as the three input files, and
+ * runs them quietly: the loader's warnings are thrown away and what a run prints is
+ * handed back as a string, so two runs can be compared line by line.
+ * </p>
+ */
+
+package space_travel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+final class TestScenarios {
+    private TestScenarios() {
+    }
+    
+    /**
+     * Writes a small random scenario with the awkward cases the engines have to agree
+     * on: ships named after planets, several ships of one name, people who are already
+     * dead, ships that lose everyone and people in places that do not exist.
+     */
+    static Path random(long seed, Path directory) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> planets = new ArrayList<>();
+        int planetCount = random.nextInt(1, 6);
+        for (int i = 0; i < planetCount; i++) {
+            planets.add(String.valueOf((char) ('P' + i)));
+        }
+        
+        StringBuilder planetLines = new StringBuilder();
+        for (String planet : planets) {
+            planetLines.append(planet).append('#').append(random.nextInt(2, 31))
+                    .append("#0").append(random.nextInt(1, 4)).append(".01.2025\n");
+        }
+        
+        List<String> ships = new ArrayList<>();
+        StringBuilder shipLines = new StringBuilder();
+        int shipCount = random.nextInt(0, 9);
+        for (int i = 0; i < shipCount; i++) {
+            String name = random.nextBoolean() ? pick(random, planets) : "S" + random.nextInt(0, shipCount);
+            ships.add(name);
+            shipLines.append(name).append('#').append(pick(random, planets)).append('#').append(pick(random, planets))
+                    .append("#0").append(random.nextInt(3, 7)).append(".01.2025#").append(random.nextInt(0, 301)).append('\n');
+        }
+        
+        List<String> locations = new ArrayList<>(ships);
+        locations.addAll(planets);
+        locations.add("Nowhere");
+        StringBuilder peopleLines = new StringBuilder();
+        int personCount = random.nextInt(0, 41);
+        for (int i = 0; i < personCount; i++) {
+            peopleLines.append('N').append(i).append('#').append(random.nextInt(1, 91)).append('#')
+                    .append(random.nextInt(-2, 501)).append('#').append(pick(random, locations)).append('\n');
+        }
+        
+        write(directory, planetLines, shipLines, peopleLines);
+        return directory;
+    }
+    
+    /**
+     * Writes a larger, regular scenario from ScenarioGenerator, big enough for the
+     * parallel engine to split its ships between workers.
+     */
+    static Path generated(long seed, Path directory) {
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.setSeed(seed);
+        generator.setPlanets(6);
+        generator.setShips(60);
+        generator.setPeople(3000);
+        generator.setTravelDuration(ScenarioGenerator.Sampler.uniform(1, 400));
+        generator.setLifespan(ScenarioGenerator.Sampler.uniform(-5, 600));
+        generator.setOccupancySkew(1);
+        try {
+            generator.write(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return directory;
+    }
+    
+    private static String pick(SplittableRandom random, List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+    
+    private static void write(Path directory, CharSequence planets, CharSequence ships, CharSequence people) {
+        try {
+            Files.createDirectories(directory);
+            Files.writeString(planetsFile(directory), planets, StandardCharsets.UTF_8);
+            Files.writeString(shipsFile(directory), ships, StandardCharsets.UTF_8);
+            Files.writeString(peopleFile(directory), people, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    static Path planetsFile(Path directory) {
+        return directory.resolve(Main.PLANETS_FILE);
+    }
+    
+    static Path shipsFile(Path directory) {
+        return directory.resolve(Main.SHIPS_FILE);
+    }
+    
+    static Path peopleFile(Path directory) {
+        return directory.resolve(Main.PEOPLE_FILE);
+    }
+    
+    /**
+     * Loads the scenario in a directory, without the warnings about its odd entries.
+     */
+    static Scenario load(Path directory, PersonStore.Backend backend) {
+        Scenario[] scenario = new Scenario[1];
+        capture(() -> scenario[0] = FileReader.readScenario(planetsFile(directory).toString(),
+                shipsFile(directory).toString(), peopleFile(directory).toString(), backend));
+        return scenario[0];
+    }
+    
+    static Scenario load(Path directory) {
+        return load(directory, PersonStore.Backend.HEAP);
+    }
+    
+    static Simulation simulation(Scenario scenario) {
+        Simulation simulation = new Simulation(scenario.getPlanets(), scenario.getShips(), scenario.getPeople());
+        simulation.setHeadless(true);
+        return simulation;
+    }
+    
+    /**
+     * Runs a headless simulation of the scenario in a directory and returns the state
+     * table of every hour it printed, then the final one with the passengers of each ship.
+     * 
+     * @param setup Chooses the engine and anything else before the run
+     */
+    static String trace(Path directory, PersonStore.Backend backend, Consumer<Simulation> setup) {
+        return trace(load(directory, backend), setup);
+    }
+    
+    static String trace(Scenario scenario, Consumer<Simulation> setup) {
+        Simulation simulation = simulation(scenario);
+        simulation.setSnapshotInterval(1);
+        setup.accept(simulation);
+        return capture(simulation::run) + describe(simulation.captureSnapshot());
+    }
+    
+    /**
+     * Returns the state table of a snapshot followed by the passengers of each ship,
+     * which the table does not show.
+     */
+    static String describe(StateSnapshot snapshot) {
+        StringBuilder text = new StringBuilder(1024);
+        snapshot.appendTable(text);
+        text.append("Passengers:");
+        for (int i = 0; i < snapshot.getShipCount(); i++) {
+            text.append(' ').append(snapshot.getPassengers(i));
+        }
+        return text.append('\n').toString();
+    }
+    
+    /**
+     * Runs an action with System.out captured and System.err thrown away.
+     * 
+     * @return What the action printed to System.out
+     */
+    static String capture(Runnable action) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            action.run();
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return printed.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * <p>
+ * These tests check the time series formats: the columnar file reads back into the
+ * state of the run at each of its rows, the same whichever engine wrote it and whether
+ * it is compressed or not, and turned into CSV it matches what the CSV export wrote.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class TimeSeriesTest {
+    @TempDir
+    Path directory;
+    
+    static LongStream seeds() {
+        return LongStream.range(0, 30);
+    }
+    
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void rowsHoldTheStateOfTheirHour(long seed) throws IOException {
+        Path scenario = TestScenarios.random(seed, directory);
+        TimelineIndex timeline = new TimelineIndex(TestScenarios.load(scenario));
+        for (int interval : new int[] {1, 5}) {
+            List<int[]> hourly = rows(export(scenario, "hourly.ts", interval, false, simulation -> { }));
+            checkRows(timeline, interval, hourly);
+            List<int[]> events = rows(export(scenario, "events.ts", interval, true,
+                    simulation -> simulation.setEventDriven(true)));
+            assertRowsEqual(hourly, events);
+        }
+    }
+    
+    @Test
+    void generatedScenarioRowsMatchInEveryEngine() throws IOException {
+        Path scenario = TestScenarios.generated(21, directory);
+        TimelineIndex timeline = new TimelineIndex(TestScenarios.load(scenario));
+        List<int[]> hourly = rows(export(scenario, "hourly.ts", 1, false, simulation -> { }));
+        checkRows(timeline, 1, hourly);
+        assertRowsEqual(hourly, rows(export(scenario, "events.ts", 1, true, simulation -> simulation.setEventDriven(true))));
+        assertRowsEqual(hourly, rows(export(scenario, "parallel.ts", 1, true, simulation -> simulation.setParallel(true))));
+    }
+    
+    /**
+     * Checks that there is a row every interval hours plus one for the final hour, and
+     * that each one holds what the timeline index says about that hour.
+     */
+    private static void checkRows(TimelineIndex timeline, int interval, List<int[]> rows) {
+        int end = timeline.getEndHour();
+        List<Integer> hours = new ArrayList<>();
+        for (int hour = 0; hour < end; hour += interval) {
+            hours.add(hour);
+        }
+        hours.add(end);
+        assertEquals(hours.size(), rows.size());
+        
+        for (int r = 0; r < rows.size(); r++) {
+            int[] row = rows.get(r);
+            int hour = hours.get(r);
+            StateSnapshot snapshot = timeline.snapshotAt(hour);
+            assertEquals(hour, row[0]);
+            int column = 1;
+            for (int i = 0; i < snapshot.getPlanetCount(); i++) {
+                assertEquals(snapshot.getPopulation(i), row[column++], "population at hour " + hour);
+                assertEquals(snapshot.getPlanetDate(i), Time.formatDate(row[column++]), "date at hour " + hour);
+            }
+            for (int i = 0; i < snapshot.getShipCount(); i++) {
+                int state = row[column++];
+                int remaining = row[column++];
+                assertEquals(snapshot.getShipStatus(i), Simulation.SHIP_STATUSES[state], "ship state at hour " + hour);
+                if (state == EventJournal.SHIP_WAITING || state == EventJournal.SHIP_IN_TRANSIT) {
+                    assertEquals(snapshot.getHoursRemaining(i), String.valueOf(remaining), "hours remaining at hour " + hour);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void compressedAndCsvExportsHoldTheSameRows() throws IOException {
+        Path scenario = TestScenarios.generated(22, directory);
+        Path plain = export(scenario, "plain.ts", 3, false, simulation -> { });
+        assertRowsEqual(rows(plain), rows(export(scenario, "compressed.ts", 3, true, simulation -> { })));
+        
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        try (TimeSeriesReader reader = new TimeSeriesReader(plain)) {
+            reader.writeCsv(converted);
+        }
+        assertArrayEquals(converted.toByteArray(), Files.readAllBytes(export(scenario, "plain.csv", 3, false, simulation -> { })));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(export(scenario, "compressed.csv", 3, true, simulation -> { })))) {
+            assertArrayEquals(converted.toByteArray(), in.readAllBytes());
+        }
+    }
+    
+    @Test
+    void damagedFilesAreRejected() throws IOException {
+        Path file = export(TestScenarios.generated(23, directory), "run.ts", 1, true, simulation -> { });
+        byte[] bytes = Files.readAllBytes(file);
+        
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new TimeSeriesReader(file).close());
+        
+        // Garbage in place of the compressed columns
+        for (int i = bytes.length - 64; i < bytes.length; i++) {
+            bytes[i] ^= 0x5A;
+        }
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> rows(file));
+    }
+    
+    private Path export(Path scenario, String name, int interval, boolean compress, Consumer<Simulation> setup) {
+        Path file = directory.resolve(name);
+        Simulation simulation = TestScenarios.simulation(TestScenarios.load(scenario));
+        setup.accept(simulation);
+        simulation.setTimeSeries(file, interval, compress);
+        TestScenarios.capture(simulation::start);
+        return file;
+    }
+    
+    private static List<int[]> rows(Path file) throws IOException {
+        List<int[]> rows = new ArrayList<>();
+        try (TimeSeriesReader reader = new TimeSeriesReader(file)) {
+            int columns = 1 + 2 * reader.getPlanetCount() + 2 * reader.getShipCount();
+            while (reader.nextChunk()) {
+                for (int r = 0; r < reader.getRows(); r++) {
+                    int[] row = new int[columns];
+                    for (int c = 0; c < columns; c++) {
+                        row[c] = reader.getValue(r, c);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    private static void assertRowsEqual(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size(), "rows");
+        for (int r = 0; r < expected.size(); r++) {
+            assertArrayEquals(expected.get(r), actual.get(r), "row " + r);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * <p>
+ * These tests check the timing wheel against the plain rule it replaces: everyone
+ * expires exactly once, in the hour they die or in the next hour if they are already
+ * dead, whatever steps the wheel is moved forward in and however far away the deaths
+ * are, including beyond the reach of every level. People taken out again before they
+ * die never expire, and the rest are not disturbed.
+ * </p>
+ */
+
+package space_travel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+    @Test
+    void peopleExpireInTheHourTheyDie() {
+        for (long seed = 0; seed < 20; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            // Near deaths land on the lowest level, the rest spread over the higher ones
+            // and the overflow list
+            int[] lives = new int[2000];
+            for (int id = 0; id < lives.length; id++) {
+                int range = random.nextInt(4);
+                lives[id] = range == 0 ? random.nextInt(-3, 300)
+                        : range == 1 ? random.nextInt(0, 70_000)
+                        : range == 2 ? random.nextInt(0, 20_000_000)
+                        : random.nextInt(0, Integer.MAX_VALUE - 1);
+            }
+            check(lives, random);
+        }
+    }
+    
+    private static void check(int[] lives, SplittableRandom random) {
+        PersonStore people = new PersonStore();
+        for (int id = 0; id < lives.length; id++) {
+            people.add("N" + id, 30, lives[id], "P");
+        }
+        long start = random.nextInt(0, 1000);
+        TimingWheel wheel = new TimingWheel(people, 0);
+        wheel.advanceTo(start, id -> { });
+        for (int id = 0; id < lives.length; id++) {
+            wheel.schedule(id);
+        }
+        
+        long[] expected = new long[lives.length];
+        for (int id = 0; id < lives.length; id++) {
+            expected[id] = Math.max(lives[id], start + 1);
+        }
+        long[] expired = new long[lives.length];
+        Arrays.fill(expired, -1);
+        long[] last = {start};
+        
+        while (!wheel.isEmpty()) {
+            long next = wheel.nextDeadline();
+            assertEquals(earliestLeft(expected, expired), next);
+            
+            // Sometimes stop right at the next death, sometimes jump far past it
+            long target = random.nextBoolean() ? next : next + random.nextLong(0, 1L << random.nextInt(1, 33));
+            wheel.advanceTo(target, id -> {
+                assertEquals(-1, expired[id], "expired twice: " + id);
+                assertTrue(wheel.getNow() >= last[0], "out of order");
+                expired[id] = wheel.getNow();
+                last[0] = wheel.getNow();
+            });
+            assertEquals(target, wheel.getNow());
+        }
+        assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+        assertEquals(Arrays.toString(expected), Arrays.toString(expired));
+    }
+    
+    private static long earliestLeft(long[] expected, long[] expired) {
+        long earliest = Long.MAX_VALUE;
+        for (int id = 0; id < expected.length; id++) {
+            if (expired[id] < 0) {
+                earliest = Math.min(earliest, expected[id]);
+            }
+        }
+        return earliest;
+    }
+    
+    @Test
+    void cancelledPeopleNeverExpire() {
+        for (long seed = 0; seed < 20; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            PersonStore people = new PersonStore();
+            int[] lives = new int[2000];
+            for (int id = 0; id < lives.length; id++) {
+                int range = random.nextInt(3);
+                lives[id] = range == 0 ? random.nextInt(1, 300)
+                        : range == 1 ? random.nextInt(1, 70_000)
+                        : random.nextInt(1, Integer.MAX_VALUE - 1);
+                people.add("N" + id, 30, lives[id], "P");
+            }
+            TimingWheel wheel = new TimingWheel(people, 0);
+            for (int id = 0; id < lives.length; id++) {
+                wheel.schedule(id);
+            }
+            
+            // Cancels a few of the people still waiting after every step
+            boolean[] cancelled = new boolean[lives.length];
+            long[] expired = new long[lives.length];
+            Arrays.fill(expired, -1);
+            while (!wheel.isEmpty()) {
+                long target = wheel.nextDeadline() + random.nextLong(0, 1L << random.nextInt(1, 33));
+                wheel.advanceTo(target, id -> expired[id] = wheel.getNow());
+                int[] waiting = new int[lives.length];
+                int count = 0;
+                for (int id = 0; id < lives.length; id++) {
+                    if (!cancelled[id] && expired[id] < 0 && random.nextInt(8) == 0) {
+                        cancelled[id] = true;
+                        waiting[count++] = id;
+                    }
+                }
+                wheel.cancel(Arrays.copyOf(waiting, count));
+            }
+            for (int id = 0; id < lives.length; id++) {
+                assertEquals(cancelled[id] ? -1 : lives[id], expired[id], "person " + id);
+            }
+            assertThrows(IllegalStateException.class, () -> wheel.cancel(new int[] {0}));
+        }
+    }
+    
+    @Test
+    void peopleScheduledLaterExpireOnTime() {
+        PersonStore people = new PersonStore();
+        LifeClock clock = new LifeClock();
+        people.setClock(clock);
+        TimingWheel wheel = new TimingWheel(people, 0);
+        int[] expiredAt = new int[600];
+        Arrays.fill(expiredAt, -1);
+        
+        // One person joins every hour with a life of a few hundred hours
+        for (int hour = 1; hour <= 600 + 1000; hour++) {
+            clock.advance(1);
+            wheel.advanceTo(clock.now(), id -> expiredAt[id] = clock.now());
+            if (hour <= 600) {
+                int id = people.add("N" + hour, 30, (hour * 37) % 700, "P");
+                wheel.schedule(id);
+            }
+        }
+        for (int id = 0; id < expiredAt.length; id++) {
+            int joined = id + 1;
+            assertEquals(joined + Math.max((joined * 37) % 700, 1), expiredAt[id], "person " + id);
+        }
+    }
+}